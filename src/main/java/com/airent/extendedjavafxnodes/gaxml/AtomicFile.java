@@ -0,0 +1,115 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Replaces files only once their new content is completely written.
+ * <BR><BR>
+ * The content is written to a file next to the target, which is given the
+ * permissions and owner of the target, forced to the disk and then moved over the target.
+ * When the target is a symbolic link, the file it links to is replaced.
+ */
+final class AtomicFile {
+    private static final int BUFFER = 64 * 1024;
+
+    private AtomicFile() {}
+
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    interface Content<E extends Exception> {
+        void write(@NotNull OutputStream out) throws IOException, E;
+    }
+
+    /**
+     * Replaces a file with the provided content, if writing fails the file is left as it was.
+     *
+     * @param path The file to replace, or to create if it doesn't exist.
+     * @param content Writes the new content of the file.
+     * @throws IOException If the file couldn't be written.
+     * @throws E If the content couldn't be written.
+     */
+    static <E extends Exception> void write(@NotNull Path path, @NotNull Content<E> content) throws IOException, E {
+        Path target = Files.exists(path) ? path.toRealPath() : path.toAbsolutePath();
+        Path temp = createTemp(target);
+        try {
+            copyAttributes(target, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER);
+                content.write(out);
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            forceDirectory(target.getParent());
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Creates the file that is written before it replaces the target. Unlike
+     * {@link Files#createTempFile}, the file gets the default permissions, which
+     * a file that doesn't exist yet should be made with.
+     */
+    @NotNull
+    private static Path createTemp(@NotNull Path target) throws IOException {
+        String name = "." + target.getFileName() + ".";
+        while (true) {
+            Path temp = target.resolveSibling(name + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException ignored) {}
+        }
+    }
+
+    private static void copyAttributes(@NotNull Path target, @NotNull Path temp) throws IOException {
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        PosixFileAttributeView tempView = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        if (targetView == null || tempView == null || !Files.exists(target)) return;
+        PosixFileAttributes attributes = targetView.readAttributes();
+        tempView.setPermissions(attributes.permissions());
+        try {
+            if (!attributes.owner().equals(tempView.getOwner())) {
+                tempView.setOwner(attributes.owner());
+            }
+            if (!attributes.group().equals(tempView.readAttributes().group())) {
+                tempView.setGroup(attributes.group());
+            }
+        } catch (IOException ignored) {
+            // only privileged users can give files away, the file then belongs to whoever saved it
+        }
+    }
+
+    /**
+     * Forces the move of the file to the disk, on the systems that can open a directory.
+     */
+    private static void forceDirectory(@NotNull Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {}
+    }
+}
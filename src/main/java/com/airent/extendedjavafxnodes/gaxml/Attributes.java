@@ -1,5 +1,6 @@
 package com.airent.extendedjavafxnodes.gaxml;
 
+import com.airent.extendedjavafxnodes.gaxml.themes.Theme;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import org.jetbrains.annotations.Contract;
@@ -7,12 +8,46 @@ import org.jetbrains.annotations.NotNull;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * The format of an element, made of its own attributes and the attributes it inherits.
+ * <BR><BR>
+ * Copying attributes doesn't copy the map of the attributes, the copy shares
+ * the attributes of the original as a parent layer and only keeps its own changes,
+ * so formats that are passed down many levels of elements take the same amount
+ * of memory at each level. Layers that are shared are never changed, the original
+ * moves its changes into a new layer before it is shared.
+ * Lookups go up the layers, which are merged into one layer every
+ * {@link #MAX_DEPTH} levels so that they don't become slower the deeper the element is.
+ * Only those merged layers keep a whole map of the attributes, the layers above them
+ * only keep their own changes.
+ * <BR><BR>
+ * A layer keeps the {@link FormatSpec} of its attributes, so every copy that shares it
+ * also shares the spec. Attributes that are put over a parent reuse the layer of the
+ * last attributes that were put over the same parent with the same map, so siblings
+ * that are formatted the same don't parse their format again.
+ * <BR><BR>
+ * The attributes behave like one map, a key that is put with a null value is kept
+ * and hides the value it inherits, only {@link #remove(String)} takes a key out.
+ */
 public class Attributes {
+    static final int MAX_DEPTH = 16;
+    // how many layers that were put over a layer are reused
+    private static final int MAX_DERIVED = 256;
+    // put in a layer for a key that was removed, to hide the value of the key in the layers below
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String REMOVED = new String("");
+
     private Node node;
-    private HashMap<String, String> attributes = new HashMap<>();
+    private Layer base;
+    // the changes made on top of base, REMOVED values hide the value in base
+    private HashMap<String, String> own;
+    // the attributes as one map, until they are changed
+    private Map<String, String> flat;
     private boolean onlyPassable;
 
     @SafeVarargs
@@ -26,7 +61,7 @@ public class Attributes {
 
     public Attributes(Node node, @NotNull Attributes attr) {
         this(node, false);
-        this.attributes.putAll(attr.getAttributes());
+        putAll(attr);
     }
 
     public Attributes(Node node) {
@@ -45,21 +80,83 @@ public class Attributes {
 
     public Attributes(Map<String, String> attrs, boolean onlyPassable) {
         this.node = null;
-        this.attributes.putAll(attrs);
+        HashMap<String, String> copy = new HashMap<>(attrs);
+        if (onlyPassable) {
+            removeUnpassable(copy);
+        }
+        this.base = Layer.of(null, copy);
         this.onlyPassable = onlyPassable;
-        updateAttributes();
     }
 
     public Attributes(Attributes attrs) {
         this(attrs, false);
     }
+
     public Attributes(@NotNull Attributes attrs, boolean onlyPassable) {
         this.node = attrs.getNode();
-        this.attributes = (HashMap<String, String>) attrs.getAttributes();
+        this.base = attrs.share();
         this.onlyPassable = onlyPassable;
         updateAttributes();
     }
 
+    /**
+     * Creates attributes that inherit the attributes of a parent,
+     * with the provided attributes put over them.
+     *
+     * @param parent The attributes to inherit.
+     * @param attrs The attributes to put over the inherited attributes.
+     */
+    public Attributes(@NotNull Attributes parent, @NotNull Map<String, String> attrs) {
+        this.node = null;
+        this.base = Layer.derive(parent.share(), attrs);
+        this.onlyPassable = false;
+    }
+
+    /**
+     * Moves the changes of these attributes into a layer that is never
+     * changed again, so that it can be shared.
+     *
+     * @return The layer with all of these attributes.
+     */
+    private Layer share() {
+        if (own != null && !own.isEmpty()) {
+            base = Layer.of(base, own);
+            own = null;
+        }
+        return base;
+    }
+
+    private HashMap<String, String> own() {
+        flat = null;
+        if (own == null) {
+            own = new HashMap<>();
+        }
+        return own;
+    }
+
+    /**
+     * Gets the spec of these attributes, which is kept by the layer that has them,
+     * so copies of these attributes don't look it up again.
+     *
+     * @param theme The theme that gives the default colors.
+     * @return The shared spec.
+     */
+    @NotNull
+    FormatSpec getSpec(Theme theme) {
+        Layer layer = share();
+        if (layer == null) {
+            return FormatSpec.of(Map.of(), theme);
+        }
+        Object themeKey = FormatSpec.themeKey(theme);
+        Map.Entry<Object, FormatSpec> cached = layer.spec;
+        if (cached != null && cached.getKey().equals(themeKey)) {
+            return cached.getValue();
+        }
+        FormatSpec spec = FormatSpec.of(layer.flatten(), theme);
+        layer.spec = Map.entry(themeKey, spec);
+        return spec;
+    }
+
     public Node getNode() {
         return node;
     }
@@ -74,12 +171,28 @@ public class Attributes {
         return node.getAttributes();
     }
 
+    /**
+     * Gets all the attributes as one map, the map is kept until the attributes are changed.
+     *
+     * @return An unmodifiable map of the attributes.
+     */
     public Map<String, String> getAttributes() {
-        return new HashMap<>(attributes);
+        Map<String, String> attributes = flat;
+        if (attributes == null) {
+            if (own == null || own.isEmpty()) {
+                attributes = base == null ? Map.of() : base.flatten();
+            } else {
+                HashMap<String, String> merged = base == null ? new HashMap<>() : new HashMap<>(base.flatten());
+                Layer.apply(merged, own);
+                attributes = Collections.unmodifiableMap(merged);
+            }
+            flat = attributes;
+        }
+        return attributes;
     }
 
     public Map<String, String> getAttributesOnlyPassable() {
-        return removeUnpassable(getAttributes());
+        return removeUnpassable(new HashMap<>(getAttributes()));
     }
 
     public void  updateAttributes() {
@@ -92,35 +205,48 @@ public class Attributes {
 
     public void updateAttributes(boolean onlyPassable, boolean override) {
         if (node != null) {
-            if (override) attributes = new HashMap<>();
+            if (override) {
+                base = null;
+                own = null;
+                flat = null;
+            }
             this.onlyPassable = onlyPassable;
             NamedNodeMap attrs = getBaseAttributes();
             if (attrs != null) {
                 for (int i=0; i < attrs.getLength(); i++) {
                     Node attr = attrs.item(i);
-                    attributes.put(attr.getNodeName(), attr.getNodeValue());
+                    own().put(attr.getNodeName(), attr.getNodeValue());
                 }
             }
         }
-        if (onlyPassable) {
-            removeUnpassable(attributes);
+        if (onlyPassable && !isPassable()) {
+            removeUnpassable(this);
         }
     }
 
+    private boolean isPassable() {
+        return (base == null || base.passable) && (own == null || Layer.isPassable(own));
+    }
+
     // map
     public boolean containsKey(String key) {
-        return attributes.containsKey(key);
+        if (own != null && own.containsKey(key)) {
+            return own.get(key) != REMOVED;
+        }
+        return base != null && base.containsKey(key);
     }
 
     public boolean check(String attrName, String attrValue) {
-        if (containsKey(attrName)) {
-            return get(attrName).equals(attrValue);
-        }
-        return false;
+        String value = get(attrName);
+        return value != null && value.equals(attrValue);
     }
 
     public int size() {
-        return attributes.size();
+        int size = base == null ? 0 : base.size;
+        if (own != null) {
+            size += Layer.sizeChange(base, own);
+        }
+        return size;
     }
 
     public int length() {
@@ -129,7 +255,11 @@ public class Attributes {
     }
 
     public String get(String key) {
-        return attributes.get(key);
+        if (own != null && own.containsKey(key)) {
+            String value = own.get(key);
+            return value == REMOVED ? null : value;
+        }
+        return base == null ? null : base.get(key);
     }
 
     public String getAttr(String key) {
@@ -138,15 +268,36 @@ public class Attributes {
     }
 
     public String put(String key, String value) {
-        return attributes.put(key, value);
+        String old = get(key);
+        own().put(key, value);
+        return old;
     }
 
     public void putAll(@NotNull Attributes attr) {
-        attributes.putAll(attr.getAttributes());
+        if (attr.own == null) {
+            if (attr.base != null) {
+                own().putAll(attr.base.flatten());
+            }
+        } else if (attr.base == null) {
+            attr.own.forEach((key, value) -> {
+                if (value != REMOVED) {
+                    own().put(key, value);
+                }
+            });
+        } else {
+            own().putAll(attr.getAttributes());
+        }
     }
 
     public String remove(String key) {
-        return attributes.remove(key);
+        String old = get(key);
+        if (base != null && base.containsKey(key)) {
+            own().put(key, REMOVED);
+        } else if (own != null) {
+            flat = null;
+            own.remove(key);
+        }
+        return old;
     }
 
     public String remove(String key, boolean inNode) {
@@ -156,6 +307,161 @@ public class Attributes {
         return remove(key);
     }
 
+    /**
+     * A layer of attributes that is shared and never changed.
+     */
+    private static final class Layer {
+        private final Layer parent;
+        private final Map<String, String> own;
+        private final int depth;
+        private final int size;
+        private final boolean passable;
+        // only layers without a parent have one, the layers above them are flattened when they're needed
+        private final Map<String, String> flat;
+        // the spec of the attributes, with the key of the theme it was made for
+        private volatile Map.Entry<Object, FormatSpec> spec;
+        // the layers that were put over this layer, by their own attributes
+        private HashMap<Map<String, String>, Layer> derived;
+
+        private Layer(Layer parent, Map<String, String> own) {
+            this.parent = parent;
+            this.own = own;
+            this.depth = parent == null ? 1 : parent.depth + 1;
+            this.flat = parent == null ? Collections.unmodifiableMap(own) : null;
+            this.size = parent == null ? own.size() : parent.size + sizeChange(parent, own);
+            if (parent == null || parent.passable) {
+                this.passable = isPassable(own);
+            } else {
+                boolean passable = true;
+                for (String key : unpassable) {
+                    if (containsKey(key)) {
+                        passable = false;
+                        break;
+                    }
+                }
+                this.passable = passable;
+            }
+        }
+
+        /**
+         * Creates a layer that takes over the provided map, which must not be changed afterwards.
+         */
+        private static Layer of(Layer parent, @NotNull HashMap<String, String> own) {
+            if (own.isEmpty()) {
+                return parent;
+            }
+            if (parent == null) {
+                own.values().removeIf(value -> value == REMOVED);
+                return own.isEmpty() ? null : new Layer(null, own);
+            }
+            if (parent.depth >= MAX_DEPTH) {
+                HashMap<String, String> merged = new HashMap<>(parent.flatten());
+                apply(merged, own);
+                return new Layer(null, merged);
+            }
+            return new Layer(parent, own);
+        }
+
+        /**
+         * Gets a layer with the provided attributes over a parent, a layer that was
+         * made before for the same parent and attributes is reused.
+         */
+        private static Layer derive(Layer parent, @NotNull Map<String, String> attrs) {
+            if (parent == null || attrs.isEmpty()) {
+                return of(parent, new HashMap<>(attrs));
+            }
+            synchronized (parent) {
+                if (parent.derived == null) {
+                    parent.derived = new HashMap<>();
+                }
+                Layer layer = parent.derived.get(attrs);
+                if (layer == null) {
+                    if (parent.derived.size() >= MAX_DERIVED) {
+                        parent.derived.clear();
+                    }
+                    HashMap<String, String> own = new HashMap<>(attrs);
+                    layer = of(parent, own);
+                    parent.derived.put(own, layer);
+                }
+                return layer;
+            }
+        }
+
+        private String get(String key) {
+            for (Layer layer = this; layer != null; layer = layer.parent) {
+                if (layer.own.containsKey(key)) {
+                    String value = layer.own.get(key);
+                    return value == REMOVED ? null : value;
+                }
+            }
+            return null;
+        }
+
+        private boolean containsKey(String key) {
+            for (Layer layer = this; layer != null; layer = layer.parent) {
+                if (layer.own.containsKey(key)) {
+                    return layer.own.get(key) != REMOVED;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return How many keys the changes add to the layer, or take out of it when negative.
+         */
+        private static int sizeChange(Layer layer, @NotNull Map<String, String> changes) {
+            int change = 0;
+            for (Map.Entry<String, String> entry : changes.entrySet()) {
+                boolean inLayer = layer != null && layer.containsKey(entry.getKey());
+                if (entry.getValue() == REMOVED) {
+                    if (inLayer) change--;
+                } else if (!inLayer) {
+                    change++;
+                }
+            }
+            return change;
+        }
+
+        /**
+         * @return All the attributes of the layer as one unmodifiable map,
+         * which is only kept by layers without a parent.
+         */
+        private Map<String, String> flatten() {
+            if (flat != null) {
+                return flat;
+            }
+            ArrayDeque<Layer> above = new ArrayDeque<>(depth);
+            Layer layer = this;
+            for (; layer.parent != null; layer = layer.parent) {
+                above.push(layer);
+            }
+            HashMap<String, String> merged = new HashMap<>(layer.own);
+            for (Layer next : above) {
+                apply(merged, next.own);
+            }
+            return Collections.unmodifiableMap(merged);
+        }
+
+        private static void apply(Map<String, String> map, @NotNull Map<String, String> changes) {
+            changes.forEach((key, value) -> {
+                if (value == REMOVED) {
+                    map.remove(key);
+                } else {
+                    map.put(key, value);
+                }
+            });
+        }
+
+        private static boolean isPassable(@NotNull Map<String, String> map) {
+            for (String key : unpassable) {
+                if (map.containsKey(key) && map.get(key) != REMOVED) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     // static
     private static final String[] unpassable = new String[]{
             "combine", "type", "path", "href", "onclick", "display", "id"
@@ -0,0 +1,119 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The difference between the top level blocks of two compilations of a file.
+ * <BR><BR>
+ * Blocks that are the same at the start and at the end of both lists
+ * are kept in place, everything between them has changed. Blocks in the
+ * changed part that are equal to an old block that is no longer used,
+ * such as blocks that were moved, are matched to that old block.
+ * Blocks that are stale, because their output depends on something that
+ * changed outside of them, are never equal to an old block.
+ */
+final class BlockDiff {
+    private final int oldSize;
+    private final int prefix;
+    private final int suffix;
+    private final int[] matches;
+
+    private BlockDiff(int oldSize, int prefix, int suffix, int[] matches) {
+        this.oldSize = oldSize;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.matches = matches;
+    }
+
+    @NotNull
+    static BlockDiff of(@NotNull List<CompiledNode> old, @NotNull List<CompiledNode> now) {
+        return of(old, now, block -> false);
+    }
+
+    /**
+     * Compares two lists of blocks.
+     *
+     * @param old The blocks that are loaded.
+     * @param now The blocks of the new compilation.
+     * @param stale Whether a new block has to be loaded again even if it is equal to an old block.
+     * @return The difference.
+     */
+    @NotNull
+    static BlockDiff of(@NotNull List<CompiledNode> old, @NotNull List<CompiledNode> now, @NotNull Predicate<CompiledNode> stale) {
+        int prefix = 0;
+        int max = Math.min(old.size(), now.size());
+        while (prefix < max && old.get(prefix).equals(now.get(prefix)) && !stale.test(now.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && old.get(old.size()-1-suffix).equals(now.get(now.size()-1-suffix))
+                && !stale.test(now.get(now.size()-1-suffix))) {
+            suffix++;
+        }
+        int[] matches = new int[now.size()];
+        Arrays.fill(matches, -1);
+        for (int i=0; i < prefix; i++) {
+            matches[i] = i;
+        }
+        for (int i=0; i < suffix; i++) {
+            matches[now.size()-1-i] = old.size()-1-i;
+        }
+        HashMap<CompiledNode, ArrayDeque<Integer>> unused = new HashMap<>();
+        for (int i=prefix; i < old.size()-suffix; i++) {
+            unused.computeIfAbsent(old.get(i), k -> new ArrayDeque<>()).add(i);
+        }
+        for (int i=prefix; i < now.size()-suffix; i++) {
+            if (stale.test(now.get(i))) continue;
+            ArrayDeque<Integer> same = unused.get(now.get(i));
+            if (same != null && !same.isEmpty()) {
+                matches[i] = same.poll();
+            }
+        }
+        return new BlockDiff(old.size(), prefix, suffix, matches);
+    }
+
+    /**
+     * Gets how many blocks at the start of both lists are the same.
+     *
+     * @return The length of the unchanged start.
+     */
+    int getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Gets how many blocks at the end of both lists are the same.
+     *
+     * @return The length of the unchanged end.
+     */
+    int getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Gets the index of the old block that a new block is equal to.
+     *
+     * @param index The index of the new block.
+     * @return The index of the old block, or -1 if the block is new or changed.
+     */
+    int getMatch(int index) {
+        return matches[index];
+    }
+
+    /**
+     * Checks whether both lists have the same blocks in the same order.
+     *
+     * @return True if nothing changed.
+     */
+    boolean isUnchanged() {
+        return prefix == oldSize && prefix == matches.length;
+    }
+}
@@ -0,0 +1,167 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An onclick event, or the script of a 'script.' reference, that is read once
+ * when it's loaded instead of every time it runs.
+ * <BR><BR>
+ * The event is split into its calls, and the arguments of the calls that
+ * don't reference a variable are converted to their values right away.
+ * Only arguments with 'inFile.' or 'script.' references are parsed when the
+ * event runs, since their values can change. An 'inlineScript:' event is
+ * compiled the first time it runs and then only executed.
+ */
+final class EventScript {
+    static final String INLINE = "ACCURATE:INLINE:SCRIPT";
+
+    private final String inlineSource;
+    private org.mozilla.javascript.Script inline;
+    private final List<Call> calls;
+
+    private EventScript(String inlineSource, List<Call> calls) {
+        this.inlineSource = inlineSource;
+        this.calls = calls;
+    }
+
+    /**
+     * Reads an event.
+     *
+     * @param processor The processor that the event belongs to.
+     * @param event The event, such as 'f1(1,2);f2' or 'inlineScript:...'.
+     * @return The read event.
+     */
+    @NotNull
+    static EventScript of(@NotNull XMLProcessor processor, @NotNull String event) {
+        if (event.startsWith("inlineScript:")) {
+            return new EventScript(event.substring(13), List.of());
+        }
+        StringBuilder parts = new StringBuilder();
+        // calls of the same name are merged, the last arguments win
+        HashMap<String, List<String>> scripts = new HashMap<>();
+        List<String> scriptNames = new ArrayList<>();
+        String scriptName = null;
+        List<String> scriptArgs = new ArrayList<>();
+        int braceLevel = 0;
+        for (char c : event.toCharArray()) {
+            if (c == '(') {
+                if (braceLevel == 0) {
+                    scriptName = parts.toString();
+                    parts = new StringBuilder();
+                } else {
+                    parts.append(c);
+                }
+                braceLevel++;
+            } else if (c == ')') {
+                braceLevel--;
+                if (braceLevel == 0) {
+                    scriptArgs.add(parts.toString());
+                    parts = new StringBuilder();
+                    scripts.put(scriptName, scriptArgs);
+                    scriptNames.add(scriptName);
+                    scriptArgs = new ArrayList<>();
+                    scriptName = null;
+                } else {
+                    parts.append(c);
+                }
+            } else if (c == ',') {
+                if (braceLevel == 1) {
+                    scriptArgs.add(parts.toString());
+                    parts = new StringBuilder();
+                }
+            } else {
+                if (braceLevel == 0 && c == ';') {
+                    if (!parts.isEmpty()) {
+                        scriptName = parts.toString();
+                        parts = new StringBuilder();
+                    }
+                    continue;
+                }
+                parts.append(c);
+            }
+        }
+        if (!parts.isEmpty()) {
+            scriptName = parts.toString();
+        }
+        if (scriptName != null) {
+            scriptNames.add(scriptName);
+            scripts.put(scriptName, new ArrayList<>());
+        }
+        List<Call> calls = new ArrayList<>(scriptNames.size());
+        for (String name : scriptNames) {
+            calls.add(new Call(processor, name, scripts.get(name)));
+        }
+        return new EventScript(null, calls);
+    }
+
+    /**
+     * Runs the event.
+     *
+     * @param processor The processor that the event belongs to.
+     * @return What each call returned, by the name of the script it called.
+     */
+    @NotNull
+    Map<String, Object> run(@NotNull XMLProcessor processor) {
+        HashMap<String, Object> items = new HashMap<>();
+        if (inlineSource != null) {
+            if (inline == null) {
+                inline = processor.getScript().compile(inlineSource);
+            }
+            items.put(INLINE, processor.getScript().exec(inline));
+        } else {
+            for (Call call : calls) {
+                items.put(call.name, call.run(processor));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * A call of a script with its arguments.
+     */
+    private static final class Call {
+        private final String name;
+        private final String[] vars;
+        // the converted arguments, null where the argument is parsed on each run
+        private final Object[] args;
+        private final boolean constant;
+
+        private Call(@NotNull XMLProcessor processor, String name, @NotNull List<String> vars) {
+            this.name = name;
+            this.vars = vars.toArray(new String[0]);
+            this.args = new Object[this.vars.length];
+            boolean constant = true;
+            for (int i=0; i < this.vars.length; i++) {
+                boolean[] referenced = {false};
+                processor.parseVariable(false, this.vars[i], reference -> {
+                    referenced[0] = true;
+                    return null;
+                });
+                if (referenced[0]) {
+                    constant = false;
+                } else {
+                    args[i] = XMLProcessor.toArgument(this.vars[i]);
+                }
+            }
+            this.constant = constant;
+        }
+
+        private Object run(@NotNull XMLProcessor processor) {
+            // the script may change the array it's called with
+            Object[] args = this.args.clone();
+            if (!constant) {
+                for (int i=0; i < args.length; i++) {
+                    if (args[i] == null) {
+                        args[i] = XMLProcessor.toArgument(processor.parseArgument(vars[i]));
+                    }
+                }
+            }
+            return processor.callScript(name, args);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import javafx.application.Platform;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches single files for changes, for the displays that reload their file.
+ * <BR><BR>
+ * All files are watched by one {@link WatchService} on a daemon thread.
+ * Editors often write a file in several steps, so the listeners of a file
+ * are only told once no more changes came in for {@link #QUIET_PERIOD} ms,
+ * and always on the JavaFX Application Thread.
+ */
+final class FileWatcher {
+    static final long QUIET_PERIOD = 100;
+
+    private static final HashMap<Path, List<Runnable>> listeners = new HashMap<>();
+    private static final HashMap<Path, WatchKey> keys = new HashMap<>();
+    private static WatchService service;
+
+    private FileWatcher() {}
+
+    /**
+     * Starts watching a file.
+     *
+     * @param file The file to watch.
+     * @param onChange Run on the JavaFX Application Thread after the file changed.
+     * @return Stops watching the file for this listener when run.
+     * @throws IOException If the directory of the file cannot be watched.
+     */
+    @NotNull
+    static synchronized Runnable watch(@NotNull Path file, @NotNull Runnable onChange) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        Path directory = path.getParent();
+        if (service == null) {
+            service = FileSystems.getDefault().newWatchService();
+            WatchService watching = service;
+            Thread thread = new Thread(() -> run(watching), "GA-XML-FileWatcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        WatchKey key = keys.get(directory);
+        if (key == null || !key.isValid()) {
+            keys.put(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY));
+        }
+        listeners.computeIfAbsent(path, k -> new ArrayList<>(1)).add(onChange);
+        return () -> unwatch(path, onChange);
+    }
+
+    private static synchronized void unwatch(@NotNull Path path, @NotNull Runnable onChange) {
+        List<Runnable> fileListeners = listeners.get(path);
+        if (fileListeners == null || !fileListeners.remove(onChange)) return;
+        if (fileListeners.isEmpty()) {
+            listeners.remove(path);
+            Path directory = path.getParent();
+            if (listeners.keySet().stream().noneMatch(p -> p.getParent().equals(directory))) {
+                WatchKey key = keys.remove(directory);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+    private static void run(@NotNull WatchService watching) {
+        try {
+            while (true) {
+                LinkedHashSet<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watching.take();
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path name) {
+                            changed.add(directory.resolve(name));
+                        }
+                    }
+                    if (!key.reset()) {
+                        // the directory was removed, so watch can register it again once it is back
+                        synchronized (FileWatcher.class) {
+                            keys.remove(directory, key);
+                        }
+                    }
+                    key = watching.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+                }
+                List<Runnable> toRun = new ArrayList<>();
+                synchronized (FileWatcher.class) {
+                    for (Path path : changed) {
+                        toRun.addAll(listeners.getOrDefault(path, List.of()));
+                    }
+                }
+                if (!toRun.isEmpty()) {
+                    Platform.runLater(() -> toRun.forEach(Runnable::run));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+}
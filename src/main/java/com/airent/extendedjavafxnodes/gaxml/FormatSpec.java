@@ -0,0 +1,546 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.themes.Theme;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderStroke;
+import javafx.scene.layout.BorderStrokeStyle;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.shape.StrokeType;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * The attributes of a format parsed into the values that are applied to nodes.
+ * <BR><BR>
+ * A spec is made once for every distinct set of attributes and theme,
+ * and shared by every node with that format, so the strings of the attributes
+ * are only parsed once. The spec of {@link Attributes} is also kept by the attributes,
+ * so formats that are shared between nodes don't look it up again. The objects of a spec come from the {@link StyleCache},
+ * so they are shared with other specs that have the same values.
+ * A value that fails to parse only fails when it is used,
+ * like it would if it was parsed when it's applied.
+ *
+ * @see Formatter
+ */
+public final class FormatSpec {
+    private static final int MAX_SPECS = 4096;
+    private static final LinkedHashMap<List<Object>, FormatSpec> specs = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, FormatSpec> eldest) {
+            return size() > MAX_SPECS;
+        }
+    };
+
+    private final Parsed<Double> size;
+    private final Parsed<Font> font;
+    private final Parsed<Paint> color;
+    private final Parsed<Double> width;
+    private final Parsed<Double> height;
+    private final Parsed<Paint> outlineColor;
+    private final Parsed<Double> outlineWidth;
+    private final Parsed<Double> outlineMiter;
+    private final Parsed<Double> outlineDashOffset;
+    private final Parsed<StrokeType> outlineType;
+    private final Parsed<StrokeLineCap> outlineLineCap;
+    private final Parsed<StrokeLineJoin> outlineLineJoin;
+    private final Parsed<BlendMode> blend;
+    private final List<String> classes;
+    private final Parsed<Integer> tabSize;
+    private final Parsed<TextAlignment> textAlignment;
+    private final Parsed<Pos> blockAlignment;
+    private final Parsed<Paint> highlightColor;
+    private final Parsed<Integer> highlightStart;
+    private final Parsed<Integer> highlightEnd;
+    private final String strikethrough;
+    private final String underline;
+    private final Parsed<int[]> underlineRange;
+    private final String href;
+    private final Parsed<Border> border;
+    private final Parsed<Background> background;
+
+    private FormatSpec(@NotNull Map<String, String> format, Theme theme) {
+        size = Parsed.of(format.get("size"), Double::parseDouble);
+        String fontType = format.get("font-type");
+        font = Parsed.of("", ignored -> {
+            double fontSize = size.isPresent() ? size.get() : 12.0;
+            return StyleCache.font(fontType, fontSize);
+        });
+        color = Parsed.of(format.get("color"), StyleCache::color);
+        width = Parsed.of(format.get("width"), Double::parseDouble);
+        height = Parsed.of(format.get("height"), Double::parseDouble);
+        outlineColor = Parsed.of(format.get("outline-color"), StyleCache::color);
+        outlineWidth = Parsed.of(format.get("outline-width"), Double::parseDouble);
+        outlineMiter = Parsed.of(format.get("outline-miter"), Double::parseDouble);
+        outlineDashOffset = Parsed.of(format.get("outline-dash-offset"), Double::parseDouble);
+        outlineType = Parsed.of(format.get("outline-type"), StrokeType::valueOf);
+        outlineLineCap = Parsed.of(format.get("outline-line-cap"), StrokeLineCap::valueOf);
+        outlineLineJoin = Parsed.of(format.get("outline-line-join"), StrokeLineJoin::valueOf);
+        blend = Parsed.of(format.get("blend"), BlendMode::valueOf);
+        String classNames = format.get("class");
+        classes = classNames == null ? null : List.of(classNames.split(" "));
+        tabSize = Parsed.of(format.get("tab-size"), Integer::parseInt);
+        textAlignment = Parsed.of(format.get("align"), FormatSpec::posToAlignment);
+        blockAlignment = Parsed.of(format.get("align"), FormatSpec::blockAlignment);
+        highlightColor = Parsed.of(format.get("highlight-color"), StyleCache::color);
+        highlightStart = Parsed.of(format.get("highlight-start"), Integer::parseInt);
+        highlightEnd = Parsed.of(format.get("highlight-end"), Integer::parseInt);
+        strikethrough = format.get("strikethrough");
+        underline = format.get("underline");
+        underlineRange = Parsed.of(underline, value -> {
+            String[] range = value.split(" ");
+            if (value.contains("full") || value.contains("half") || range.length != 2) {
+                return null;
+            }
+            return new int[]{Integer.parseInt(range[0]), Integer.parseInt(range[1])};
+        });
+        href = format.get("href");
+        border = Parsed.of(format.get("border"), value -> parseBorder(value, theme));
+        background = Parsed.of(format.get("background"), value -> parseBackground(value, theme,
+                border.isPresent() ? border.get() : null));
+    }
+
+    /**
+     * Gets the spec of a format, parsing it if there isn't a spec for it yet.
+     *
+     * @param format The format.
+     * @param theme The theme that gives the default colors.
+     * @return The shared spec of the format.
+     */
+    @NotNull
+    public static FormatSpec of(@NotNull Attributes format, Theme theme) {
+        return format.getSpec(theme);
+    }
+
+    /**
+     * Gets the spec of a format, parsing it if there isn't a spec for it yet.
+     *
+     * @param format The attributes of the format, it must not be changed afterwards.
+     * @param theme The theme that gives the default colors.
+     * @return The shared spec of the format.
+     */
+    @NotNull
+    public static FormatSpec of(@NotNull Map<String, String> format, Theme theme) {
+        List<Object> key = Arrays.asList(format, themeKey(theme));
+        FormatSpec spec;
+        synchronized (specs) {
+            spec = specs.get(key);
+        }
+        if (spec == null) {
+            spec = new FormatSpec(format, theme);
+            synchronized (specs) {
+                FormatSpec other = specs.putIfAbsent(key, spec);
+                if (other != null) {
+                    spec = other;
+                }
+            }
+        }
+        return spec;
+    }
+
+    /**
+     * Gets what a spec depends on of a theme, which are its colors.
+     *
+     * @param theme The theme, or null.
+     * @return A key that is equal for themes with the same colors.
+     */
+    @NotNull
+    static Object themeKey(Theme theme) {
+        return theme == null
+                ? Arrays.asList(null, null, null)
+                : Arrays.asList(theme.getPrimary(), theme.getSecondary(), theme.getTertiary());
+    }
+
+    /**
+     * Forgets every spec, except for the specs that attributes already keep.
+     */
+    public static void clearAll() {
+        synchronized (specs) {
+            specs.clear();
+        }
+    }
+
+    public static int getSpecCount() {
+        synchronized (specs) {
+            return specs.size();
+        }
+    }
+
+    public boolean hasSize() {
+        return size.isPresent();
+    }
+
+    public double getSize() {
+        return size.get();
+    }
+
+    /**
+     * Gets the font of the 'size' and 'font-type' attributes,
+     * the size is 12 if there is no size.
+     *
+     * @return The font.
+     */
+    public Font getFont() {
+        return font.get();
+    }
+
+    public boolean hasColor() {
+        return color.isPresent();
+    }
+
+    public Paint getColor() {
+        return color.get();
+    }
+
+    public boolean hasWidth() {
+        return width.isPresent();
+    }
+
+    public double getWidth() {
+        return width.get();
+    }
+
+    public boolean hasHeight() {
+        return height.isPresent();
+    }
+
+    public double getHeight() {
+        return height.get();
+    }
+
+    public Paint getOutlineColor() {
+        return outlineColor.get();
+    }
+
+    public Double getOutlineWidth() {
+        return outlineWidth.get();
+    }
+
+    public Double getOutlineMiter() {
+        return outlineMiter.get();
+    }
+
+    public Double getOutlineDashOffset() {
+        return outlineDashOffset.get();
+    }
+
+    public StrokeType getOutlineType() {
+        return outlineType.get();
+    }
+
+    public StrokeLineCap getOutlineLineCap() {
+        return outlineLineCap.get();
+    }
+
+    public StrokeLineJoin getOutlineLineJoin() {
+        return outlineLineJoin.get();
+    }
+
+    public BlendMode getBlend() {
+        return blend.get();
+    }
+
+    /**
+     * Gets the CSS style classes of the 'class' attribute.
+     *
+     * @return An unmodifiable list of the classes, or null if there is no class attribute.
+     */
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    public Integer getTabSize() {
+        return tabSize.get();
+    }
+
+    public boolean hasAlign() {
+        return textAlignment.isPresent();
+    }
+
+    /**
+     * Gets the alignment of text, from the 'align' attribute.
+     *
+     * @return The text alignment, or null if there is no align attribute.
+     */
+    public TextAlignment getTextAlignment() {
+        return textAlignment.get();
+    }
+
+    /**
+     * Gets the alignment of a block that isn't only text, from the 'align' attribute.
+     *
+     * @return The alignment, or null if there is no align attribute.
+     */
+    public Pos getBlockAlignment() {
+        return blockAlignment.get();
+    }
+
+    public Paint getHighlightColor() {
+        return highlightColor.get();
+    }
+
+    public Integer getHighlightStart() {
+        return highlightStart.get();
+    }
+
+    public Integer getHighlightEnd() {
+        return highlightEnd.get();
+    }
+
+    /**
+     * Gets the 'strikethrough' attribute.
+     *
+     * @return The attribute, or null if there is none.
+     */
+    public String getStrikethrough() {
+        return strikethrough;
+    }
+
+    /**
+     * Gets the 'underline' attribute, such as 'full', 'half start' or '2 5'.
+     *
+     * @return The attribute, or null if there is none.
+     */
+    public String getUnderline() {
+        return underline;
+    }
+
+    /**
+     * Gets the start and end of an underline that was given as two numbers.
+     *
+     * @return The range, or null if the underline isn't a range.
+     */
+    public int[] getUnderlineRange() {
+        int[] range = underlineRange.get();
+        return range == null ? null : range.clone();
+    }
+
+    public String getHref() {
+        return href;
+    }
+
+    public boolean hasBorder() {
+        return border.isPresent();
+    }
+
+    /**
+     * Gets the border of the 'border' attribute.
+     *
+     * @return The border, {@link Border#EMPTY} if the attribute isn't a valid border.
+     */
+    public Border getBorder() {
+        return border.get();
+    }
+
+    public boolean hasBackground() {
+        return background.isPresent();
+    }
+
+    /**
+     * Gets the background of the 'background' attribute.
+     *
+     * @return The background, {@link Background#EMPTY} if the attribute isn't a valid background.
+     */
+    public Background getBackground() {
+        return background.get();
+    }
+
+    @NotNull
+    private static Border parseBorder(@NotNull String value, Theme theme) {
+        String[] borderFormat = value.split(" ");
+        if (borderFormat.length == 1 && !borderFormat[0].equals("none")) {
+            borderFormat = new String[] {
+                    borderFormat[0], "solid", "none", theme.getSecondary().toString(), "none"
+            };
+        } else if (borderFormat.length == 2) {
+            borderFormat = new String[] {
+                    borderFormat[0], "solid", "none", borderFormat[1], "none"
+            };
+        } else if (borderFormat.length == 3) {
+            borderFormat = new String[] {
+                    borderFormat[0], borderFormat[1], "none", borderFormat[2], "none"
+            };
+        } else if (borderFormat.length == 4) {
+            borderFormat = new String[] {
+                    borderFormat[0], borderFormat[1], borderFormat[2], borderFormat[3], "none"
+            };
+        }
+        if (borderFormat.length == 5) {
+            BorderStrokeStyle strokeStyle = switch (borderFormat[1]) {
+                case "solid" -> BorderStrokeStyle.SOLID;
+                case "dotted" -> BorderStrokeStyle.DOTTED;
+                case "dashed" -> BorderStrokeStyle.DASHED;
+                case "none" -> BorderStrokeStyle.NONE;
+                case null, default -> BorderStrokeStyle.SOLID;
+            };
+            CornerRadii cornerRadii = getCornerRadii(borderFormat[2], CornerRadii.EMPTY);
+            Insets insets = getInsets(borderFormat[4], Insets.EMPTY);
+            return StyleCache.border(StyleCache.color(borderFormat[3]), strokeStyle, cornerRadii, Double.parseDouble(borderFormat[0]), insets);
+        }
+        return Border.EMPTY;
+    }
+
+    @NotNull
+    private static Background parseBackground(@NotNull String value, Theme theme, Border border) {
+        String[] bgFormat = value.split(" ");
+        if (bgFormat.length == 1 && !bgFormat[0].equals("none")) {
+            bgFormat = new String[] {
+                    bgFormat[0], "none", "none"
+            };
+        } else if (bgFormat.length == 2) {
+            bgFormat = new String[] {
+                    bgFormat[0], bgFormat[1], "none"
+            };
+        }
+        if (Objects.equals(bgFormat[0], "default")) {
+            bgFormat[0] = theme.getPrimary().toString();
+        }
+        if (bgFormat.length == 3) {
+            // the background follows the corners and insets of the border by default
+            BorderStroke stroke = border == null || border.getStrokes().isEmpty() ? null : border.getStrokes().getFirst();
+            CornerRadii cornerRadii = getCornerRadii(bgFormat[1], stroke == null ? CornerRadii.EMPTY : stroke.getRadii());
+            Insets insets = getInsets(bgFormat[2], stroke == null ? Insets.EMPTY : stroke.getInsets());
+            return StyleCache.background(StyleCache.color(bgFormat[0]), cornerRadii, insets);
+        }
+        return Background.EMPTY;
+    }
+
+    @NotNull
+    private static Insets getInsets(@NotNull String insetsFormat, Insets delt) {
+        Insets insets = null;
+        if (!insetsFormat.equals("none")) {
+            String[] ins = insetsFormat.split("/");
+            if (ins.length == 2) {
+                ins = new String[] {
+                        ins[0], ins[1], ins[0], ins[1]
+                };
+            } else if (ins.length == 3) {
+                ins = new String[] {
+                        ins[0], ins[1], ins[2], ins[1]
+                };
+            }
+            if (ins.length == 4) {
+                insets = StyleCache.insets(Double.parseDouble(ins[0]), Double.parseDouble(ins[1]), Double.parseDouble(ins[2]), Double.parseDouble(ins[3]));
+            } else if (ins.length == 1) {
+                double inset = Double.parseDouble(ins[0]);
+                insets = StyleCache.insets(inset, inset, inset, inset);
+            }
+        }
+        if (insets == null) {
+            insets = delt;
+        }
+        return insets;
+    }
+
+    @NotNull
+    private static CornerRadii getCornerRadii(@NotNull String radiiFormat, CornerRadii delt) {
+        CornerRadii cornerRadii = null;
+        if (!radiiFormat.equals("none")) {
+            String[] radii = radiiFormat.split("/");
+            if (radii.length == 1) {
+                cornerRadii = StyleCache.cornerRadii(Double.parseDouble(radii[0]), false);
+            } else if (radii.length == 2) {
+                cornerRadii = StyleCache.cornerRadii(Double.parseDouble(radii[0]), radii[1].equals("true"));
+            }
+        }
+        if (cornerRadii == null) {
+            cornerRadii = delt;
+        }
+        return cornerRadii;
+    }
+
+    @NotNull
+    private static Pos blockAlignment(@NotNull String value) {
+        if (value.equalsIgnoreCase("justify")) {
+            return Pos.BASELINE_CENTER;
+        } else if (value.equalsIgnoreCase("left")) {
+            return Pos.BASELINE_LEFT;
+        } else if (value.equalsIgnoreCase("right")) {
+            return Pos.BASELINE_RIGHT;
+        }
+        return Pos.valueOf(value);
+    }
+
+    @NotNull
+    static TextAlignment posToAlignment(@NotNull String value) {
+        if (value.equalsIgnoreCase("TOP_RIGHT")) {
+            return TextAlignment.RIGHT;
+        } else if (value.equalsIgnoreCase("CENTER_RIGHT")) {
+            return TextAlignment.RIGHT;
+        } else if (value.equalsIgnoreCase("BOTTOM_RIGHT")) {
+            return TextAlignment.RIGHT;
+        } else if (value.equalsIgnoreCase("BASELINE_RIGHT")) {
+            return TextAlignment.RIGHT;
+        } else if (value.equalsIgnoreCase("TOP_LEFT")) {
+            return TextAlignment.LEFT;
+        } else if (value.equalsIgnoreCase("CENTER_LEFT")) {
+            return TextAlignment.LEFT;
+        } else if (value.equalsIgnoreCase("BOTTOM_LEFT")) {
+            return TextAlignment.LEFT;
+        } else if (value.equalsIgnoreCase("BASELINE_LEFT")) {
+            return TextAlignment.LEFT;
+        } else if (value.equalsIgnoreCase("TOP_CENTER")) {
+            return TextAlignment.CENTER;
+        } else if (value.equalsIgnoreCase("BOTTOM_CENTER")) {
+            return TextAlignment.CENTER;
+        } else if (value.equalsIgnoreCase("BASELINE_CENTER")) {
+            return TextAlignment.CENTER;
+        } else {
+            return TextAlignment.valueOf(value);
+        }
+    }
+
+    /**
+     * A value that was parsed, or the error it failed with.
+     */
+    private static final class Parsed<T> {
+        private static final Parsed<?> ABSENT = new Parsed<>(null, null, false);
+
+        private final T value;
+        private final RuntimeException error;
+        private final boolean present;
+
+        private Parsed(T value, RuntimeException error, boolean present) {
+            this.value = value;
+            this.error = error;
+            this.present = present;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Parsed<T> of(String raw, Function<String, T> parser) {
+            if (raw == null) {
+                return (Parsed<T>) ABSENT;
+            }
+            try {
+                return new Parsed<>(parser.apply(raw), null, true);
+            } catch (RuntimeException e) {
+                return new Parsed<>(null, e, true);
+            }
+        }
+
+        private boolean isPresent() {
+            return present;
+        }
+
+        private T get() {
+            if (error != null) {
+                throw error;
+            }
+            return value;
+        }
+    }
+}
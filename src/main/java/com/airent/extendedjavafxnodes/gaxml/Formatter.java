@@ -1,32 +1,15 @@
 package com.airent.extendedjavafxnodes.gaxml;
 
 import com.airent.extendedjavafxnodes.gaxml.themes.Theme;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.Hyperlink;
-import javafx.scene.effect.BlendMode;
-import javafx.scene.layout.Background;
-import javafx.scene.layout.BackgroundFill;
-import javafx.scene.layout.Border;
-import javafx.scene.layout.BorderStroke;
-import javafx.scene.layout.BorderStrokeStyle;
-import javafx.scene.layout.BorderWidths;
-import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
-import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.shape.Shape;
-import javafx.scene.shape.StrokeLineCap;
-import javafx.scene.shape.StrokeLineJoin;
-import javafx.scene.shape.StrokeType;
-import javafx.scene.text.Font;
 import javafx.scene.text.Text;
-import javafx.scene.text.TextAlignment;
 import javafx.scene.text.TextFlow;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.net.URI;
@@ -39,18 +22,17 @@ import static com.airent.extendedjavafxnodes.gaxml.XMLProcessor.onClick;
 
 public class Formatter {
     private final List<Node> textList = new ArrayList<>();
-    private final Attributes baseFormat = new Attributes((org.w3c.dom.Node) null);
+    private final Attributes baseFormat;
     private final Theme theme;
     private double defaultWidth = 668;
+    private boolean coalesceText = true;
 
     public Formatter(Theme theme) {
         this(null, theme);
     }
 
     public Formatter(Attributes baseFormat, Theme theme) {
-        if (baseFormat != null) {
-            this.baseFormat.putAll(baseFormat);
-        }
+        this.baseFormat = baseFormat == null ? new Attributes((org.w3c.dom.Node) null) : new Attributes(baseFormat);
         this.theme = theme;
     }
 
@@ -72,9 +54,7 @@ public class Formatter {
 
     @NotNull
     public Attributes getBaseFormat(Attributes addedFormat) {
-        Attributes format = new Attributes(baseFormat);
-        format.putAll(addedFormat);
-        return format;
+        return new Attributes(baseFormat, addedFormat.getAttributes());
     }
 
     public Theme getTheme() {
@@ -89,6 +69,24 @@ public class Formatter {
         this.defaultWidth = defaultWidth;
     }
 
+    public boolean isCoalesceText() {
+        return coalesceText;
+    }
+
+    /**
+     * Sets whether runs of text that are next to each other in a block and are
+     * formatted the same are merged into one {@link Text}, so that the block has
+     * fewer nodes to lay out.
+     * <BR><BR>
+     * Runs that are links, have a click event, are bound or are highlighted
+     * are never merged. This is on by default.
+     *
+     * @param coalesceText Whether runs of text are merged.
+     */
+    public void setCoalesceText(boolean coalesceText) {
+        this.coalesceText = coalesceText;
+    }
+
     public void add(List<Node> nodes) {
         textList.addAll(nodes);
     }
@@ -111,14 +109,15 @@ public class Formatter {
 
     public Node formatLine(@NotNull Attributes format) {
         format = getBaseFormat(format);
-        double height = 4;
-        if (format.containsKey("size")) {
-            height = Double.parseDouble(format.get("size"));
-        }
         if (!format.containsKey("height")) {
             format.put("height", "40");
         }
-        double ph = Double.parseDouble(format.get("height"));
+        FormatSpec spec = FormatSpec.of(format, theme);
+        double height = 4;
+        if (spec.hasSize()) {
+            height = spec.getSize();
+        }
+        double ph = spec.getHeight();
         if (height > ph) {
             height = ph;
         }
@@ -126,46 +125,32 @@ public class Formatter {
         Rectangle rect = new Rectangle(defaultWidth, height);
         rect.setTranslateY(y);
         
-        applyFormat(rect, format);
-        return applyBlockFormat(List.of(rect), format);
+        applyFormat(rect, spec);
+        return applyBlockFormat(List.of(rect), spec, false);
     }
 
     @NotNull
     public Node format(String message, @NotNull Attributes format) {
-        format = getBaseFormat(format);
+        FormatSpec spec = FormatSpec.of(getBaseFormat(format), theme);
         Node newNode;
-        // font
-        double fontSize = 12.0;
-        String fontType = null;
-        if (format.containsKey("size")) {
-            fontSize = Double.parseDouble(format.get("size"));
-        }
-        if (format.containsKey("font-type")) {
-            fontType = format.get("font-type");
-        }
         Text tNode = new Text(message);
-        if (fontType == null) {
-            tNode.setFont(new javafx.scene.text.Font(fontSize));
-        } else {
-            tNode.setFont(new Font(fontType, fontSize));
-        }
+        tNode.setFont(spec.getFont());
         tNode.setWrappingWidth(defaultWidth);
-        applyFormat(tNode, format);
-        if (!format.containsKey("href")) {
+        applyFormat(tNode, spec);
+        if (spec.getHref() == null) {
             newNode = tNode;
         } else {
-            if (!format.containsKey("color")) {
+            if (!spec.hasColor()) {
                 tNode.setFill(theme.getTertiary());
             }
-            newNode = getHyperlink(tNode, format);
+            newNode = getHyperlink(tNode, spec.getHref());
         }
         return newNode;
     }
 
     @NotNull
-    private Hyperlink getHyperlink(Text tNode, @NotNull Attributes format) {
+    private Hyperlink getHyperlink(Text tNode, @NotNull String path) {
         Hyperlink hyperlink = new Hyperlink("", tNode);
-        String path = format.get("href");
         onClick(hyperlink, event -> {
             if (path.startsWith("goesTo:")) {
                 System.out.println("To Be Implemented Later.");
@@ -192,18 +177,22 @@ public class Formatter {
     }
 
     public void applyFormat(Shape node, @NotNull Attributes format) {
+        applyFormat(node, FormatSpec.of(format, theme));
+    }
+
+    public void applyFormat(Shape node, @NotNull FormatSpec spec) {
         // misc
-        if (format.containsKey("color")) {
-            node.setFill(Color.web(format.get("color")));
+        if (spec.hasColor()) {
+            node.setFill(spec.getColor());
         } else {
             node.setFill(theme.getSecondary());
         }
         double height = -1;
-        if (format.containsKey("height")) {
-            height = Double.parseDouble(format.get("height"));
+        if (spec.hasHeight()) {
+            height = spec.getHeight();
         }
-        if (format.containsKey("width")) {
-            double width = Double.parseDouble(format.get("width"));
+        if (spec.hasWidth()) {
+            double width = spec.getWidth();
             if (height == -1) height = node.prefHeight(width);
             node.resize(width, height);
             if (node instanceof Text) {
@@ -215,132 +204,98 @@ public class Formatter {
             }
         }
         // outline
-        if (format.containsKey("outline-color")) {
-            node.setStroke(Color.web(format.get("outline-color")));
+        if (spec.getOutlineColor() != null) {
+            node.setStroke(spec.getOutlineColor());
         }
-        if (format.containsKey("outline-width")) {
-            node.setStrokeWidth(Double.parseDouble(format.get("outline-width")));
+        if (spec.getOutlineWidth() != null) {
+            node.setStrokeWidth(spec.getOutlineWidth());
         }
-        if (format.containsKey("outline-miter")) {
-            node.setStrokeMiterLimit(Double.parseDouble(format.get("outline-miter")));
+        if (spec.getOutlineMiter() != null) {
+            node.setStrokeMiterLimit(spec.getOutlineMiter());
         }
-        if (format.containsKey("outline-dash-offset")) {
-            node.setStrokeDashOffset(Double.parseDouble(format.get("outline-dash-offset")));
+        if (spec.getOutlineDashOffset() != null) {
+            node.setStrokeDashOffset(spec.getOutlineDashOffset());
         }
-        if (format.containsKey("outline-type")) {
-            node.setStrokeType(StrokeType.valueOf(format.get("outline-type")));
+        if (spec.getOutlineType() != null) {
+            node.setStrokeType(spec.getOutlineType());
         }
-        if (format.containsKey("outline-line-cap")) {
-            node.setStrokeLineCap(StrokeLineCap.valueOf(format.get("outline-line-cap")));
+        if (spec.getOutlineLineCap() != null) {
+            node.setStrokeLineCap(spec.getOutlineLineCap());
         }
-        if (format.containsKey("outline-line-join")) {
-            node.setStrokeLineJoin(StrokeLineJoin.valueOf(format.get("outline-line-join")));
+        if (spec.getOutlineLineJoin() != null) {
+            node.setStrokeLineJoin(spec.getOutlineLineJoin());
         }
         // special
-        if (format.containsKey("blend")) {
-            node.setBlendMode(BlendMode.valueOf(format.get("blend")));
+        if (spec.getBlend() != null) {
+            node.setBlendMode(spec.getBlend());
         }
         // CSS
-        if (format.containsKey("class")) {
-            String[] classes = format.get("class").split(" ");
-            node.getStyleClass().addAll(classes);
+        if (spec.getClasses() != null) {
+            node.getStyleClass().addAll(spec.getClasses());
         }
     }
 
     public void applyFormat(Text node, @NotNull Attributes format) {
+        applyFormat(node, FormatSpec.of(format, theme));
+    }
+
+    public void applyFormat(Text node, @NotNull FormatSpec spec) {
         // apply shape relevant
-        applyFormat((Shape) node, format);
+        applyFormat((Shape) node, spec);
         // misc
-        if (format.containsKey("tab-size")) {
-            node.setTabSize(Integer.parseInt(format.get("tab-size")));
+        if (spec.getTabSize() != null) {
+            node.setTabSize(spec.getTabSize());
         }
-        if (format.containsKey("align")) {
-            node.setTextAlignment(posToAlignment(format.get("align")));
+        if (spec.hasAlign()) {
+            node.setTextAlignment(spec.getTextAlignment());
         }
         // highlighting (selection)
-        if (format.containsKey("highlight-color")) {
-            node.setSelectionFill(Color.web(format.get("highlight-color")));
+        if (spec.getHighlightColor() != null) {
+            node.setSelectionFill(spec.getHighlightColor());
         }
-        if (format.containsKey("highlight-start")) {
-            node.setSelectionStart(Integer.parseInt(format.get("highlight-start")));
+        if (spec.getHighlightStart() != null) {
+            node.setSelectionStart(spec.getHighlightStart());
         }
-        if (format.containsKey("highlight-end")) {
-            node.setSelectionStart(Integer.parseInt(format.get("highlight-end")));
+        if (spec.getHighlightEnd() != null) {
+            node.setSelectionStart(spec.getHighlightEnd());
         }
         // special
-        if (format.containsKey("strikethrough")) {
-            node.setStrikethrough(Boolean.parseBoolean(format.get("strikethrough")));
+        if (spec.getStrikethrough() != null) {
+            node.setStrikethrough(Boolean.parseBoolean(spec.getStrikethrough()));
         }
-        if (format.containsKey("underline")) {
+        if (spec.getUnderline() != null) {
             node.setUnderline(true);
-            String underlineType = format.get("underline");
+            String underlineType = spec.getUnderline();
             if (!underlineType.contains("full")) {
-                String[] underline = new String[0];
+                int[] underline = null;
                 if (underlineType.contains("half")) {
                     if (underlineType.contains("start")) {
-                        underline = new String[]{
-                                "0", String.valueOf(node.getText().length()/2)
-                        };
+                        underline = new int[]{0, node.getText().length()/2};
                     } else if (underlineType.contains("end")) {
-                        underline = new String[]{
-                                String.valueOf(node.getText().length()/2),
-                                String.valueOf(node.getText().length())
-                        };
+                        underline = new int[]{node.getText().length()/2, node.getText().length()};
                     }
                 } else {
-                    underline = format.get("underline").split(" ");
+                    underline = spec.getUnderlineRange();
                 }
-                if (underline.length == 2) {
-                    node.underlineShape(Integer.parseInt(underline[0]), Integer.parseInt(underline[1]));
+                if (underline != null) {
+                    node.underlineShape(underline[0], underline[1]);
                 }
             }
         }
     }
 
-    private TextAlignment posToAlignment(@NotNull String value) {
-        if (value.equalsIgnoreCase("TOP_RIGHT")) {
-            return TextAlignment.RIGHT;
-        } else if (value.equalsIgnoreCase("CENTER_RIGHT")) {
-            return TextAlignment.RIGHT;
-        } else if (value.equalsIgnoreCase("BOTTOM_RIGHT")) {
-            return TextAlignment.RIGHT;
-        } else if (value.equalsIgnoreCase("BASELINE_RIGHT")) {
-            return TextAlignment.RIGHT;
-        } else if (value.equalsIgnoreCase("TOP_LEFT")) {
-            return TextAlignment.LEFT;
-        } else if (value.equalsIgnoreCase("CENTER_LEFT")) {
-            return TextAlignment.LEFT;
-        } else if (value.equalsIgnoreCase("BOTTOM_LEFT")) {
-            return TextAlignment.LEFT;
-        } else if (value.equalsIgnoreCase("BASELINE_LEFT")) {
-            return TextAlignment.LEFT;
-        } else if (value.equalsIgnoreCase("TOP_CENTER")) {
-            return TextAlignment.CENTER;
-        } else if (value.equalsIgnoreCase("BOTTOM_CENTER")) {
-            return TextAlignment.CENTER;
-        } else if (value.equalsIgnoreCase("BASELINE_CENTER")) {
-            return TextAlignment.CENTER;
-        } else {
-            return TextAlignment.valueOf(value);
-        }
-    }
-
     @NotNull
     public Pane applyBlockFormat(@NotNull List<Node> nodeList, @NotNull Attributes format) {
-        return applyBlockFormat(nodeList, format, false);
+        return applyBlockFormat(nodeList, FormatSpec.of(format, theme), false);
     }
 
     @NotNull
-    private Pane subductedBlockFormat(@NotNull List<Node> nodeList, @NotNull Attributes format) {
-        Attributes attrs = new Attributes(format);
-        attrs.remove("height");
-        attrs.remove("border");
-        attrs.remove("background");
-        return applyBlockFormat(nodeList, format, true);
+    public Pane applyBlockFormat(@NotNull List<Node> nodeList, @NotNull FormatSpec spec) {
+        return applyBlockFormat(nodeList, spec, false);
     }
 
     @NotNull
-    private Pane applyBlockFormat(@NotNull List<Node> nodeList, @NotNull Attributes format, boolean subducted) {
+    private Pane applyBlockFormat(@NotNull List<Node> nodeList, @NotNull FormatSpec spec, boolean subducted) {
         boolean canTextFlow = true;
         List<Node> nodes = new ArrayList<>();
         List<Node> tempNodes = new ArrayList<>();
@@ -350,7 +305,7 @@ public class Formatter {
             } else {
                 canTextFlow = false;
                 if (!tempNodes.isEmpty()) {
-                    nodes.add(subductedBlockFormat(tempNodes, format));
+                    nodes.add(applyBlockFormat(tempNodes, spec, true));
                     tempNodes.clear();
                 }
                 nodes.add(node);
@@ -358,11 +313,11 @@ public class Formatter {
         }
 
         if (!tempNodes.isEmpty() && !subducted) {
-            nodes.add(subductedBlockFormat(tempNodes, format));
+            nodes.add(applyBlockFormat(tempNodes, spec, true));
             tempNodes.clear();
         } else {
             if (nodes.isEmpty()) {
-                nodes = tempNodes;
+                nodes = coalesceText ? coalesce(tempNodes) : tempNodes;
             }
         }
 
@@ -373,144 +328,109 @@ public class Formatter {
             pane = new VBox();
         }
         pane.getChildren().addAll(nodes);
-        if (format.containsKey("width")) {
-            double width = Double.parseDouble(format.get("width"));
+        if (spec.hasWidth()) {
+            double width = spec.getWidth();
             pane.setMaxWidth(width);
             pane.setPrefWidth(width);
         } else {
             pane.setMaxWidth(defaultWidth);
             pane.setPrefWidth(defaultWidth);
         }
-        if (format.containsKey("height")) {
-            double height = Double.parseDouble(format.get("height"));
+        if (spec.hasHeight()) {
+            double height = spec.getHeight();
             pane.setMaxHeight(height);
             pane.setPrefHeight(height);
         }
-        if (format.containsKey("align")) {
+        if (spec.hasAlign()) {
             if (pane instanceof VBox vBox) {
-                if (format.get("align").equalsIgnoreCase("justify")) {
-                    vBox.setAlignment(Pos.BASELINE_CENTER);
-                } else if (format.get("align").equalsIgnoreCase("left")) {
-                    vBox.setAlignment(Pos.BASELINE_LEFT);
-                } else if (format.get("align").equalsIgnoreCase("right")) {
-                    vBox.setAlignment(Pos.BASELINE_RIGHT);
-                } else {
-                    vBox.setAlignment(Pos.valueOf(format.get("align")));
-                }
+                vBox.setAlignment(spec.getBlockAlignment());
             } else {
                 TextFlow textFlow = (TextFlow) pane;
-                textFlow.setTextAlignment(posToAlignment(format.get("align")));
+                textFlow.setTextAlignment(spec.getTextAlignment());
             }
         }
         // border
-        if (format.containsKey("border")) {
-            String[] borderFormat = format.get("border").split(" ");
-            BorderStroke borderStroke = null;
-            if (borderFormat.length == 1 && !borderFormat[0].equals("none")) {
-                borderFormat = new String[] {
-                        borderFormat[0], "solid", "none", theme.getSecondary().toString(), "none"
-                };
-            } else if (borderFormat.length == 2) {
-                borderFormat = new String[] {
-                        borderFormat[0], "solid", "none", borderFormat[1], "none"
-                };
-            } else if (borderFormat.length == 3) {
-                borderFormat = new String[] {
-                        borderFormat[0], borderFormat[1], "none", borderFormat[2], "none"
-                };
-            } else if (borderFormat.length == 4) {
-                borderFormat = new String[] {
-                        borderFormat[0], borderFormat[1], borderFormat[2], borderFormat[3], "none"
-                };
-            }
-            if (borderFormat.length == 5) {
-                BorderStrokeStyle strokeStyle = switch (borderFormat[1]) {
-                    case "solid" -> BorderStrokeStyle.SOLID;
-                    case "dotted" -> BorderStrokeStyle.DOTTED;
-                    case "dashed" -> BorderStrokeStyle.DASHED;
-                    case "none" -> BorderStrokeStyle.NONE;
-                    case null, default -> BorderStrokeStyle.SOLID;
-                };
-                CornerRadii cornerRadii = getCornerRadii(borderFormat[2], CornerRadii.EMPTY);
-                javafx.geometry.Insets insets = getInsets(borderFormat[4], javafx.geometry.Insets.EMPTY);
-                borderStroke = new BorderStroke(Color.web(borderFormat[3]), strokeStyle, cornerRadii, new BorderWidths(Double.parseDouble(borderFormat[0])), insets);
-            }
-            if (borderStroke != null) {
-                pane.setBorder(new Border(borderStroke));
-            } else {
-                pane.setBorder(Border.EMPTY);
-            }
+        if (spec.hasBorder()) {
+            pane.setBorder(spec.getBorder());
         }
         // background
-        if (format.containsKey("background")) {
-            String[] bgFormat = format.get("background").split(" ");
-            BackgroundFill backgroundFill = null;
-            if (bgFormat.length == 1 && !bgFormat[0].equals("none")) {
-                bgFormat = new String[] {
-                        bgFormat[0], "none", "none"
-                };
-            } else if (bgFormat.length == 2) {
-                bgFormat = new String[] {
-                        bgFormat[0], bgFormat[1], "none"
-                };
-            }
-            if (Objects.equals(bgFormat[0], "default")) {
-                bgFormat[0] = theme.getPrimary().toString();
-            }
-            if (bgFormat.length == 3) {
-                CornerRadii cornerRadii = getCornerRadii(bgFormat[1], pane.getBorder().getStrokes().getFirst().getRadii());
-                javafx.geometry.Insets insets = getInsets(bgFormat[2], pane.getBorder().getStrokes().getFirst().getInsets());
-                backgroundFill = new BackgroundFill(Color.web(bgFormat[0]), cornerRadii, insets);
-            }
-            if (backgroundFill != null) {
-                pane.setBackground(new Background(backgroundFill));
-            } else {
-                pane.setBackground(Background.EMPTY);
-            }
+        if (spec.hasBackground()) {
+            pane.setBackground(spec.getBackground());
         }
         return pane;
     }
 
-    @Nullable
-    private static javafx.geometry.Insets getInsets(@NotNull String insetsFormat, javafx.geometry.Insets delt) {
-        javafx.geometry.Insets insets = null;
-        if (!insetsFormat.equals("none")) {
-            String[] ins = insetsFormat.split("/");
-            if (ins.length == 2) {
-                ins = new String[] {
-                        ins[0], ins[1], ins[0], ins[1]
-                };
-            } else if (ins.length == 3) {
-                ins = new String[] {
-                        ins[0], ins[1], ins[2], ins[1]
-                };
-            }
-            if (ins.length == 4) {
-                insets = new javafx.geometry.Insets(Double.parseDouble(ins[0]), Double.parseDouble(ins[1]), Double.parseDouble(ins[2]), Double.parseDouble(ins[3]));
-            } else if (ins.length == 1) {
-                insets = new Insets(Double.parseDouble(ins[0]));
+    /**
+     * Merges the runs of text that are formatted the same.
+     * The first run of each merged group is kept and gets the text of the group.
+     */
+    @NotNull
+    private static List<Node> coalesce(@NotNull List<Node> runs) {
+        List<Node> nodes = new ArrayList<>(runs.size());
+        Text first = null;
+        StringBuilder merged = null;
+        for (Node node : runs) {
+            if (node instanceof Text run && canCoalesce(run)) {
+                if (first != null && isSameFormat(first, run)) {
+                    if (merged == null) {
+                        merged = new StringBuilder(first.getText());
+                    }
+                    merged.append(run.getText());
+                    continue;
+                }
+                if (merged != null) {
+                    first.setText(merged.toString());
+                    merged = null;
+                }
+                first = run;
+            } else {
+                if (merged != null) {
+                    first.setText(merged.toString());
+                    merged = null;
+                }
+                first = null;
             }
+            nodes.add(node);
         }
-        if (insets == null) {
-            insets = delt;
+        if (merged != null) {
+            first.setText(merged.toString());
         }
-        return insets;
+        return nodes;
     }
 
-    @NotNull
-    private static CornerRadii getCornerRadii(@NotNull String radiiFormat, CornerRadii delt) {
-        CornerRadii cornerRadii = null;
-        if (!radiiFormat.equals("none")) {
-            String[] radii = radiiFormat.split("/");
-            if (radii.length == 1) {
-                cornerRadii = new CornerRadii(Double.parseDouble(radii[0]));
-            } else if (radii.length == 2) {
-                cornerRadii = new CornerRadii(Double.parseDouble(radii[0]), radii[1].equals("true"));
-            }
-        }
-        if (cornerRadii == null) {
-            cornerRadii = delt;
-        }
-        return cornerRadii;
+    private static boolean canCoalesce(@NotNull Text run) {
+        return !run.textProperty().isBound()
+                && run.getOnMouseClicked() == null
+                && run.getSelectionStart() < 0
+                && run.getId() == null
+                && run.getStyle().isEmpty()
+                && run.getEffect() == null
+                && run.getClip() == null
+                && !run.hasProperties();
+    }
+
+    private static boolean isSameFormat(@NotNull Text a, @NotNull Text b) {
+        return a.getFont().equals(b.getFont())
+                && Objects.equals(a.getFill(), b.getFill())
+                && a.getWrappingWidth() == b.getWrappingWidth()
+                && a.isUnderline() == b.isUnderline()
+                && a.isStrikethrough() == b.isStrikethrough()
+                && a.getTabSize() == b.getTabSize()
+                && a.getTextAlignment() == b.getTextAlignment()
+                && a.getLineSpacing() == b.getLineSpacing()
+                && Objects.equals(a.getSelectionFill(), b.getSelectionFill())
+                && Objects.equals(a.getStroke(), b.getStroke())
+                && a.getStrokeWidth() == b.getStrokeWidth()
+                && a.getStrokeMiterLimit() == b.getStrokeMiterLimit()
+                && a.getStrokeDashOffset() == b.getStrokeDashOffset()
+                && a.getStrokeType() == b.getStrokeType()
+                && a.getStrokeLineCap() == b.getStrokeLineCap()
+                && a.getStrokeLineJoin() == b.getStrokeLineJoin()
+                && a.getBlendMode() == b.getBlendMode()
+                && a.getOpacity() == b.getOpacity()
+                && a.getTranslateX() == b.getTranslateX()
+                && a.getTranslateY() == b.getTranslateY()
+                && a.isVisible() == b.isVisible()
+                && a.getStyleClass().equals(b.getStyleClass());
     }
 }
@@ -0,0 +1,224 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import com.airent.extendedjavafxnodes.utils.Pair;
+import javafx.scene.Node;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves and loads the GA-XML files of inline pages.
+ * <BR><BR>
+ * The path of every included file is only resolved once, and the processor
+ * of the file is shared through the segment registry, so including the same
+ * template many times doesn't read or compile it again.
+ * The loaded nodes cannot be kept, since a node can only be in the scene once
+ * and var and math tags may give a different value each time.
+ * <BR><BR>
+ * Includes that include themselves, directly or through other files,
+ * are detected and fail with an error that names the whole cycle.
+ */
+public class IncludeResolver {
+    private final HashMap<String, Path> paths = new HashMap<>();
+    private final HashMap<Path, Long> fanOut = new HashMap<>();
+    private final ThreadLocal<ArrayDeque<Path>> including = ThreadLocal.withInitial(ArrayDeque::new);
+    private long includes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private int maxDepth = 0;
+
+    IncludeResolver() {}
+
+    /**
+     * Loads the file of an inline page.
+     *
+     * @param includer The processor of the file with the inline page.
+     * @param path The path of the inline page.
+     * @param baseFormat The format the inline page is loaded with.
+     * @return The loaded nodes of the included file.
+     */
+    @NotNull
+    List<Node> include(@NotNull XMLProcessor includer, @NotNull String path, Attributes baseFormat) {
+        XMLProcessor processor = resolve(path);
+        Path file = processor.getFilePath();
+        ArrayDeque<Path> stack = including.get();
+        boolean root = stack.isEmpty();
+        if (root) {
+            stack.push(includer.getFilePath());
+        }
+        try {
+            if (stack.contains(file)) {
+                String cycle = stack.reversed().stream()
+                        .dropWhile(p -> !p.equals(file))
+                        .map(Path::toString)
+                        .collect(Collectors.joining(" -> "));
+                throw new RuntimeException("Include cycle detected: " + cycle + " -> " + file);
+            }
+            stack.push(file);
+            try {
+                count(file, stack.size()-1);
+                Pair<List<CompiledNode>, Attributes> blocks = processor.getBlocks(baseFormat == null ? null : new Attributes(baseFormat));
+                return processor.loadBlocks(blocks.getKey(), blocks.getValue());
+            } finally {
+                stack.pop();
+            }
+        } finally {
+            if (root) {
+                stack.pop();
+            }
+        }
+    }
+
+    /**
+     * Gets the processor of the file of an inline page, the path is only resolved once.
+     *
+     * @param path The path of the inline page.
+     * @return The processor of the included file.
+     */
+    @NotNull
+    XMLProcessor resolve(@NotNull String path) {
+        Path file;
+        synchronized (this) {
+            file = paths.get(path);
+        }
+        if (file != null) {
+            synchronized (this) {
+                hits++;
+            }
+            return XMLProcessor.of(file);
+        }
+        XMLProcessor processor = new XMLProcessor(path);
+        synchronized (this) {
+            misses++;
+            paths.put(path, processor.getFilePath());
+        }
+        return processor;
+    }
+
+    private synchronized void count(@NotNull Path file, int depth) {
+        includes++;
+        maxDepth = Math.max(maxDepth, depth);
+        fanOut.merge(file, 1L, Long::sum);
+    }
+
+    /**
+     * Forgets all resolved paths and include counts.
+     */
+    public synchronized void clear() {
+        paths.clear();
+        fanOut.clear();
+    }
+
+    /**
+     * Gets the fan-out of each included file, which is
+     * how many times the file was included.
+     *
+     * @return An unmodifiable snapshot of the include count of each file.
+     */
+    public synchronized Map<Path, Long> getFanOut() {
+        return Collections.unmodifiableMap(new HashMap<>(fanOut));
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(includes, fanOut.size(), hits, misses, maxDepth);
+    }
+
+    /**
+     * Starts the statistics over, files only count as templates
+     * again once they are included after this. The resolved paths are kept.
+     */
+    public synchronized void resetStats() {
+        includes = 0;
+        hits = 0;
+        misses = 0;
+        maxDepth = 0;
+        fanOut.clear();
+    }
+
+    /**
+     * A snapshot of the statistics of an {@link IncludeResolver}.
+     */
+    public static final class Stats {
+        private final long includes;
+        private final int templates;
+        private final long hits;
+        private final long misses;
+        private final int maxDepth;
+
+        private Stats(long includes, int templates, long hits, long misses, int maxDepth) {
+            this.includes = includes;
+            this.templates = templates;
+            this.hits = hits;
+            this.misses = misses;
+            this.maxDepth = maxDepth;
+        }
+
+        /**
+         * Gets the total amount of inline pages that were loaded.
+         *
+         * @return The include count.
+         */
+        public long getIncludes() {
+            return includes;
+        }
+
+        /**
+         * Gets the amount of different files that were included.
+         *
+         * @return The template count.
+         */
+        public int getTemplates() {
+            return templates;
+        }
+
+        /**
+         * Gets how many times the file of an include was already resolved.
+         *
+         * @return The resolved path hits.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Gets how many times the path of an include had to be resolved.
+         *
+         * @return The resolved path misses.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Gets the deepest that inline pages were nested.
+         *
+         * @return The max include depth.
+         */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * Gets the average fan-out, which is how many times
+         * each included file was included on average.
+         *
+         * @return The average fan-out.
+         */
+        public double getAverageFanOut() {
+            return templates == 0 ? 0 : (double) includes / templates;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{includes=" + includes + ", templates=" + templates + ", hits=" + hits
+                    + ", misses=" + misses + ", maxDepth=" + maxDepth + "}";
+        }
+    }
+}
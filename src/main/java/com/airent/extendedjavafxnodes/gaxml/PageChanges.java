@@ -0,0 +1,248 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * What changed outside of the top level blocks of a page when it was compiled again,
+ * which makes blocks that are equal to their old version show something else.
+ * <BR><BR>
+ * A block is stale when it calls a variable whose value changed, including variables
+ * that are calculated from changed variables, when it uses a 'script.' reference
+ * and the scripts of the page changed, or when it includes a file that changed,
+ * directly or through the files that file includes. When the processor is
+ * {@link XMLProcessor#isReactive() reactive}, the bindings of the old page are
+ * dropped, so every block with var or math tags is stale.
+ */
+final class PageChanges {
+    private final XMLProcessor processor;
+    private final Set<String> variables;
+    private final boolean scripts;
+    private final Set<String> includes;
+    private final boolean rebound;
+
+    private PageChanges(XMLProcessor processor, Set<String> variables, boolean scripts, Set<String> includes, boolean rebound) {
+        this.processor = processor;
+        this.variables = variables;
+        this.scripts = scripts;
+        this.includes = includes;
+        this.rebound = rebound;
+    }
+
+    /**
+     * Finds what changed between two compilations of the page of a processor.
+     * Included files that changed since they were last seen are reloaded.
+     *
+     * @param processor The processor of the page.
+     * @param old The page that the blocks were loaded from.
+     * @param now The page that was compiled again.
+     * @param included The last modified time of every included file when it was last seen,
+     *                 this is updated to the files that the new page includes.
+     * @return The changes.
+     */
+    @NotNull
+    static PageChanges of(@NotNull XMLProcessor processor, @NotNull CompiledPage old, @NotNull CompiledPage now, @NotNull Map<Path, FileTime> included) {
+        boolean scripts = !old.getElementsByTagName("script").equals(now.getElementsByTagName("script"))
+                || !old.getElementsByTagName("function").equals(now.getElementsByTagName("function"));
+        Set<String> includes = new HashSet<>();
+        Map<Path, FileTime> seen = new HashMap<>();
+        for (String path : includesOf(now.getNodes())) {
+            if (checkIncluded(path, included, seen)) {
+                includes.add(path);
+            }
+        }
+        included.clear();
+        included.putAll(seen);
+        boolean rebound = processor.isReactive() && old != now;
+        return new PageChanges(processor, changedVariables(processor, old, now, scripts), scripts, includes, rebound);
+    }
+
+    /**
+     * Remembers when the files that a page includes were last modified, without reloading them.
+     *
+     * @param page The page.
+     * @param included The map to put the times in.
+     */
+    static void record(@NotNull CompiledPage page, @NotNull Map<Path, FileTime> included) {
+        for (String path : includesOf(page.getNodes())) {
+            checkIncluded(path, Map.of(), included);
+        }
+    }
+
+    /**
+     * Checks whether a block shows something else than when it was loaded.
+     *
+     * @param block The block.
+     * @return True if the block has to be loaded again.
+     */
+    boolean isStale(@NotNull CompiledNode block) {
+        if (variables.isEmpty() && !scripts && includes.isEmpty() && !rebound) {
+            return false;
+        }
+        return isStale(List.of(block));
+    }
+
+    private boolean isStale(@NotNull List<CompiledNode> nodes) {
+        for (CompiledNode node : nodes) {
+            switch (node) {
+                case CompiledNode.Value value -> {
+                    if (rebound) return true;
+                    if (value.isMath()) {
+                        if (usesChanged(value.getVariables())) return true;
+                    } else if (value.getName() == null) {
+                        // the name is inherited from the format, so any variable may be called
+                        if (!variables.isEmpty()) return true;
+                    } else if (variables.contains(value.getName())) {
+                        return true;
+                    }
+                }
+                case CompiledNode.Include include -> {
+                    if (includes.contains(include.getPath())) return true;
+                }
+                default -> {}
+            }
+            if (node instanceof CompiledNode.Element elm && isStale(elm.getChildren())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean usesChanged(@NotNull String[] references) {
+        return uses(processor, references, variables, scripts);
+    }
+
+    /**
+     * Checks whether variables reference a changed variable or, if the scripts changed, a script.
+     */
+    private static boolean uses(@NotNull XMLProcessor processor, @NotNull String[] references, @NotNull Set<String> variables, boolean scripts) {
+        boolean[] used = {false};
+        for (String reference : references) {
+            processor.parseVariable(false, reference, ref -> {
+                if (ref.startsWith("inFile.") ? variables.contains(ref.substring(7)) : scripts) {
+                    used[0] = true;
+                }
+                return null;
+            });
+            if (used[0]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the names of the variables that have another value in the new page,
+     * because their tag changed or because they are calculated from a changed variable or script.
+     */
+    @NotNull
+    private static Set<String> changedVariables(@NotNull XMLProcessor processor, @NotNull CompiledPage old, @NotNull CompiledPage now, boolean scripts) {
+        Set<String> names = new HashSet<>();
+        for (CompiledNode.Element elm : old.getElementsByTagName("variable")) {
+            names.add(elm.getAttribute("name"));
+        }
+        for (CompiledNode.Element elm : now.getElementsByTagName("variable")) {
+            names.add(elm.getAttribute("name"));
+        }
+        names.remove(null);
+        Set<String> changed = new HashSet<>();
+        for (String name : names) {
+            if (!Objects.equals(old.getVariable(name), now.getVariable(name))) {
+                changed.add(name);
+            }
+        }
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (String name : names) {
+                CompiledNode.Variable variable = now.getVariable(name);
+                if (variable == null || changed.contains(name)) continue;
+                String[] references;
+                if (variable.isMathParse()) {
+                    references = variable.getVariables();
+                } else if (variable.getValue() != null && variable.getValue().startsWith("script.")) {
+                    references = new String[]{variable.getValue()};
+                } else {
+                    continue;
+                }
+                if (uses(processor, references, changed, scripts)) {
+                    changed.add(name);
+                    grew = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    @NotNull
+    private static Set<String> includesOf(@NotNull List<CompiledNode> nodes) {
+        Set<String> paths = new HashSet<>();
+        collectIncludes(nodes, paths);
+        return paths;
+    }
+
+    private static void collectIncludes(@NotNull List<CompiledNode> nodes, @NotNull Set<String> paths) {
+        for (CompiledNode node : nodes) {
+            if (node instanceof CompiledNode.Include include) {
+                paths.add(include.getPath());
+            }
+            if (node instanceof CompiledNode.Element elm) {
+                collectIncludes(elm.getChildren(), paths);
+            }
+        }
+    }
+
+    /**
+     * Checks whether an included file, or a file it includes, was modified since it was last seen,
+     * modified files are reloaded.
+     *
+     * @param path The path of the inline page.
+     * @param last The times the files were last seen with.
+     * @param seen The times of the files that are checked are put here, files in it are not checked again.
+     * @return True if a file changed.
+     */
+    private static boolean checkIncluded(@NotNull String path, @NotNull Map<Path, FileTime> last, @NotNull Map<Path, FileTime> seen) {
+        XMLProcessor target;
+        try {
+            target = XMLProcessor.getIncludes().resolve(path);
+        } catch (RuntimeException e) {
+            // includes that can't be found fail when they are loaded
+            return false;
+        }
+        Path file = target.getFilePath();
+        if (seen.containsKey(file)) {
+            return !Objects.equals(last.get(file), seen.get(file));
+        }
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            modified = null;
+        }
+        seen.put(file, modified);
+        boolean changed = last.containsKey(file) && !Objects.equals(last.get(file), modified);
+        if (changed) {
+            try {
+                target.reload();
+            } catch (IOException e) {
+                System.out.println("Failed to reload included file: " + e.getMessage());
+            }
+        }
+        for (String nested : includesOf(target.getCompiled().getNodes())) {
+            if (checkIncluded(nested, last, seen)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,332 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the files and directories under a directory, by name.
+ * <BR><BR>
+ * The directory is only listed as deep as lookups have asked for, after which finding
+ * a file by name is a lookup instead of listing the directories again. The index can be
+ * kept up to date with a {@link WatchService} by calling {@link #watch()}. An index that
+ * isn't watched checks when a lookup misses, or finds a file that was removed, which of
+ * its directories were modified since they were listed, and only lists those again.
+ * <BR><BR>
+ * When many files with the same name are under the directory,
+ * the one closest to the directory is found, and between files that are
+ * equally deep, the first by path.
+ */
+public final class ResourceIndex implements Closeable {
+    private static final ConcurrentHashMap<Path, ResourceIndex> indexes = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final HashMap<String, List<Path>> byName = new HashMap<>();
+    private final HashMap<Path, Listing> listings = new HashMap<>();
+    /**
+     * How deep the root was listed, -1 before the first lookup.
+     */
+    private int depth = -1;
+    private WatchService watcher;
+    private Thread watchThread;
+
+    private ResourceIndex(@NotNull Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the index of the provided directory, an index is
+     * made if there isn't one yet. Nothing is listed until the first lookup.
+     *
+     * @param directory The directory to find files in.
+     * @return The index of the directory.
+     */
+    @NotNull
+    public static ResourceIndex of(@NotNull Path directory) {
+        return indexes.computeIfAbsent(directory.toAbsolutePath().normalize(), ResourceIndex::new);
+    }
+
+    /**
+     * Stops watching and forgets all indexes.
+     */
+    public static void clearAll() {
+        for (ResourceIndex index : indexes.values()) {
+            index.close();
+        }
+        indexes.clear();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return How deep the directory was listed, -1 if it wasn't listed yet.
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Finds a file or directory by name under the directory of this index.
+     *
+     * @param name The name of the file or directory.
+     * @param depth How deep to look, 0 only looks at the direct children of the directory.
+     * @return The path that was found, or null if there is none.
+     */
+    public Path find(@NotNull String name, int depth) {
+        Path found;
+        synchronized (this) {
+            if (depth > this.depth) {
+                deepen(depth);
+            }
+            found = lookup(name, depth);
+            if (watcher == null && (found == null || !Files.exists(found)) && refresh()) {
+                found = lookup(name, depth);
+            }
+        }
+        return found;
+    }
+
+    private Path lookup(@NotNull String name, int depth) {
+        List<Path> paths = byName.get(name);
+        if (paths == null) return null;
+        Path found = null;
+        int foundDepth = Integer.MAX_VALUE;
+        for (Path path : paths) {
+            int pathDepth = root.relativize(path).getNameCount() - 1;
+            if (pathDepth <= depth && (pathDepth < foundDepth
+                    || (pathDepth == foundDepth && path.compareTo(found) < 0))) {
+                found = path;
+                foundDepth = pathDepth;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Lists the directory again, as deep as it was listed.
+     */
+    public synchronized void rescan() {
+        byName.clear();
+        listings.clear();
+        if (depth >= 0) {
+            list(root, 0);
+        }
+    }
+
+    /**
+     * Keeps this index up to date with a {@link WatchService}, until {@link #close()} is called.
+     *
+     * @throws IOException If the file system cannot be watched.
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) return;
+        watcher = FileSystems.getDefault().newWatchService();
+        for (Path directory : listings.keySet()) {
+            register(directory);
+        }
+        WatchService service = watcher;
+        watchThread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    update(key);
+                    if (!key.reset()) {
+                        synchronized (this) {
+                            forget((Path) key.watchable());
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+        }, "ResourceIndex-" + root.getFileName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public synchronized boolean isWatching() {
+        return watcher != null;
+    }
+
+    /**
+     * Stops watching the file system, the modified directories are listed again when the index misses.
+     */
+    @Override
+    public synchronized void close() {
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException ignored) {}
+        watchThread.interrupt();
+        watcher = null;
+        watchThread = null;
+    }
+
+    private synchronized void update(@NotNull WatchKey key) {
+        Path directory = (Path) key.watchable();
+        Listing listing = listings.get(directory);
+        if (listing == null) return;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan();
+                return;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                if (!listing.entries.contains(path)) {
+                    listing.entries.add(path);
+                    add(path);
+                }
+                if (listing.level < depth && Files.isDirectory(path)) {
+                    list(path, listing.level + 1);
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                listing.entries.remove(path);
+                remove(path);
+                forget(path);
+            }
+        }
+    }
+
+    private void register(Path directory) {
+        try {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.OVERFLOW);
+        } catch (IOException ignored) {
+            // the directory was removed, its delete event removes it from the index
+        }
+    }
+
+    /**
+     * Lists the directories that are one level deeper than the index was listed, until it is as deep as asked.
+     */
+    private void deepen(int depth) {
+        int from = this.depth;
+        this.depth = depth;
+        if (from < 0) {
+            list(root, 0);
+            return;
+        }
+        for (Listing listing : new ArrayList<>(listings.values())) {
+            if (listing.level == from) {
+                for (Path entry : listing.entries) {
+                    if (Files.isDirectory(entry)) {
+                        list(entry, from + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists again the directories that were modified since they were listed.
+     *
+     * @return If any directory was listed again.
+     */
+    private boolean refresh() {
+        boolean changed = false;
+        for (Listing listing : new ArrayList<>(listings.values())) {
+            // a directory listed again in this loop also listed the directories under it
+            if (listings.get(listing.directory) != listing) continue;
+            if (!Objects.equals(listing.modified, modified(listing.directory))) {
+                forget(listing.directory);
+                if (Files.isDirectory(listing.directory)) {
+                    list(listing.directory, listing.level);
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void list(@NotNull Path directory, int level) {
+        // registered before its content is listed, so nothing made in between is missed
+        if (watcher != null) {
+            register(directory);
+        }
+        Listing listing = new Listing(directory, level, modified(directory));
+        listings.put(directory, listing);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                listing.entries.add(entry);
+                add(entry);
+            }
+        } catch (IOException ignored) {
+            // the directory was removed or can't be read, it is listed again when it is modified
+        }
+        if (level < depth) {
+            for (Path entry : listing.entries) {
+                if (Files.isDirectory(entry)) {
+                    list(entry, level + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the content of a directory, and of the directories under it.
+     */
+    private void forget(@NotNull Path directory) {
+        Listing listing = listings.remove(directory);
+        if (listing == null) return;
+        for (Path entry : listing.entries) {
+            remove(entry);
+            forget(entry);
+        }
+    }
+
+    private void add(@NotNull Path path) {
+        List<Path> paths = byName.computeIfAbsent(path.getFileName().toString(), k -> new ArrayList<>(1));
+        if (!paths.contains(path)) {
+            paths.add(path);
+        }
+    }
+
+    private void remove(@NotNull Path path) {
+        String name = path.getFileName().toString();
+        List<Path> paths = byName.get(name);
+        if (paths != null && paths.remove(path) && paths.isEmpty()) {
+            byName.remove(name);
+        }
+    }
+
+    private static FileTime modified(@NotNull Path directory) {
+        try {
+            return Files.getLastModifiedTime(directory);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The content of a directory when it was listed.
+     */
+    private static final class Listing {
+        private final Path directory;
+        private final int level;
+        private final FileTime modified;
+        private final ArrayList<Path> entries = new ArrayList<>();
+
+        private Listing(Path directory, int level, FileTime modified) {
+            this.directory = directory;
+            this.level = level;
+            this.modified = modified;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import javafx.application.Platform;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the scripts of GA-XML events on a worker thread of its own, so that
+ * a heavy script doesn't stop the JavaFX Application Thread from rendering.
+ * <BR><BR>
+ * All scripts of an executor run one after the other on the same thread,
+ * which keeps the Rhino context of that thread. The executor only runs events,
+ * the scripts of a page are also run while it's loaded and when its variables are resolved,
+ * on the thread that does so. Those are kept from running at the same time as the events
+ * by the lock of the {@link com.airent.extendedjavafxnodes.gaxml.javascript.Script Script}
+ * of the page, which every script and every use of its scope takes.
+ * Events that are {@link #submit(Object, Supplier) submitted with a key}
+ * are coalesced, a repeated click on a node while the script of its last click
+ * is still queued or running is dropped.
+ * <BR><BR>
+ * Results are handed back on the JavaFX Application Thread with {@link #toFx(CompletableFuture)},
+ * and scripts touch the scene graph through 'Scope.System.fx(function)',
+ * which runs the function on the JavaFX Application Thread and waits for it to return.
+ *
+ * @see XMLProcessor#setScriptExecutor(ScriptExecutor)
+ */
+public final class ScriptExecutor implements AutoCloseable {
+    private static ScriptExecutor shared;
+
+    private final ExecutorService worker;
+    private final Executor fx;
+    private final ConcurrentHashMap<Object, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile Thread thread;
+
+    /**
+     * Creates an executor that hands results back on the JavaFX Application Thread.
+     *
+     * @param name The name of the worker thread.
+     */
+    public ScriptExecutor(@NotNull String name) {
+        this(name, ScriptExecutor::runOnFx);
+    }
+
+    /**
+     * Creates an executor.
+     *
+     * @param name The name of the worker thread.
+     * @param fx The executor that results and scene graph changes are run on.
+     */
+    public ScriptExecutor(@NotNull String name, @NotNull Executor fx) {
+        this.fx = fx;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread worker = new Thread(runnable, name);
+            worker.setDaemon(true);
+            thread = worker;
+            return worker;
+        });
+    }
+
+    /**
+     * Gets the executor that is shared by all processors that don't need one of their own,
+     * it is made the first time it's asked for.
+     *
+     * @return The shared executor.
+     */
+    @NotNull
+    public static synchronized ScriptExecutor getShared() {
+        if (shared == null) {
+            shared = new ScriptExecutor("GA-XML-Script");
+        }
+        return shared;
+    }
+
+    /**
+     * Runs an action on the JavaFX Application Thread,
+     * right away if this is that thread, otherwise later.
+     *
+     * @param action The action to run.
+     */
+    public static void runOnFx(@NotNull Runnable action) {
+        if (Platform.isFxApplicationThread()) {
+            action.run();
+        } else {
+            Platform.runLater(action);
+        }
+    }
+
+    @NotNull
+    public Executor getFxExecutor() {
+        return fx;
+    }
+
+    /**
+     * Checks whether the current thread is the worker thread of this executor.
+     *
+     * @return True if this is the worker thread.
+     */
+    public boolean isWorkerThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Gets how many submissions were dropped because the same key was already in flight.
+     *
+     * @return The amount of coalesced submissions.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Queues a script to run on the worker thread.
+     *
+     * @param task The script.
+     * @return A future of what the script returned, which completes on the worker thread.
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, worker);
+    }
+
+    /**
+     * Queues a script to run on the worker thread, unless a script with the same key
+     * is queued or running, then the future of that script is given instead.
+     *
+     * @param key The key, such as the node that was clicked.
+     * @param task The script.
+     * @return A future of what the script returned, which completes on the worker thread.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(@NotNull Object key, @NotNull Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<?> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return (CompletableFuture<T>) running;
+        }
+        try {
+            worker.execute(() -> {
+                T result;
+                try {
+                    result = task.get();
+                } catch (Throwable e) {
+                    inFlight.remove(key, future);
+                    future.completeExceptionally(e);
+                    return;
+                }
+                // the key is free again before anything that waits on the result runs
+                inFlight.remove(key, future);
+                future.complete(result);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Hands the result of a script back on the {@link #getFxExecutor() FX executor}.
+     *
+     * @param future The future of the script.
+     * @return A future that completes on the FX executor once the script is done.
+     */
+    @NotNull
+    public <T> CompletableFuture<T> toFx(@NotNull CompletableFuture<T> future) {
+        CompletableFuture<T> onFx = new CompletableFuture<>();
+        future.whenCompleteAsync((result, e) -> {
+            if (e == null) {
+                onFx.complete(result);
+            } else {
+                onFx.completeExceptionally(e);
+            }
+        }, fx);
+        return onFx;
+    }
+
+    /**
+     * Stops the worker thread once the queued scripts are done.
+     */
+    @Override
+    public void close() {
+        synchronized (ScriptExecutor.class) {
+            if (shared == this) {
+                shared = null;
+            }
+        }
+        worker.shutdown();
+    }
+}
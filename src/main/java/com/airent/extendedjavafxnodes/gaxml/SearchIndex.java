@@ -0,0 +1,459 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An inverted index of the text of GA-XML pages, for searching a whole story
+ * without walking the DOM of every file, or even having the files in memory.
+ * <BR><BR>
+ * The text of a page is split into {@link #tokenize(String) terms}, and every term
+ * is kept with the segments it is in and the element paths it is in within each
+ * segment, such as '/page[1]/p[3]/span[1]'. Only text that is shown is indexed,
+ * the text of scripts, functions, variables, var and math tags and unknown tags isn't.
+ * <BR><BR>
+ * A segment is indexed again as a whole when its page is compiled again,
+ * see {@link XMLProcessor#setSearchIndex(SearchIndex)}. The index can be written
+ * to a file and read back, segments whose files changed since then are dropped
+ * when it's read, and indexed again the next time they are compiled.
+ * <BR><BR>
+ * All methods of this class are thread-safe.
+ */
+public final class SearchIndex {
+    public static final int FORMAT_VERSION = 2;
+    private static final int MAGIC = 0x47415849; // GAXI
+
+    private final HashMap<String, Entry> segments = new HashMap<>();
+    // every term with the segments it is in, sorted for prefix queries
+    private final TreeMap<String, Set<String>> terms = new TreeMap<>();
+
+    /**
+     * Creates an empty index, pages are added to it by {@link #index(String, CompiledPage)}
+     * or by the processors it is set on.
+     */
+    public SearchIndex() {}
+
+    /**
+     * Splits text into the terms it is indexed and searched by,
+     * which are its runs of letters and digits in lower case.
+     *
+     * @param text The text to split.
+     * @return The terms, in the order they are in the text.
+     */
+    @NotNull
+    public static List<String> tokenize(@NotNull String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (start == -1) start = i;
+            } else if (start != -1) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+            i += Character.charCount(c);
+        }
+        if (start != -1) {
+            tokens.add(text.substring(start).toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    /**
+     * Indexes the page of a segment, replacing what was indexed for the segment before.
+     *
+     * @param segment The name of the segment, which is the path of its file.
+     * @param page The compiled page of the segment.
+     */
+    public void index(@NotNull String segment, @NotNull CompiledPage page) {
+        // path -> term -> count
+        LinkedHashMap<String, HashMap<String, Integer>> counts = new LinkedHashMap<>();
+        collect(page.getNodes(), "", counts);
+        List<String> paths = new ArrayList<>(counts.keySet());
+        HashMap<String, List<int[]>> postings = new HashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            for (Map.Entry<String, Integer> count : counts.get(paths.get(i)).entrySet()) {
+                postings.computeIfAbsent(count.getKey(), k -> new ArrayList<>()).add(new int[]{i, count.getValue()});
+            }
+        }
+        Path file = page.getPath();
+        Entry entry = new Entry(file == null ? null : file.toString(), stamp(file), paths.toArray(new String[0]));
+        postings.forEach((term, list) -> {
+            int[] flat = new int[list.size()*2];
+            for (int i = 0; i < list.size(); i++) {
+                flat[i*2] = list.get(i)[0];
+                flat[i*2+1] = list.get(i)[1];
+            }
+            entry.postings.put(term, flat);
+        });
+        put(segment, entry);
+    }
+
+    private static void collect(@NotNull List<CompiledNode> nodes, @NotNull String path,
+                                @NotNull Map<String, HashMap<String, Integer>> counts) {
+        HashMap<String, Integer> siblings = new HashMap<>();
+        for (CompiledNode node : nodes) {
+            switch (node) {
+                case CompiledNode.Text run -> {
+                    if (!run.isCData() && !run.isBlank()) {
+                        HashMap<String, Integer> terms = counts.computeIfAbsent(path, k -> new HashMap<>());
+                        for (String term : tokenize(run.getText())) {
+                            terms.merge(term, 1, Integer::sum);
+                        }
+                    }
+                }
+                case CompiledNode.Element elm -> {
+                    String tagName = elm.getTagName();
+                    String elmPath = path + "/" + tagName + "[" + siblings.merge(tagName, 1, Integer::sum) + "]";
+                    if (isShown(elm)) {
+                        collect(elm.getChildren(), elmPath, counts);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isShown(@NotNull CompiledNode.Element elm) {
+        return switch (elm) {
+            case CompiledNode.Combine combine -> combine.isCombined();
+            case CompiledNode.Value value -> false;
+            case CompiledNode.Variable variable -> false;
+            default -> elm.getClass() != CompiledNode.Element.class;
+        };
+    }
+
+    private static long stamp(Path file) {
+        if (file == null) return -1;
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private synchronized void put(@NotNull String segment, @NotNull Entry entry) {
+        remove(segment);
+        segments.put(segment, entry);
+        for (String term : entry.postings.keySet()) {
+            terms.computeIfAbsent(term, k -> new HashSet<>()).add(segment);
+        }
+    }
+
+    /**
+     * Forgets what was indexed for a segment.
+     *
+     * @param segment The name of the segment.
+     * @return True if the segment was indexed.
+     */
+    public synchronized boolean remove(@NotNull String segment) {
+        Entry entry = segments.remove(segment);
+        if (entry == null) return false;
+        for (String term : entry.postings.keySet()) {
+            Set<String> termSegments = terms.get(term);
+            termSegments.remove(segment);
+            if (termSegments.isEmpty()) {
+                terms.remove(term);
+            }
+        }
+        return true;
+    }
+
+    public synchronized void clear() {
+        segments.clear();
+        terms.clear();
+    }
+
+    public synchronized boolean contains(@NotNull String segment) {
+        return segments.containsKey(segment);
+    }
+
+    /**
+     * Gets the names of the indexed segments.
+     *
+     * @return An unmodifiable copy of the names of the segments.
+     */
+    @NotNull
+    public synchronized Set<String> getSegments() {
+        return Set.copyOf(segments.keySet());
+    }
+
+    /**
+     * Gets the amount of distinct terms in the index.
+     *
+     * @return The amount of terms.
+     */
+    public synchronized int getTermCount() {
+        return terms.size();
+    }
+
+    /**
+     * Searches the index, every word of the query is a prefix,
+     * so 'ali gol' finds a segment that has both 'Alice' and 'gold'.
+     * <BR><BR>
+     * A segment is found when every word of the query matches a term in it.
+     * Segments are ordered by how many times the words are in them, most first.
+     *
+     * @param query The words to search for.
+     * @return The segments that were found, or an empty list if the query has no words.
+     */
+    @NotNull
+    public synchronized List<Hit> search(@NotNull String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) return List.of();
+        // segment -> path index -> count, only of segments that matched every word so far
+        HashMap<String, LinkedHashMap<Integer, Integer>> found = null;
+        for (String word : new LinkedHashSet<>(words)) {
+            HashMap<String, LinkedHashMap<Integer, Integer>> matches = new HashMap<>();
+            for (Map.Entry<String, Set<String>> term : prefixed(word).entrySet()) {
+                for (String segment : term.getValue()) {
+                    if (found != null && !found.containsKey(segment)) continue;
+                    int[] postings = segments.get(segment).postings.get(term.getKey());
+                    LinkedHashMap<Integer, Integer> paths = matches.computeIfAbsent(segment, k -> new LinkedHashMap<>());
+                    for (int i = 0; i < postings.length; i += 2) {
+                        paths.merge(postings[i], postings[i+1], Integer::sum);
+                    }
+                }
+            }
+            if (found != null) {
+                found.forEach((segment, paths) -> {
+                    LinkedHashMap<Integer, Integer> matched = matches.get(segment);
+                    if (matched != null) {
+                        paths.forEach((path, count) -> matched.merge(path, count, Integer::sum));
+                    }
+                });
+            }
+            found = matches;
+            if (found.isEmpty()) return List.of();
+        }
+        List<Hit> hits = new ArrayList<>(found.size());
+        found.forEach((segment, paths) -> {
+            String[] names = segments.get(segment).paths;
+            int score = 0;
+            List<Integer> indexes = new ArrayList<>(paths.keySet());
+            Collections.sort(indexes);
+            List<String> hitPaths = new ArrayList<>(indexes.size());
+            for (int index : indexes) {
+                hitPaths.add(names[index]);
+                score += paths.get(index);
+            }
+            hits.add(new Hit(segment, score, Collections.unmodifiableList(hitPaths)));
+        });
+        hits.sort(Comparator.comparingInt(Hit::getScore).reversed().thenComparing(Hit::getSegment));
+        return hits;
+    }
+
+    /**
+     * Gets the terms that start with a prefix, such as for completing a query.
+     *
+     * @param prefix The prefix, which is matched in lower case.
+     * @param limit The most terms to give.
+     * @return The terms in alphabetical order.
+     */
+    @NotNull
+    public synchronized List<String> complete(@NotNull String prefix, int limit) {
+        List<String> completions = new ArrayList<>();
+        for (String term : prefixed(prefix.toLowerCase(Locale.ROOT)).keySet()) {
+            if (completions.size() >= limit) break;
+            completions.add(term);
+        }
+        return completions;
+    }
+
+    private Map<String, Set<String>> prefixed(@NotNull String prefix) {
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Writes this index to a file, the file is replaced only once it's completely written.
+     *
+     * @param path The file to write to.
+     * @throws IOException If the file couldn't be written.
+     */
+    public synchronized void write(@NotNull Path path) throws IOException {
+        AtomicFile.write(path, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(segments.size());
+            for (Map.Entry<String, Entry> segment : segments.entrySet()) {
+                Entry entry = segment.getValue();
+                writeString(out, segment.getKey());
+                out.writeBoolean(entry.file != null);
+                if (entry.file != null) {
+                    writeString(out, entry.file);
+                }
+                out.writeLong(entry.stamp);
+                out.writeInt(entry.paths.length);
+                for (String elmPath : entry.paths) {
+                    writeString(out, elmPath);
+                }
+                out.writeInt(entry.postings.size());
+                for (Map.Entry<String, int[]> term : entry.postings.entrySet()) {
+                    writeString(out, term.getKey());
+                    out.writeInt(term.getValue().length);
+                    for (int value : term.getValue()) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * Reads an index that was written with {@link #write(Path)}.
+     * Segments whose files were changed or removed since they were indexed are left out.
+     *
+     * @param path The file to read.
+     * @return The read index.
+     * @throws IOException If the file couldn't be read, or isn't an index of {@link #FORMAT_VERSION}.
+     */
+    @NotNull
+    public static SearchIndex read(@NotNull Path path) throws IOException {
+        SearchIndex index = new SearchIndex();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a GA-XML search index: " + path);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported GA-XML search index version " + version + ": " + path);
+            }
+            int segmentCount = in.readInt();
+            for (int s = 0; s < segmentCount; s++) {
+                String segment = readString(in);
+                String file = in.readBoolean() ? readString(in) : null;
+                long stamp = in.readLong();
+                String[] paths = new String[in.readInt()];
+                for (int i = 0; i < paths.length; i++) {
+                    paths[i] = readString(in);
+                }
+                Entry entry = new Entry(file, stamp, paths);
+                int termCount = in.readInt();
+                for (int t = 0; t < termCount; t++) {
+                    String term = readString(in);
+                    int[] postings = new int[in.readInt()];
+                    for (int i = 0; i < postings.length; i++) {
+                        postings[i] = in.readInt();
+                    }
+                    entry.postings.put(term, postings);
+                }
+                if (file != null && stamp(Path.of(file)) == stamp) {
+                    index.put(segment, entry);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes a string as its length in UTF-8 bytes and the bytes, unlike
+     * {@link DataOutputStream#writeUTF(String)} this has no limit of 65535 bytes.
+     */
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt GA-XML search index, negative string length " + length);
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * What is indexed for one segment.
+     */
+    private static final class Entry {
+        private final String file;
+        private final long stamp;
+        private final String[] paths;
+        // term -> pairs of path index and count
+        private final HashMap<String, int[]> postings = new HashMap<>();
+
+        private Entry(String file, long stamp, String[] paths) {
+            this.file = file;
+            this.stamp = stamp;
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * A segment that was found by a search.
+     */
+    public static final class Hit {
+        private final String segment;
+        private final int score;
+        private final List<String> paths;
+
+        private Hit(String segment, int score, List<String> paths) {
+            this.segment = segment;
+            this.score = score;
+            this.paths = paths;
+        }
+
+        /**
+         * Gets the name of the segment that was found, which is the path of its file.
+         *
+         * @return The name of the segment.
+         */
+        public String getSegment() {
+            return segment;
+        }
+
+        /**
+         * Gets how many times the words of the query are in the segment.
+         *
+         * @return The score.
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Gets the paths of the elements that directly contain a word of the query,
+         * in the order they are in the document.
+         *
+         * @return An unmodifiable list of the paths.
+         */
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        @Override
+        public String toString() {
+            return "Hit{segment=" + segment + ", score=" + score + ", paths=" + paths + "}";
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import javafx.geometry.Insets;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderStroke;
+import javafx.scene.layout.BorderStrokeStyle;
+import javafx.scene.layout.BorderWidths;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Shares the immutable style objects of formatted nodes,
+ * so that nodes with the same font, border or background use the same
+ * object instead of each having their own equal copy.
+ * <BR><BR>
+ * Objects are keyed by the values they are made from and are held weakly,
+ * they are forgotten once no node or {@link FormatSpec} uses them.
+ * Every kind of object is counted on its own, see {@link #getStats(Kind)}.
+ * <BR><BR>
+ * All methods of this class are thread-safe.
+ */
+public final class StyleCache {
+    /**
+     * The kinds of objects that are shared.
+     */
+    public enum Kind {
+        FONT,
+        PAINT,
+        INSETS,
+        CORNER_RADII,
+        BORDER,
+        BACKGROUND
+    }
+
+    private static final EnumMap<Kind, Interner> interners = new EnumMap<>(Kind.class);
+
+    static {
+        for (Kind kind : Kind.values()) {
+            interners.put(kind, new Interner());
+        }
+    }
+
+    private StyleCache() {}
+
+    /**
+     * Gets the font of a family and size.
+     *
+     * @param family The family, or null for the default family.
+     * @param size The size.
+     * @return The shared font.
+     */
+    @NotNull
+    public static Font font(String family, double size) {
+        return interners.get(Kind.FONT).intern(Arrays.asList(family, size),
+                () -> family == null ? new Font(size) : new Font(family, size));
+    }
+
+    /**
+     * Gets the color of a web color string, such as '#ff0000' or 'red'.
+     *
+     * @param color The color string.
+     * @return The shared color.
+     * @throws IllegalArgumentException If the string isn't a color.
+     */
+    @NotNull
+    public static Paint color(@NotNull String color) {
+        return interners.get(Kind.PAINT).intern(color, () -> Color.web(color));
+    }
+
+    @NotNull
+    public static Insets insets(double top, double right, double bottom, double left) {
+        return interners.get(Kind.INSETS).intern(List.of(top, right, bottom, left),
+                () -> new Insets(top, right, bottom, left));
+    }
+
+    @NotNull
+    public static CornerRadii cornerRadii(double radius, boolean asPercent) {
+        return interners.get(Kind.CORNER_RADII).intern(List.of(radius, asPercent),
+                () -> new CornerRadii(radius, asPercent));
+    }
+
+    /**
+     * Gets a border of a single stroke.
+     *
+     * @return The shared border.
+     */
+    @NotNull
+    public static Border border(@NotNull Paint stroke, @NotNull BorderStrokeStyle style,
+                                @NotNull CornerRadii radii, double width, @NotNull Insets insets) {
+        return interners.get(Kind.BORDER).intern(List.of(stroke, style, radii, width, insets),
+                () -> new Border(new BorderStroke(stroke, style, radii, new BorderWidths(width), insets)));
+    }
+
+    /**
+     * Gets a background of a single fill.
+     *
+     * @return The shared background.
+     */
+    @NotNull
+    public static Background background(@NotNull Paint fill, @NotNull CornerRadii radii, @NotNull Insets insets) {
+        return interners.get(Kind.BACKGROUND).intern(List.of(fill, radii, insets),
+                () -> new Background(new BackgroundFill(fill, radii, insets)));
+    }
+
+    @NotNull
+    public static Stats getStats(@NotNull Kind kind) {
+        return interners.get(kind).getStats();
+    }
+
+    /**
+     * Gets the statistics of every kind of object.
+     *
+     * @return An unmodifiable snapshot of the statistics of each kind.
+     */
+    @NotNull
+    public static Map<Kind, Stats> getStats() {
+        EnumMap<Kind, Stats> stats = new EnumMap<>(Kind.class);
+        interners.forEach((kind, interner) -> stats.put(kind, interner.getStats()));
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public static void resetStats() {
+        interners.values().forEach(Interner::resetStats);
+    }
+
+    /**
+     * Forgets every shared object, objects that are in use stay in use.
+     */
+    public static void clear() {
+        interners.values().forEach(Interner::clear);
+    }
+
+    /**
+     * The weakly held objects of one kind.
+     */
+    private static final class Interner {
+        private final HashMap<Object, Entry> entries = new HashMap<>();
+        private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+        private long hits = 0;
+        private long misses = 0;
+
+        @SuppressWarnings("unchecked")
+        private synchronized <V> V intern(@NotNull Object key, @NotNull Supplier<V> create) {
+            expunge();
+            Entry entry = entries.get(key);
+            Object value = entry == null ? null : entry.get();
+            if (value != null) {
+                hits++;
+                return (V) value;
+            }
+            misses++;
+            V created = create.get();
+            entries.put(key, new Entry(key, created, collected));
+            return created;
+        }
+
+        private void expunge() {
+            Reference<?> reference;
+            while ((reference = collected.poll()) != null) {
+                Entry entry = (Entry) reference;
+                entries.remove(entry.key, entry);
+            }
+        }
+
+        private synchronized Stats getStats() {
+            expunge();
+            return new Stats(hits, misses, entries.size());
+        }
+
+        private synchronized void resetStats() {
+            hits = 0;
+            misses = 0;
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+    }
+
+    private static final class Entry extends WeakReference<Object> {
+        private final Object key;
+
+        private Entry(Object key, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * A snapshot of the statistics of one kind of shared object.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final int size;
+
+        private Stats(long hits, long misses, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Gets the amount of objects that are shared right now.
+         *
+         * @return The size.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 1 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", size=" + size + "}";
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import javafx.beans.Observable;
+import javafx.beans.binding.StringBinding;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The dependencies between the variables, 'script.' calls and math tags of a GA-XML file.
+ * <BR><BR>
+ * Every reference ('inFile.name' or 'script.call()') and every equation
+ * is a {@link StringBinding} that depends on the references it uses.
+ * When a reference is invalidated, only the bindings that depend on it
+ * are calculated again, and only once something asks for their value.
+ * When the processor is {@link XMLProcessor#setReactive(boolean) reactive},
+ * the Text nodes of var and math tags are bound to these bindings,
+ * so they are updated in place instead of loading the whole page again.
+ * <BR><BR>
+ * 'script.' calls are only run again when they are invalidated,
+ * since there is no way to tell when the value a script gives has changed.
+ * Any reference can also be bound to a JavaFX property,
+ * which then gives the value of the reference.
+ * <BR><BR>
+ * The graph is built from the compiled page of the processor, if the page is
+ * compiled again, the graph starts over, and nodes that were bound to
+ * the old graph are no longer updated.
+ * The graph must only be used from the thread that the page is shown on.
+ */
+public class VariableGraph {
+    private final XMLProcessor processor;
+    private final HashMap<String, Value> references = new HashMap<>();
+    private final HashMap<String, Value> parsed = new HashMap<>();
+    private final HashMap<String, Value> equations = new HashMap<>();
+    private final HashMap<String, Set<String>> dependents = new HashMap<>();
+    private final ArrayDeque<String> building = new ArrayDeque<>();
+    private CompiledPage page;
+
+    VariableGraph(@NotNull XMLProcessor processor) {
+        this.processor = processor;
+    }
+
+    public XMLProcessor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * Gets the binding of the value of a reference.
+     *
+     * @param reference The reference, such as 'inFile.name' or 'script.call()'.
+     * @return The binding, its value is null if the reference has no value.
+     */
+    @NotNull
+    public StringBinding get(@NotNull String reference) {
+        checkPage();
+        Value value = references.get(reference);
+        if (value == null) {
+            value = createReference(reference);
+            references.put(reference, value);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the binding of a variable as it is parsed by
+     * {@link XMLProcessor#variableParser(boolean, String[])}.
+     *
+     * @param variable The variable, such as 'inFile.name' or 'name:inFile.name'.
+     * @return The binding of the parsed variable.
+     */
+    @NotNull
+    public StringBinding getParsed(@NotNull String variable) {
+        checkPage();
+        Value value = parsed.get(variable);
+        if (value == null) {
+            String key = "parse:" + variable;
+            List<Value> dependencies = dependenciesOf(key, false, variable);
+            value = new Value(key, () -> processor.parseVariable(false, variable, this::valueOf), dependencies);
+            parsed.put(variable, value);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the binding of the result of an equation.
+     *
+     * @param equation The equation.
+     * @param variables The variables of the equation.
+     * @return The binding of the result.
+     */
+    @NotNull
+    public StringBinding getEquation(@NotNull String equation, @NotNull String[] variables) {
+        checkPage();
+        String key = "math:" + equation + "|" + String.join(";", variables);
+        Value value = equations.get(key);
+        if (value == null) {
+            value = createEquation(key, equation, variables.clone());
+            equations.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Marks a reference as changed, so that it, and everything that depends on it,
+     * is calculated again.
+     *
+     * @param reference The reference that changed.
+     */
+    public void invalidate(@NotNull String reference) {
+        Value value = references.get(reference);
+        if (value != null) {
+            value.invalidate();
+        }
+    }
+
+    /**
+     * Marks every 'script.' reference as changed.
+     */
+    public void invalidateScripts() {
+        references.forEach((reference, value) -> {
+            if (reference.startsWith("script")) {
+                value.invalidate();
+            }
+        });
+    }
+
+    /**
+     * Binds a reference to a JavaFX property, the reference then has
+     * the string of the value of the property, and everything that
+     * depends on the reference is updated when the property changes.
+     *
+     * @param reference The reference to bind.
+     * @param source The property that gives the value of the reference.
+     */
+    public void bind(@NotNull String reference, @NotNull ObservableValue<?> source) {
+        ((Value) get(reference)).setSource(source);
+    }
+
+    /**
+     * Unbinds a reference from a JavaFX property,
+     * the reference gets its value from the page again.
+     *
+     * @param reference The reference to unbind.
+     */
+    public void unbind(@NotNull String reference) {
+        Value value = references.get(reference);
+        if (value != null) {
+            value.setSource(null);
+        }
+    }
+
+    /**
+     * Gets the references and equations that directly depend on a reference.
+     *
+     * @param reference The reference.
+     * @return An unmodifiable set of the keys of the dependents.
+     */
+    public Set<String> getDependents(@NotNull String reference) {
+        return Collections.unmodifiableSet(dependents.getOrDefault(reference, Set.of()));
+    }
+
+    /**
+     * Forgets every binding, references that were bound to properties are unbound.
+     */
+    public void clear() {
+        references.values().forEach(Value::dispose);
+        parsed.values().forEach(Value::dispose);
+        equations.values().forEach(Value::dispose);
+        references.clear();
+        parsed.clear();
+        equations.clear();
+        dependents.clear();
+    }
+
+    private void checkPage() {
+        CompiledPage current = processor.getCompiled();
+        if (current != page) {
+            clear();
+            page = current;
+        }
+    }
+
+    private String valueOf(String reference) {
+        return get(reference).get();
+    }
+
+    @NotNull
+    private Value createReference(@NotNull String reference) {
+        if (building.contains(reference)) {
+            List<String> cycle = new ArrayList<>(building.reversed());
+            throw new RuntimeException("Variable cycle detected: " + String.join(" -> ", cycle.subList(cycle.indexOf(reference), cycle.size())) + " -> " + reference);
+        }
+        building.push(reference);
+        try {
+            if (reference.startsWith("inFile")) {
+                CompiledNode.Variable variable = page.getVariable(reference.substring(7));
+                if (variable == null) {
+                    return new Value(reference, () -> null, List.of());
+                }
+                if (variable.isMathParse()) {
+                    return createEquation(reference, variable.getValue(), variable.getVariables());
+                }
+                String value = variable.getValue();
+                if (value != null && value.startsWith("script.")) {
+                    List<Value> dependencies = dependenciesOf(reference, false, value);
+                    return new Value(reference, () -> processor.parseVariable(false, value, this::valueOf), dependencies);
+                }
+                return new Value(reference, () -> value, List.of());
+            } else if (reference.startsWith("script")) {
+                String script = reference.substring(7);
+                return new Value(reference, () -> processor.executeVariableScript(script), List.of());
+            }
+            return new Value(reference, () -> null, List.of());
+        } finally {
+            building.pop();
+        }
+    }
+
+    @NotNull
+    private Value createEquation(String key, String equation, String[] variables) {
+        List<Value> dependencies = dependenciesOf(key, true, variables);
+        return new Value(key, () -> {
+            String[] vars = variables.clone();
+            for (int i=0; i < vars.length; i++) {
+                vars[i] = processor.parseVariable(true, vars[i], this::valueOf);
+            }
+            return XMLProcessor.calculate(equation, vars);
+        }, dependencies);
+    }
+
+    @NotNull
+    private List<Value> dependenciesOf(String key, boolean onlyNumber, String... variables) {
+        LinkedHashSet<String> used = new LinkedHashSet<>();
+        for (String variable : variables) {
+            processor.parseVariable(onlyNumber, variable, reference -> {
+                used.add(reference);
+                return null;
+            });
+        }
+        List<Value> dependencies = new ArrayList<>(used.size());
+        for (String reference : used) {
+            dependencies.add((Value) get(reference));
+            dependents.computeIfAbsent(reference, k -> new LinkedHashSet<>()).add(key);
+        }
+        return dependencies;
+    }
+
+    /**
+     * A value of the graph.
+     */
+    private static final class Value extends StringBinding {
+        private final String key;
+        private final Supplier<String> compute;
+        private final List<Value> dependencies;
+        private ObservableValue<?> source;
+
+        private Value(String key, Supplier<String> compute, @NotNull List<Value> dependencies) {
+            this.key = key;
+            this.compute = compute;
+            this.dependencies = dependencies;
+            bind(dependencies.toArray(new Observable[0]));
+        }
+
+        private void setSource(ObservableValue<?> source) {
+            if (this.source != null) {
+                unbind(this.source);
+            }
+            this.source = source;
+            if (source != null) {
+                bind(source);
+            }
+            invalidate();
+        }
+
+        @Override
+        protected String computeValue() {
+            if (source != null) {
+                Object value = source.getValue();
+                return value == null ? null : value.toString();
+            }
+            return compute.get();
+        }
+
+        @Override
+        public ObservableList<?> getDependencies() {
+            if (source != null) {
+                List<Observable> all = new ArrayList<>(dependencies);
+                all.add(source);
+                return FXCollections.unmodifiableObservableList(FXCollections.observableList(all));
+            }
+            return FXCollections.unmodifiableObservableList(FXCollections.observableList(new ArrayList<Observable>(dependencies)));
+        }
+
+        @Override
+        public void dispose() {
+            unbind(dependencies.toArray(new Observable[0]));
+            if (source != null) {
+                unbind(source);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Value{" + key + "}";
+        }
+    }
+}
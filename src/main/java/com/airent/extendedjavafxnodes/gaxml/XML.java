@@ -1,15 +1,25 @@
 package com.airent.extendedjavafxnodes.gaxml;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 import org.jetbrains.annotations.NotNull;
+import org.w3c.dom.DOMException;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 // Java Program to Write XML Using DOM Parser
@@ -29,6 +39,7 @@ import javax.xml.transform.stream.StreamResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
+import org.w3c.dom.events.EventTarget;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -40,6 +51,16 @@ public class XML {
     private Node root;
     private DOMSource source;
     private File file;
+    // both counts are added to the count of mutation events of the document
+    private volatile long modificationCount = 0;
+    // changes made to the content of the document, and the changes and file of the last save
+    private volatile long changes = 0;
+    private volatile DocumentChanges documentChanges;
+    private volatile boolean watchingChanges = false;
+    private volatile long savedChanges = -1;
+    private volatile File savedFile;
+    private final Object saveLock = new Object();
+    private final AtomicReference<PendingSave> pendingSave = new AtomicReference<>();
 
     public XML(@NotNull Path path, boolean isNew) throws IOException {
         this(path.toFile(), isNew);
@@ -59,6 +80,7 @@ public class XML {
         } else {
             this.document = this.root.getOwnerDocument();
         }
+        watchDocument();
         this.source = new DOMSource(this.document);
     }
 
@@ -73,6 +95,89 @@ public class XML {
     private void setDocument(Document document) {
         this.document = document;
         this.root = this.document;
+        watchDocument();
+    }
+
+    /**
+     * Takes the change count of a new document, the counts keep going up when the document is replaced.
+     */
+    private void watchDocument() {
+        DocumentChanges next = watchingChanges ? DocumentChanges.of(this.document) : new DocumentChanges();
+        long previous = documentChanges == null ? 0 : documentChanges.get();
+        long offset = previous - next.get() + 1;
+        modificationCount += offset;
+        changes += offset;
+        documentChanges = next;
+    }
+
+    /**
+     * Counts every change made straight to the nodes of the document from now on,
+     * through the mutation events of the DOM, so that {@link #isDirty()} and
+     * {@link #getModificationCount()} see them without {@link #markDirty()}.
+     * The document keeps being watched when it is {@link #reload() reloaded}.
+     * <BR><BR>
+     * Mutation events make every change to the nodes of the document slower,
+     * so documents are only watched when this is called, such as for
+     * a processor whose nodes are edited by hand and should recompile on its own.
+     * A document has at most one listener, no matter how many XMLs wrap it.
+     */
+    public synchronized void watchChanges() {
+        if (watchingChanges) return;
+        watchingChanges = true;
+        DocumentChanges next = DocumentChanges.of(this.document);
+        long offset = documentChanges.get() - next.get();
+        modificationCount += offset;
+        changes += offset;
+        documentChanges = next;
+    }
+
+    public boolean isWatchingChanges() {
+        return watchingChanges;
+    }
+
+    private long getChanges() {
+        return changes + documentChanges.get();
+    }
+
+    private void changed() {
+        modificationCount++;
+        changes++;
+    }
+
+    /**
+     * Marks the document as changed, for changes made straight to its nodes
+     * while it isn't {@link #watchChanges() watched}.
+     */
+    public void markDirty() {
+        changed();
+    }
+
+    /**
+     * Checks whether the document has changes that aren't saved to its file.
+     * Changes made through this class are always seen, changes made straight
+     * to the nodes of the document are seen once they are {@link #markDirty() marked},
+     * or right away if the document is {@link #watchChanges() watched}.
+     *
+     * @return True if the document has to be written for its file to be up-to-date.
+     */
+    public boolean isDirty() {
+        return getChanges() != savedChanges || file == null || !file.equals(savedFile) || !file.exists();
+    }
+
+    private void markSaved(long changes, File file) {
+        this.savedChanges = changes;
+        this.savedFile = file;
+    }
+
+    /**
+     * Gets how many times this XML document has been changed,
+     * which can be used to tell whether something that was made
+     * from the document is out of date.
+     *
+     * @return The modification count.
+     */
+    public long getModificationCount() {
+        return modificationCount + documentChanges.get();
     }
 
     public void setRoot(Node root) {
@@ -84,6 +189,7 @@ public class XML {
             }
             this.root = root;
         }
+        modificationCount++;
     }
 
     public File getFile() {
@@ -98,6 +204,28 @@ public class XML {
         return setFile(file, false, useFileContent, false);
     }
 
+    /**
+     * Reads the content of the linked file again, replacing the document.
+     * <BR><BR>
+     * Unlike {@link #setFile(File, boolean)}, a file that isn't well-formed
+     * leaves the current document in place, so a file that is read while
+     * it is still being written doesn't empty the document.
+     *
+     * @throws IOException If the file couldn't be read or isn't well-formed XML.
+     */
+    public void reload() throws IOException {
+        if (this.file == null) throw new RuntimeException("Cannot reload a file that doesn't exist.");
+        Document document1;
+        try {
+            document1 = Build.BUILD.parse(this.file);
+        } catch (SAXException e) {
+            throw new IOException("Failed to parse " + this.file, e);
+        }
+        setDocument(document1);
+        this.source = new DOMSource(this.document);
+        markSaved(getChanges(), this.file);
+    }
+
     private boolean setFile(File file, boolean isNew, boolean useFileContent, boolean passNotNew) throws IOException {
         this.file = file;
         if (isNew || !this.file.exists()) {
@@ -114,6 +242,7 @@ public class XML {
                 }
                 setDocument(document1);
                 this.source = new DOMSource(this.document);
+                markSaved(getChanges(), this.file);
                 return true;
             } else {
                 if (!passNotNew) {
@@ -134,24 +263,144 @@ public class XML {
     /**
      * Applies the data content of this XML document
      * to it's linked file.
+     * <BR><BR>
+     * Nothing is written if the document has no changes since it was read
+     * or last saved to the same file, see {@link #isDirty()}.
+     * The document is written to a temporary file next to the linked file,
+     * which then replaces the linked file, so the linked file is never
+     * left half written.
      *
      * @return This XML document.
-     * @throws TransformerException
+     * @throws TransformerException If the document couldn't be written.
      */
     public XML update() throws TransformerException {
         this.source = new DOMSource(this.document);
         if (this.file == null) throw new RuntimeException("Cannot update a file that doesn't exist.");
-        // Specify your local file path
-        StreamResult result;
-        try {
-            result = new StreamResult(new FileOutputStream(this.file));
-        } catch (FileNotFoundException e) {
-            result = new StreamResult(this.file);
+        synchronized (saveLock) {
+            if (isDirty()) {
+                long saving = getChanges();
+                write(this.source, this.file);
+                markSaved(saving, this.file);
+            }
         }
-        Build.BUILD.transform(this.source, result);
         return this;
     }
 
+    /**
+     * Saves the document to its linked file on a background thread.
+     * <BR><BR>
+     * A copy of the document is taken right away, so the document can be changed
+     * while it is written. Saves that are requested while an earlier one is still
+     * waiting to be written are merged into it, only the newest copy is written,
+     * and all of them share the same future.
+     *
+     * @return Completed with this XML document once the newest copy is written.
+     */
+    public CompletableFuture<XML> updateAsync() {
+        if (this.file == null) throw new RuntimeException("Cannot update a file that doesn't exist.");
+        if (pendingSave.get() == null && !isDirty()) {
+            return CompletableFuture.completedFuture(this);
+        }
+        long saving = getChanges();
+        Document copy;
+        try {
+            copy = (Document) this.document.cloneNode(true);
+        } catch (DOMException e) {
+            // documents that can't be copied, such as ones with many root elements, are saved as is
+            try {
+                return CompletableFuture.completedFuture(update());
+            } catch (TransformerException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+        while (true) {
+            PendingSave previous = pendingSave.get();
+            PendingSave next = new PendingSave(copy, this.file, saving,
+                    previous == null ? new CompletableFuture<>() : previous.future);
+            if (pendingSave.compareAndSet(previous, next)) {
+                if (previous == null) {
+                    SAVER.execute(this::writePending);
+                }
+                return next.future;
+            }
+        }
+    }
+
+    private void writePending() {
+        PendingSave save = pendingSave.getAndSet(null);
+        if (save == null) return;
+        try {
+            synchronized (saveLock) {
+                // a newer state may already have been saved by update()
+                if (save.changes > savedChanges || !save.file.equals(savedFile)) {
+                    write(new DOMSource(save.document), save.file);
+                    markSaved(save.changes, save.file);
+                }
+            }
+            save.future.complete(this);
+        } catch (TransformerException | RuntimeException e) {
+            save.future.completeExceptionally(e);
+        }
+    }
+
+    private static void write(@NotNull DOMSource source, @NotNull File file) throws TransformerException {
+        try {
+            AtomicFile.write(file.toPath(), out -> Build.BUILD.transform(source, new StreamResult(out)));
+        } catch (IOException e) {
+            throw new TransformerException("Failed to write " + file, e);
+        }
+    }
+
+    private static final ExecutorService SAVER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GA-XML-Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The count of mutation events of a document, shared by every {@link XML} of the document
+     * that {@link #watchChanges() watches} it, so that the document only ever has one listener
+     * no matter how many XMLs wrap it. A count that is made without a document stays at 0.
+     * The count doesn't keep its document from being collected.
+     */
+    private static final class DocumentChanges {
+        private static final Map<Document, DocumentChanges> watched = Collections.synchronizedMap(new WeakHashMap<>());
+        private final AtomicLong count = new AtomicLong();
+
+        @NotNull
+        private static DocumentChanges of(Document document) {
+            if (!(document instanceof EventTarget target)) {
+                return new DocumentChanges();
+            }
+            return watched.computeIfAbsent(document, key -> {
+                DocumentChanges changes = new DocumentChanges();
+                target.addEventListener("DOMSubtreeModified", event -> changes.count.incrementAndGet(), false);
+                return changes;
+            });
+        }
+
+        private long get() {
+            return count.get();
+        }
+    }
+
+    /**
+     * A copy of a document that is waiting to be written.
+     */
+    private static final class PendingSave {
+        private final Document document;
+        private final File file;
+        private final long changes;
+        private final CompletableFuture<XML> future;
+
+        private PendingSave(Document document, File file, long changes, CompletableFuture<XML> future) {
+            this.document = document;
+            this.file = file;
+            this.changes = changes;
+            this.future = future;
+        }
+    }
+
     public Element create(String tagName) {
         return this.document.createElement(tagName);
     }
@@ -163,7 +412,9 @@ public class XML {
     }
 
     public Node append(@NotNull Node parent, Node child) {
-        return parent.appendChild(child);
+        Node appended = parent.appendChild(child);
+        changed();
+        return appended;
     }
     public Node append(Node child) {
         return append(this.root, child);
@@ -178,7 +429,9 @@ public class XML {
     }
 
     public Node remove(@NotNull Node root, Node oldChild) {
-        return root.removeChild(oldChild);
+        Node removed = root.removeChild(oldChild);
+        changed();
+        return removed;
     }
     public Node remove(Node oldChild) {
         return remove(this.root, oldChild);
@@ -224,26 +477,100 @@ public class XML {
         forEachNode(this.root, action);
     }
 
+    /**
+     * Parses and writes XML documents, and can be used by many threads at once.
+     * <BR><BR>
+     * Neither {@link DocumentBuilder} nor {@link Transformer} is thread-safe, so a build
+     * keeps a pool of each. Every parse or transform borrows one from the pool, or creates
+     * one if the pool is empty, and gives it back reset once it is done, so threads
+     * never wait on each other. At most {@link #MAX_IDLE} of each are kept in the pool.
+     * <BR><BR>
+     * Settings, such as the error handler or transformer parameters, are kept by the
+     * build and applied to every parser or transformer it borrows.
+     */
     public static class Build extends DocumentBuilder {
         // Create a DocumentBuilder
         public static final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         public static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+        public static final int MAX_IDLE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
 
         public static final Build BUILD = new Build();
 
-        private final DocumentBuilder builder;
-        private final Transformer transformer;
+        private final ConcurrentLinkedDeque<DocumentBuilder> builders = new ConcurrentLinkedDeque<>();
+        private final ConcurrentLinkedDeque<Transformer> transformers = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger idleBuilders = new AtomicInteger();
+        private final AtomicInteger idleTransformers = new AtomicInteger();
+        private final ConcurrentHashMap<String, Object> parameters = new ConcurrentHashMap<>();
+        private volatile EntityResolver entityResolver;
+        private volatile ErrorHandler errorHandler;
+        private volatile ErrorListener errorListener;
 
         public Build() {
-            try {
-                builder = factory.newDocumentBuilder();
-            } catch (ParserConfigurationException e) {
-                throw new RuntimeException(e);
+            // fails early if the factories aren't configured right
+            release(borrowBuilder());
+            release(borrowTransformer());
+        }
+
+        @NotNull
+        private DocumentBuilder borrowBuilder() {
+            DocumentBuilder builder = builders.pollFirst();
+            if (builder == null) {
+                // the factories aren't thread-safe
+                synchronized (factory) {
+                    try {
+                        builder = factory.newDocumentBuilder();
+                    } catch (ParserConfigurationException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            } else {
+                idleBuilders.decrementAndGet();
             }
-            try {
-                transformer = transformerFactory.newTransformer();
-            } catch (TransformerConfigurationException e) {
-                throw new RuntimeException(e);
+            if (entityResolver != null) {
+                builder.setEntityResolver(entityResolver);
+            }
+            if (errorHandler != null) {
+                builder.setErrorHandler(errorHandler);
+            }
+            return builder;
+        }
+
+        private void release(@NotNull DocumentBuilder builder) {
+            if (idleBuilders.incrementAndGet() <= MAX_IDLE) {
+                builder.reset();
+                builders.offerFirst(builder);
+            } else {
+                idleBuilders.decrementAndGet();
+            }
+        }
+
+        @NotNull
+        private Transformer borrowTransformer() {
+            Transformer transformer = transformers.pollFirst();
+            if (transformer == null) {
+                synchronized (factory) {
+                    try {
+                        transformer = transformerFactory.newTransformer();
+                    } catch (TransformerConfigurationException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            } else {
+                idleTransformers.decrementAndGet();
+            }
+            parameters.forEach(transformer::setParameter);
+            if (errorListener != null) {
+                transformer.setErrorListener(errorListener);
+            }
+            return transformer;
+        }
+
+        private void release(@NotNull Transformer transformer) {
+            if (idleTransformers.incrementAndGet() <= MAX_IDLE) {
+                transformer.reset();
+                transformers.offerFirst(transformer);
+            } else {
+                idleTransformers.decrementAndGet();
             }
         }
 
@@ -255,7 +582,12 @@ public class XML {
          */
         @Override
         public Document newDocument() {
-            return builder.newDocument();
+            DocumentBuilder builder = borrowBuilder();
+            try {
+                return builder.newDocument();
+            } finally {
+                release(builder);
+            }
         }
 
         /**
@@ -265,7 +597,12 @@ public class XML {
          */
         @Override
         public DOMImplementation getDOMImplementation() {
-            return builder.getDOMImplementation();
+            DocumentBuilder builder = borrowBuilder();
+            try {
+                return builder.getDOMImplementation();
+            } finally {
+                release(builder);
+            }
         }
 
         /**
@@ -284,7 +621,12 @@ public class XML {
          */
         @Override
         public Document parse(InputSource is) throws IOException, SAXException {
-            return builder.parse(is);
+            DocumentBuilder builder = borrowBuilder();
+            try {
+                return builder.parse(is);
+            } finally {
+                release(builder);
+            }
         }
 
         /**
@@ -296,7 +638,7 @@ public class XML {
          */
         @Override
         public boolean isNamespaceAware() {
-            return builder.isNamespaceAware();
+            return factory.isNamespaceAware();
         }
 
         /**
@@ -308,7 +650,7 @@ public class XML {
          */
         @Override
         public boolean isValidating() {
-            return builder.isValidating();
+            return factory.isValidating();
         }
 
         /**
@@ -323,7 +665,7 @@ public class XML {
          */
         @Override
         public void setEntityResolver(EntityResolver er) {
-            builder.setEntityResolver(er);
+            entityResolver = er;
         }
 
         /**
@@ -336,7 +678,7 @@ public class XML {
          */
         @Override
         public void setErrorHandler(ErrorHandler eh) {
-            builder.setErrorHandler(eh);
+            errorHandler = eh;
         }
 
 
@@ -362,7 +704,12 @@ public class XML {
          *   during the course of the transformation.
          */
         public void transform(Source xmlSource, Result outputTarget) throws TransformerException {
-            transformer.transform(xmlSource, outputTarget);
+            Transformer transformer = borrowTransformer();
+            try {
+                transformer.transform(xmlSource, outputTarget);
+            } finally {
+                release(transformer);
+            }
         }
 
         /**
@@ -388,7 +735,10 @@ public class XML {
          * @throws NullPointerException If value is null.
          */
         public void setParameter(String name, Object value) {
-            transformer.setParameter(name, value);
+            if (name == null || value == null) {
+                throw new NullPointerException("Transformer parameters must have a name and a value.");
+            }
+            parameters.put(name, value);
         }
 
         /**
@@ -403,14 +753,14 @@ public class XML {
          * @return A parameter that has been set with setParameter.
          */
         public Object getParameter(String name) {
-            return transformer.getParameter(name);
+            return parameters.get(name);
         }
 
         /**
          * Clear all parameters set with setParameter.
          */
         public void clearParameters() {
-            transformer.clearParameters();
+            parameters.clear();
         }
 
         /**
@@ -422,7 +772,10 @@ public class XML {
          */
         public void setErrorListener(ErrorListener listener)
                 throws IllegalArgumentException {
-            transformer.setErrorListener(listener);
+            if (listener == null) {
+                throw new IllegalArgumentException("The error listener must not be null.");
+            }
+            errorListener = listener;
         }
 
         /**
@@ -432,7 +785,16 @@ public class XML {
          * @return The current error handler, which should never be null.
          */
         public ErrorListener getErrorListener() {
-            return transformer.getErrorListener();
+            ErrorListener listener = errorListener;
+            if (listener != null) {
+                return listener;
+            }
+            Transformer transformer = borrowTransformer();
+            try {
+                return transformer.getErrorListener();
+            } finally {
+                release(transformer);
+            }
         }
     }
 }
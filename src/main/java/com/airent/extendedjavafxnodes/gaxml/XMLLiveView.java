@@ -0,0 +1,206 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import com.airent.extendedjavafxnodes.utils.Pair;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.VBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A display of a GA-XML file that can be reloaded when the file changes.
+ * <BR><BR>
+ * Every top level block of the file is loaded on its own, and when the file
+ * is reloaded, the new blocks are compared with the old ones. Only the blocks
+ * that changed are loaded again and replaced in the scene, the nodes of
+ * the blocks that stayed the same are kept as they are, together with
+ * anything that was done to them. The script scope of the processor is
+ * kept as well, see {@link XMLProcessor#reload()}.
+ * <BR><BR>
+ * Blocks that stayed the same are still loaded again when they call a
+ * variable that changed, or include a file that was saved since it was last loaded.
+ * <BR><BR>
+ * When the display is in a {@link ScrollPane}, the distance that is scrolled
+ * from the top is kept, so changes below the viewport don't move the content.
+ * <BR><BR>
+ * {@link #startWatching()} reloads the display every time the file is saved.
+ */
+public class XMLLiveView extends VBox {
+    private final XMLProcessor processor;
+    private final Attributes attributes;
+    private Attributes baseFormat;
+    private List<CompiledNode> blocks;
+    private CompiledPage page;
+    private final Map<Path, FileTime> included = new HashMap<>();
+    private final ArrayList<List<Node>> loaded = new ArrayList<>();
+    private Runnable stopWatching;
+
+    XMLLiveView(@NotNull XMLProcessor processor, Attributes attributes) {
+        this.processor = processor;
+        this.attributes = attributes == null ? null : new Attributes(attributes);
+        setFillWidth(true);
+        Pair<List<CompiledNode>, Attributes> blocks = getBlocks();
+        this.blocks = blocks.getKey();
+        this.baseFormat = blocks.getValue();
+        this.page = processor.getCompiled();
+        PageChanges.record(page, included);
+        for (CompiledNode block : this.blocks) {
+            List<Node> nodes = processor.loadBlock(block, baseFormat);
+            loaded.add(nodes);
+            getChildren().addAll(nodes);
+        }
+    }
+
+    @NotNull
+    private Pair<List<CompiledNode>, Attributes> getBlocks() {
+        return processor.getBlocks(attributes == null ? null : new Attributes(attributes));
+    }
+
+    public XMLProcessor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * Reads the file again and replaces the blocks that changed.
+     *
+     * @return The amount of blocks that were loaded again.
+     * @throws IOException If the file couldn't be read or isn't well-formed XML.
+     */
+    public int reload() throws IOException {
+        processor.reload();
+        return update();
+    }
+
+    /**
+     * Replaces the blocks that are different from the compiled page of the
+     * processor, for when the page was already compiled again.
+     * Included files that were saved are read again as well.
+     *
+     * @return The amount of blocks that were loaded again.
+     */
+    public int update() {
+        Pair<List<CompiledNode>, Attributes> next = getBlocks();
+        List<CompiledNode> newBlocks = next.getKey();
+        Attributes newFormat = next.getValue();
+        if (!Objects.equals(formatOf(baseFormat), formatOf(newFormat))) {
+            // everything inherits the base format, so nothing can be kept
+            blocks = List.of();
+            loaded.clear();
+            getChildren().clear();
+        }
+        CompiledPage newPage = processor.getCompiled();
+        PageChanges changes = PageChanges.of(processor, page, newPage, included);
+        page = newPage;
+        BlockDiff diff = BlockDiff.of(blocks, newBlocks, changes::isStale);
+        baseFormat = newFormat;
+        if (diff.isUnchanged()) {
+            blocks = newBlocks;
+            return 0;
+        }
+        int from = diff.getPrefix();
+        int oldEnd = blocks.size() - diff.getSuffix();
+        int newEnd = newBlocks.size() - diff.getSuffix();
+        int childStart = 0;
+        for (int i=0; i < from; i++) {
+            childStart += loaded.get(i).size();
+        }
+        int childEnd = childStart;
+        for (int i=from; i < oldEnd; i++) {
+            childEnd += loaded.get(i).size();
+        }
+        int reloaded = 0;
+        List<List<Node>> middle = new ArrayList<>(newEnd - from);
+        List<Node> children = new ArrayList<>();
+        for (int i=from; i < newEnd; i++) {
+            int match = diff.getMatch(i);
+            List<Node> nodes;
+            if (match >= 0) {
+                nodes = loaded.get(match);
+            } else {
+                nodes = processor.loadBlock(newBlocks.get(i), baseFormat);
+                reloaded++;
+            }
+            middle.add(nodes);
+            children.addAll(nodes);
+        }
+        ScrollPane scrollPane = getScrollPane();
+        double scrolled = scrollPane == null ? 0 : getScrolled(scrollPane);
+        getChildren().remove(childStart, childEnd);
+        getChildren().addAll(childStart, children);
+        loaded.subList(from, oldEnd).clear();
+        loaded.addAll(from, middle);
+        blocks = newBlocks;
+        if (scrollPane != null) {
+            scrollPane.applyCss();
+            scrollPane.layout();
+            setScrolled(scrollPane, scrolled);
+        }
+        return reloaded;
+    }
+
+    private static Object formatOf(Attributes format) {
+        return format == null ? null : format.getAttributes();
+    }
+
+    private ScrollPane getScrollPane() {
+        Parent parent = getParent();
+        while (parent != null && !(parent instanceof ScrollPane)) {
+            parent = parent.getParent();
+        }
+        return (ScrollPane) parent;
+    }
+
+    private static double getScrolled(@NotNull ScrollPane scrollPane) {
+        double extra = scrollPane.getContent().getLayoutBounds().getHeight() - scrollPane.getViewportBounds().getHeight();
+        double range = scrollPane.getVmax() - scrollPane.getVmin();
+        return extra <= 0 || range <= 0 ? 0 : (scrollPane.getVvalue() - scrollPane.getVmin()) / range * extra;
+    }
+
+    private static void setScrolled(@NotNull ScrollPane scrollPane, double scrolled) {
+        double extra = scrollPane.getContent().getLayoutBounds().getHeight() - scrollPane.getViewportBounds().getHeight();
+        double range = scrollPane.getVmax() - scrollPane.getVmin();
+        if (extra > 0) {
+            scrollPane.setVvalue(scrollPane.getVmin() + Math.min(1, scrolled / extra) * range);
+        }
+    }
+
+    /**
+     * Reloads the display every time the file of the processor is saved,
+     * until {@link #stopWatching()} is called.
+     *
+     * @throws IOException If the file cannot be watched.
+     */
+    public void startWatching() throws IOException {
+        if (stopWatching != null) return;
+        stopWatching = FileWatcher.watch(processor.getFilePath(), () -> {
+            if (stopWatching == null) return;
+            try {
+                reload();
+            } catch (IOException e) {
+                System.out.println("Failed to reload story file: " + e.getMessage());
+            }
+        });
+    }
+
+    public boolean isWatching() {
+        return stopWatching != null;
+    }
+
+    public void stopWatching() {
+        if (stopWatching != null) {
+            stopWatching.run();
+            stopWatching = null;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.Node;
+import javafx.scene.layout.VBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * A {@link Task} that loads a GA-XML file off of the JavaFX Application Thread.
+ * <BR><BR>
+ * Everything that loading a file takes is done on the thread that runs this task:
+ * the file is compiled, its script and function tags are run, and its nodes are built,
+ * the nodes are not part of any scene while being built. A task made for a
+ * {@link XMLProcessor#loadTask(Path, Attributes) path} also reads and parses the file there.
+ * The scope of the scripts is shared with every other processor of the file and
+ * with the click handlers of its nodes, scripts hold the lock of their
+ * {@link com.airent.extendedjavafxnodes.gaxml.javascript.Script} while they run,
+ * so that scripts of the file never run on two threads at once.
+ * <BR><BR>
+ * As top level nodes are finished, they are published in batches to the
+ * subscribers of this task on the JavaFX Application Thread, so that the
+ * start of a page can be shown before the rest of it is done.
+ * The value of this task, once it has succeeded, is the list of all the loaded nodes.
+ * <BR><BR>
+ * Cancelling this task stops the loading after the top level node
+ * that is currently being loaded, and completes the subscribers exceptionally
+ * with a {@link CancellationException}.
+ */
+public class XMLLoadTask extends Task<List<Node>> implements Flow.Publisher<List<Node>> {
+    private final Path path;
+    private final Attributes attributes;
+    private final SubmissionPublisher<List<Node>> publisher = new SubmissionPublisher<>(Platform::runLater, Flow.defaultBufferSize());
+    private volatile XMLProcessor processor;
+    private int batchSize = 16;
+    private long batchInterval = 16;
+
+    XMLLoadTask(@NotNull XMLProcessor processor, Attributes attributes) {
+        this.processor = processor;
+        this.path = processor.getFilePath();
+        this.attributes = attributes;
+    }
+
+    XMLLoadTask(@NotNull Path path, Attributes attributes) {
+        this.path = path;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Gets the processor of the file that this task loads.
+     *
+     * @return The processor, or null if this task was made for a path and hasn't parsed the file yet.
+     */
+    public XMLProcessor getProcessor() {
+        return processor;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the amount of nodes that makes a batch be published.
+     *
+     * @param batchSize The amount of nodes in a full batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public long getBatchInterval() {
+        return batchInterval;
+    }
+
+    /**
+     * Sets the amount of milliseconds after which a batch is
+     * published, even if it isn't full.
+     *
+     * @param batchInterval The max time between batches in milliseconds.
+     */
+    public void setBatchInterval(long batchInterval) {
+        this.batchInterval = batchInterval;
+    }
+
+    /**
+     * Subscribes to the batches of nodes that this task loads,
+     * the subscriber is called on the JavaFX Application Thread.
+     * Batches that were published before subscribing are not received.
+     *
+     * @param subscriber The subscriber.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Node>> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Creates a {@link VBox} that each batch of this task is added to
+     * as soon as it is published. This must be called before the task is started
+     * for the VBox to receive all the nodes.
+     *
+     * @return The VBox that will display the loaded nodes.
+     */
+    public VBox display() {
+        VBox vBox = new VBox();
+        vBox.setFillWidth(true);
+        publisher.consume(vBox.getChildren()::addAll);
+        return vBox;
+    }
+
+    @Override
+    protected List<Node> call() throws Exception {
+        XMLProcessor current = processor;
+        if (current == null) {
+            current = XMLProcessor.of(path.toAbsolutePath());
+            processor = current;
+        }
+        ArrayList<Node> paras = new ArrayList<>();
+        int[] published = {0};
+        long[] lastPublish = {System.currentTimeMillis()};
+        current.load(attributes, paras, () -> {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            long now = System.currentTimeMillis();
+            if (paras.size() - published[0] >= batchSize || (paras.size() > published[0] && now - lastPublish[0] >= batchInterval)) {
+                publisher.submit(List.copyOf(paras.subList(published[0], paras.size())));
+                published[0] = paras.size();
+                lastPublish[0] = now;
+            }
+        });
+        if (paras.size() > published[0]) {
+            publisher.submit(List.copyOf(paras.subList(published[0], paras.size())));
+        }
+        publisher.close();
+        return paras;
+    }
+
+    @Override
+    protected void cancelled() {
+        super.cancelled();
+        publisher.closeExceptionally(new CancellationException());
+    }
+
+    @Override
+    protected void failed() {
+        super.failed();
+        publisher.closeExceptionally(getException());
+    }
+}
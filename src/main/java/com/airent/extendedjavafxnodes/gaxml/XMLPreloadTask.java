@@ -0,0 +1,104 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import javafx.concurrent.Task;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Task} that reads and compiles every GA-XML file of a directory ahead of time,
+ * so that opening a file later in a session doesn't stop to parse it.
+ * <BR><BR>
+ * The files are read in parallel on the executor of the task, each with a parser
+ * of its own from the pool of {@link XML.Build#BUILD}.
+ * Every file gets its processor registered in {@link XMLProcessor#getSegments()},
+ * its page compiled, and the scripts of its page compiled, but not run,
+ * see {@link com.airent.extendedjavafxnodes.gaxml.javascript.Script#precompile(String)}.
+ * Files that are already registered are skipped, and files that are in the
+ * {@link XMLProcessor#setBundle bundle} are taken from it.
+ * <BR><BR>
+ * The progress of the task is the amount of files that are done, and its message
+ * is the last file that was done. A file that fails doesn't stop the others,
+ * its error is kept in {@link #getFailures()}.
+ * The value of the task is the processors of the files, in the order they were found.
+ */
+public class XMLPreloadTask extends Task<List<XMLProcessor>> {
+    private final Path root;
+    private final Executor executor;
+    private final Map<Path, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    XMLPreloadTask(@NotNull Path root, @NotNull Executor executor) {
+        this.root = root;
+        this.executor = executor;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the files that couldn't be preloaded.
+     *
+     * @return An unmodifiable copy of the errors of the files that failed.
+     */
+    public Map<Path, Throwable> getFailures() {
+        synchronized (failures) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+        }
+    }
+
+    @Override
+    protected List<XMLProcessor> call() throws Exception {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(p -> p.toString().endsWith(".xml") && Files.isRegularFile(p))
+                    .map(p -> p.toAbsolutePath().normalize())
+                    .sorted()
+                    .toList();
+        }
+        int total = files.size();
+        AtomicInteger done = new AtomicInteger();
+        updateProgress(0, total);
+        List<CompletableFuture<XMLProcessor>> futures = new ArrayList<>(total);
+        for (Path file : files) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                if (isCancelled()) {
+                    throw new CancellationException();
+                }
+                try {
+                    return XMLProcessor.preload(file);
+                } catch (IOException | RuntimeException e) {
+                    failures.put(file, e);
+                    System.out.println("Failed to preload story file " + file + ": " + e.getMessage());
+                    return null;
+                } finally {
+                    updateProgress(done.incrementAndGet(), total);
+                    updateMessage(file.toString());
+                }
+            }, executor));
+        }
+        List<XMLProcessor> processors = new ArrayList<>(total);
+        for (CompletableFuture<XMLProcessor> future : futures) {
+            XMLProcessor processor = future.exceptionally(e -> null).join();
+            if (processor != null) {
+                processors.add(processor);
+            }
+        }
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+        return processors;
+    }
+}
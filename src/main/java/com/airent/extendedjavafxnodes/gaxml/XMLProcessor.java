@@ -1,125 +1,375 @@
 package com.airent.extendedjavafxnodes.gaxml;
 
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledBundle;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
 import com.airent.extendedjavafxnodes.gaxml.javascript.Script;
 import com.airent.extendedjavafxnodes.gaxml.story.Segment;
-import com.airent.extendedjavafxnodes.gaxml.story.StoryPart;
+import com.airent.extendedjavafxnodes.gaxml.story.SegmentRegistry;
 import com.airent.extendedjavafxnodes.gaxml.themes.Light;
 import com.airent.extendedjavafxnodes.gaxml.themes.Theme;
 import com.airent.extendedjavafxnodes.utils.Convert;
 import com.airent.extendedjavafxnodes.utils.Pair;
 import com.airent.extendedjavafxnodes.utils.math.Equation;
+import javafx.beans.binding.StringBinding;
 import javafx.event.ActionEvent;
 import javafx.event.Event;
 import javafx.event.EventHandler;
 import javafx.scene.Node;
 import javafx.scene.control.ButtonBase;
+import javafx.scene.control.Hyperlink;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
+import org.mozilla.javascript.RhinoException;
 import org.mozilla.javascript.Scriptable;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 import javax.xml.transform.TransformerException;
-import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 
 public class XMLProcessor {
-    private final static StoryPart<Segment> segments = new StoryPart<Segment>() {
+    private final static SegmentRegistry segments = new SegmentRegistry("Segments");
+    private final static IncludeResolver includes = new IncludeResolver();
+    private static final Pattern MULTI_SPACE = Pattern.compile(" +");
+    private static final Pattern PUNCTUATION_START = Pattern.compile("^[,.!?;:]");
+    private static final Pattern WILD = Pattern.compile("\\.\\.|/\\.\\.");
+    private static final ConcurrentHashMap<String, Optional<URL>> resources = new ConcurrentHashMap<>();
+    private static final int MAX_MATH_RESULTS = 1024;
+    private static final Object NO_TARGET = new Object();
+    private static volatile CompiledBundle bundle;
+    private static volatile SearchIndex searchIndex;
+    // equations are pure, so results can be shared by all processors
+    private static final LinkedHashMap<List<String>, String> mathResults = new LinkedHashMap<>(16, 0.75f, true) {
         @Override
-        public String getName() {
-            return "Segments";
+        protected boolean removeEldestEntry(Map.Entry<List<String>, String> eldest) {
+            return size() > MAX_MATH_RESULTS;
         }
     };
     private final Path filePath;
     private final XML file;
     private final Script script;
+    private final AtomicReference<CompiledPage> compiled;
+    // keeps the segment of the file reachable for as long as any processor of the file is
+    private Segment segment;
     private Theme theme;
     private double defaultWidth = 668;
+    private boolean reactive = false;
+    private boolean coalesceText = true;
+    private ScriptExecutor scriptExecutor;
+    private VariableGraph variableGraph;
+    // the events and script targets of the compiled page they were read for,
+    // read on the FX thread by applyEvents and on the script executor by callScript
+    private final AtomicReference<ScriptTargets> scriptTargets = new AtomicReference<>();
 
     private void addToSegments() {
-        Segment segment = new Segment(this.filePath.toString(), this);
-        segments.add(segment);
+        segment = new Segment(SegmentRegistry.key(this.filePath), this);
+        segments.put(segment);
+        CompiledPage page = compiled.get();
+        if (page != null) {
+            addToSearchIndex(page);
+        }
     }
 
-    public XMLProcessor(@NotNull URL url) {
-        String path = url.getFile();
-        if (segments.containsKey(path)) {
-            XMLProcessor actual = segments.get(path).getProcessor();
+    private void addToSearchIndex(@NotNull CompiledPage page) {
+        SearchIndex current = searchIndex;
+        if (current != null && filePath != null) {
+            current.index(SegmentRegistry.key(filePath), page);
+        }
+    }
+
+    /**
+     * Gets the registry that processors are shared through, processors
+     * made for a file that is in the registry share their state
+     * with the processor that was first made for that file.
+     * Files that are evicted from the registry are loaded again
+     * the next time a processor is made for them.
+     *
+     * @return The registry of segments.
+     */
+    public static SegmentRegistry getSegments() {
+        return segments;
+    }
+
+    /**
+     * Gets the resolver that loads the files of inline pages.
+     *
+     * @return The include resolver.
+     */
+    public static IncludeResolver getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Sets the bundle that files are loaded from before they are parsed.
+     * <BR><BR>
+     * Processors made from a path or URL take the compiled page of their file
+     * from the bundle when the file didn't change since the bundle was written,
+     * files that changed or aren't in the bundle are parsed like before.
+     * Like processors made from a {@link CompiledPage}, processors of pages
+     * from the bundle have no DOM, so they cannot be saved.
+     *
+     * @param bundle The bundle, or null to always parse files.
+     */
+    public static void setBundle(CompiledBundle bundle) {
+        XMLProcessor.bundle = bundle;
+    }
+
+    public static CompiledBundle getBundle() {
+        return bundle;
+    }
+
+    /**
+     * Sets the index that the text of pages is added to when they are compiled.
+     * <BR><BR>
+     * Every page that is compiled from now on, including pages that are
+     * {@link #preloadAll(Path) preloaded} or reloaded, replaces what was indexed
+     * for its file, under the same name as its {@link Segment}.
+     *
+     * @param searchIndex The index, or null to not index pages.
+     */
+    public static void setSearchIndex(SearchIndex searchIndex) {
+        XMLProcessor.searchIndex = searchIndex;
+    }
+
+    public static SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Gets the compiled page of a file from the bundle.
+     *
+     * @return The page, or null if there is no bundle or the file isn't up-to-date in it.
+     */
+    private static CompiledPage fromBundle(@NotNull Path path) {
+        CompiledBundle current = bundle;
+        return current == null ? null : current.get(path);
+    }
+
+    /**
+     * Creates a task that preloads every GA-XML file under a directory in parallel.
+     * The task isn't started, so that its progress can be watched before it runs.
+     *
+     * @param root The directory to look for files in.
+     * @param executor The executor the files are read on.
+     * @return The new preload task.
+     * @see XMLPreloadTask
+     */
+    public static XMLPreloadTask preloadTask(@NotNull Path root, @NotNull Executor executor) {
+        return new XMLPreloadTask(root, executor);
+    }
+
+    /**
+     * Starts preloading every GA-XML file under a directory,
+     * the files are read in parallel on the common {@link ForkJoinPool}.
+     *
+     * @param root The directory to look for files in.
+     * @return The started preload task.
+     * @see XMLPreloadTask
+     */
+    public static XMLPreloadTask preloadAll(@NotNull Path root) {
+        return preloadAll(root, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Starts preloading every GA-XML file under a directory,
+     * the task waits for the files on a virtual thread of its own.
+     *
+     * @param root The directory to look for files in.
+     * @param executor The executor the files are read on.
+     * @return The started preload task.
+     * @see XMLPreloadTask
+     */
+    public static XMLPreloadTask preloadAll(@NotNull Path root, @NotNull Executor executor) {
+        XMLPreloadTask task = preloadTask(root, executor);
+        Thread.ofVirtual().name("GA-XML-Preload").start(task);
+        return task;
+    }
+
+    /**
+     * Reads, compiles and registers the processor of a file for {@link XMLPreloadTask}.
+     * The scripts of the page are compiled but not run, scripts that don't compile
+     * are left to fail when they are run.
+     *
+     * @param path The absolute path of the file.
+     * @return The processor of the file.
+     * @throws IOException If the file couldn't be read.
+     */
+    @NotNull
+    static XMLProcessor preload(@NotNull Path path) throws IOException {
+        String key = SegmentRegistry.key(path);
+        Segment cached = segments.getOrClaim(key);
+        if (cached != null) {
+            return new XMLProcessor(cached);
+        }
+        try {
+            CompiledPage page = fromBundle(path);
+            XMLProcessor processor = page == null ? new XMLProcessor(new XML(path, false)) : new XMLProcessor(page);
+            for (String source : processor.getCompiled().getScriptSources()) {
+                try {
+                    processor.script.precompile(source);
+                } catch (RhinoException ignored) {}
+            }
+            return processor;
+        } finally {
+            segments.release(key);
+        }
+    }
+
+    /**
+     * Gets the processor of an already resolved file path,
+     * sharing the processor of the file if there is one.
+     *
+     * @param path The path of the file.
+     * @return The processor of the file.
+     */
+    @NotNull
+    static XMLProcessor of(@NotNull Path path) {
+        return new XMLProcessor(path, () -> open(path));
+    }
+
+    /**
+     * Opens a file that no processor has yet.
+     */
+    @FunctionalInterface
+    private interface Opener {
+        /**
+         * @return The DOM of the file, or null if it has none, and the compiled page of the file,
+         * or null if it isn't compiled yet.
+         */
+        Pair<XML, CompiledPage> open() throws IOException;
+    }
+
+    /**
+     * Takes the compiled page of a file from the bundle, or parses the file
+     * if it isn't up-to-date in the bundle.
+     */
+    @NotNull
+    private static Pair<XML, CompiledPage> open(@NotNull Path filePath) throws IOException {
+        CompiledPage page = fromBundle(filePath);
+        return new Pair<>(page == null ? new XML(filePath, false) : null, page);
+    }
+
+    /**
+     * Shares the processor of a file if there is one, otherwise opens the file.
+     * The file is claimed while it is opened, so it is only opened once when many
+     * processors of it are made at the same time.
+     *
+     * @param filePath The path of the file.
+     * @param opener Opens the file when there is no processor of it.
+     */
+    private XMLProcessor(@NotNull Path filePath, @NotNull Opener opener) {
+        this(segments.getOrClaim(SegmentRegistry.key(filePath)), filePath, opener);
+    }
+
+    private XMLProcessor(@NotNull Segment cached) {
+        this(cached, null, null);
+    }
+
+    /**
+     * @param cached The segment of the processor of the file to share,
+     *               or null if the file was claimed and has to be opened.
+     * @param filePath The path of the file, only used when it is opened.
+     * @param opener Opens the file, only used when it is opened.
+     */
+    private XMLProcessor(Segment cached, Path filePath, Opener opener) {
+        if (cached != null) {
+            XMLProcessor actual = cached.getProcessor();
+            this.segment = cached;
             this.file = actual.getFile();
             this.filePath = actual.getFilePath();
             this.script = actual.getScript();
             this.theme = actual.getTheme();
+            this.compiled = actual.compiled;
             this.alreadyPreloaded = actual.alreadyPreloaded;
         } else {
+            String key = SegmentRegistry.key(filePath);
             try {
-                file = new XML(Path.of(url.toURI()), false);
-            } catch (IOException | URISyntaxException e) {
-                throw new RuntimeException(e);
+                Pair<XML, CompiledPage> opened;
+                try {
+                    opened = opener.open();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                this.file = opened.getKey();
+                this.filePath = filePath;
+                this.script = new Script(this);
+                this.theme = new Light();
+                this.compiled = new AtomicReference<>(opened.getValue());
+                addToSegments();
+            } finally {
+                segments.release(key);
             }
-            this.filePath = this.file.getFile().toPath();
-            this.script = new Script(this);
-            this.theme = new Light();
-            addToSegments();
         }
     }
 
-    public XMLProcessor(@NotNull XML file) {
-        String path = file.getFile().toPath().toString();
-        if (segments.containsKey(path)) {
-            XMLProcessor actual = segments.get(path).getProcessor();
-            this.file = actual.getFile();
-            this.filePath = actual.getFilePath();
-            this.script = actual.getScript();
-            this.theme = actual.getTheme();
-            this.alreadyPreloaded = actual.alreadyPreloaded;
-        } else {
-            this.file = file;
-            this.filePath = this.file.getFile().toPath();
-            this.script = new Script(this);
-            this.theme = new Light();
-            addToSegments();
+    public XMLProcessor(@NotNull URL url) {
+        this(toPath(url));
+    }
+
+    private XMLProcessor(@NotNull Path filePath) {
+        this(filePath, () -> open(filePath));
+    }
+
+    @NotNull
+    private static Path toPath(@NotNull URL url) {
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
         }
     }
 
+    public XMLProcessor(@NotNull XML file) {
+        this(file.getFile().toPath(), () -> new Pair<>(file, null));
+    }
+
     public XMLProcessor(String path) {
-        filePath = findPath(path, true);
-        String path2 = filePath.toString();
-        if (segments.containsKey(path2)) {
-            XMLProcessor actual = segments.get(path2).getProcessor();
-            this.file = actual.getFile();
-            this.script = actual.getScript();
-            this.theme = actual.getTheme();
-            this.alreadyPreloaded = actual.alreadyPreloaded;
-        } else {
-            try {
-                file = new XML(filePath, false);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            this.script = new Script(this);
-            this.theme = new Light();
-            addToSegments();
+        this(findRootPath(path));
+    }
+
+    /**
+     * Creates a processor for a page that was already compiled,
+     * such as one read by {@link CompiledPage#read(Path)}.
+     * <BR><BR>
+     * No DOM is kept for the page, so {@link #getFile()} returns null
+     * and the processor cannot be saved.
+     *
+     * @param page The compiled page, it must have a path.
+     */
+    public XMLProcessor(@NotNull CompiledPage page) {
+        this(pathOf(page), () -> new Pair<>(null, page));
+    }
+
+    @NotNull
+    private static Path pathOf(@NotNull CompiledPage page) {
+        if (page.getPath() == null) {
+            throw new NullPointerException("The compiled page must have a path.");
         }
+        return page.getPath();
     }
 
     private Path checkParent(Path parent, String find, int level) {
@@ -127,24 +377,8 @@ public class XMLProcessor {
     }
 
     private Pair<Path, Boolean> checkDeepParent(Path parent, String find, int level) {
-        Pair<Path, Boolean> ret = new Pair<>(null, false);
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(parent)) {
-            for (Path entry : stream) {
-                if (level != 0) {
-                    ret = checkDeepParent(entry, find, level-1);
-                    if (ret.getValue()) {
-                        return ret;
-                    }
-                }
-                String[] path = entry.toString().split(String.valueOf(File.separatorChar));
-                if (path[path.length-1].equals(find)) {
-                    return new Pair<>(entry, true);
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        return ret;
+        Path found = ResourceIndex.of(parent).find(find, level);
+        return new Pair<>(found, found != null);
     }
 
     private void pathNotExists(Path path) {
@@ -156,8 +390,7 @@ public class XMLProcessor {
     public Path findPath(String path, boolean checkRoot) {
         Path filePath1 = null;
         path = path.replace("\\\\", "/");
-        Pattern startDial = Pattern.compile("\\.\\.|/\\.\\.");
-        boolean usesWild = startDial.matcher(path).find();
+        boolean usesWild = WILD.matcher(path).find();
         int wildCount = 0;
         boolean wildAsBack = true;
         Path parent = null;
@@ -197,7 +430,28 @@ public class XMLProcessor {
         if (!checkRoot || (filePath1 != null && filePath1.toFile().exists())) {
             return filePath1;
         }
-        URL resource = this.getClass().getClassLoader().getResource(path);
+        return findOnRoot(path);
+    }
+
+    /**
+     * Finds a path like {@link #findPath(String, boolean)} does for a processor that has no file yet.
+     */
+    @NotNull
+    private static Path findRootPath(String path) {
+        path = path.replace("\\\\", "/");
+        if (WILD.matcher(path).find()) {
+            throw new RuntimeException("Cannot use wilds in given path when stored file path has no parent or is empty.");
+        }
+        return findOnRoot(path);
+    }
+
+    /**
+     * Finds a path on the class path, or else relative to the working directory.
+     */
+    @NotNull
+    private static Path findOnRoot(String path) {
+        Path filePath1;
+        URL resource = getResource(path);
         if (resource == null) {
             filePath1 = Paths.get(path);
             if (!filePath1.toFile().exists()) {
@@ -213,6 +467,17 @@ public class XMLProcessor {
         return filePath1;
     }
 
+    /**
+     * Finds a resource on the class path, the result is kept
+     * so every path is only looked up once.
+     *
+     * @param path The path of the resource.
+     * @return The URL of the resource, or null if there is none.
+     */
+    private static URL getResource(String path) {
+        return resources.computeIfAbsent(path, p -> Optional.ofNullable(XMLProcessor.class.getClassLoader().getResource(p))).orElse(null);
+    }
+
     public Path getFilePath() {
         return filePath;
     }
@@ -241,7 +506,78 @@ public class XMLProcessor {
         this.defaultWidth = defaultWidth;
     }
 
+    public boolean isReactive() {
+        return reactive;
+    }
+
+    /**
+     * Sets whether the nodes of var and math tags that are loaded from now on
+     * are bound to the {@link #getVariableGraph() variable graph}, so that
+     * they are updated in place when a value they depend on changes.
+     *
+     * @param reactive Whether loaded var and math tags are bound.
+     */
+    public void setReactive(boolean reactive) {
+        this.reactive = reactive;
+    }
+
+    public boolean isCoalesceText() {
+        return coalesceText;
+    }
+
+    /**
+     * Sets whether runs of text that are loaded from now on are merged when they
+     * are next to each other in a block and are formatted the same,
+     * see {@link Formatter#setCoalesceText(boolean)}.
+     *
+     * @param coalesceText Whether runs of text are merged.
+     */
+    public void setCoalesceText(boolean coalesceText) {
+        this.coalesceText = coalesceText;
+    }
+
+    public ScriptExecutor getScriptExecutor() {
+        return scriptExecutor;
+    }
+
+    /**
+     * Sets the executor that the onclick events of nodes that are loaded from now on run on,
+     * instead of in the click handler on the JavaFX Application Thread.
+     * <BR><BR>
+     * Repeated clicks on a node are dropped while the event of the last click
+     * is still queued or running. While an executor is set, the scripts of this
+     * processor should only be run through it, such as with {@link #executeScriptAsync(String, String[])},
+     * since the scope of the scripts isn't thread-safe.
+     *
+     * @param scriptExecutor The executor, or null to run events in the click handler.
+     */
+    public void setScriptExecutor(ScriptExecutor scriptExecutor) {
+        this.scriptExecutor = scriptExecutor;
+    }
+
+    /**
+     * Gets the dependency graph of the variables of this processor.
+     *
+     * @return The variable graph.
+     * @see VariableGraph
+     */
+    public VariableGraph getVariableGraph() {
+        if (variableGraph == null) {
+            variableGraph = new VariableGraph(this);
+        }
+        return variableGraph;
+    }
+
+    /**
+     * Saves the XML of this processor to its file, if it has changes that aren't saved.
+     *
+     * @see XML#update()
+     */
     public void save() {
+        if (file == null) {
+            System.out.println("Cannot save a story file that has no XML document.");
+            return;
+        }
         try {
             file.update();
         } catch (TransformerException e) {
@@ -249,6 +585,26 @@ public class XMLProcessor {
         }
     }
 
+    /**
+     * Saves the XML of this processor to its file on a background thread,
+     * saves made in quick succession are merged into one write.
+     *
+     * @return Completed once the XML is saved, or right away if there is nothing to save.
+     * @see XML#updateAsync()
+     */
+    public CompletableFuture<Void> saveAsync() {
+        if (file == null) {
+            System.out.println("Cannot save a story file that has no XML document.");
+            return CompletableFuture.completedFuture(null);
+        }
+        return file.updateAsync().handle((xml, e) -> {
+            if (e != null) {
+                System.out.println("Failed to save story file.");
+            }
+            return null;
+        });
+    }
+
     public VBox display() {
         VBox vBox = new VBox();
         vBox.setFillWidth(true);
@@ -262,7 +618,249 @@ public class XMLProcessor {
 
     public List<Node> load(Attributes attributes) {
         loadScripts();
-        return load(file, 0, attributes);
+        return load(getCompiled().getNodes(), 0, attributes);
+    }
+
+    /**
+     * Loads the GA-XML file into the provided list, calling {@code afterNode}
+     * every time a top level node has been loaded into the list.
+     *
+     * @param attributes The base format.
+     * @param paras The list to load the nodes into.
+     * @param afterNode Called after each top level node, may be null.
+     */
+    void load(Attributes attributes, @NotNull ArrayList<Node> paras, Runnable afterNode) {
+        loadScripts();
+        load(getCompiled().getNodes(), 0, attributes, paras, afterNode);
+    }
+
+    /**
+     * Creates a task that loads the GA-XML file off of the JavaFX Application Thread.
+     * The task isn't started, so that it can be subscribed to before it runs.
+     * The page is compiled and its scripts are run by the task, on the thread that runs it.
+     *
+     * @param attributes The base format.
+     * @return The new load task.
+     * @see XMLLoadTask
+     */
+    public XMLLoadTask loadTask(Attributes attributes) {
+        return new XMLLoadTask(this, attributes);
+    }
+
+    /**
+     * Starts loading the GA-XML file on the provided executor.
+     * <BR><BR>
+     * Batches that are published before a subscriber subscribes are not
+     * sent to that subscriber, use {@link #loadTask(Attributes)} to subscribe
+     * before the task is started.
+     *
+     * @param attributes The base format.
+     * @param executor The executor to load on.
+     * @return The started load task.
+     */
+    public XMLLoadTask loadAsync(Attributes attributes, @NotNull Executor executor) {
+        XMLLoadTask task = loadTask(attributes);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Creates a task that reads, parses and loads a GA-XML file off of the JavaFX Application Thread,
+     * the processor of the file is made or taken from the {@link #getSegments() segments} by the task.
+     * The task isn't started, so that it can be subscribed to before it runs.
+     *
+     * @param path The path of the file.
+     * @param attributes The base format.
+     * @return The new load task.
+     * @see XMLLoadTask
+     */
+    public static XMLLoadTask loadTask(@NotNull Path path, Attributes attributes) {
+        return new XMLLoadTask(path, attributes);
+    }
+
+    /**
+     * Starts reading, parsing and loading a GA-XML file on the provided executor.
+     *
+     * @param path The path of the file.
+     * @param attributes The base format.
+     * @param executor The executor to load on.
+     * @return The started load task.
+     * @see #loadTask(Path, Attributes)
+     */
+    public static XMLLoadTask loadAsync(@NotNull Path path, Attributes attributes, @NotNull Executor executor) {
+        XMLLoadTask task = loadTask(path, attributes);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Creates a virtualized view of the GA-XML file, where only
+     * the top level blocks that are visible are loaded into the scene.
+     *
+     * @return The new view.
+     * @see XMLView
+     */
+    public XMLView displayVirtualized() {
+        return displayVirtualized(null);
+    }
+
+    /**
+     * Creates a virtualized view of the GA-XML file, where only
+     * the top level blocks that are visible are loaded into the scene.
+     *
+     * @param attributes The base format.
+     * @return The new view.
+     * @see XMLView
+     */
+    public XMLView displayVirtualized(Attributes attributes) {
+        return new XMLView(this, attributes);
+    }
+
+    /**
+     * Creates a display of the GA-XML file that can be reloaded,
+     * where only the top level blocks that changed are loaded again.
+     *
+     * @param attributes The base format.
+     * @return The new display.
+     * @see XMLLiveView
+     */
+    public XMLLiveView displayLive(Attributes attributes) {
+        return new XMLLiveView(this, attributes);
+    }
+
+    /**
+     * Gets the top level blocks of the GA-XML file, these are the nodes
+     * that are loaded one after another by {@link #load(Attributes)}
+     * once any page that is the only child of its parent is unwrapped.
+     *
+     * @param attributes The base format.
+     * @return The blocks and the format they are loaded with.
+     */
+    @NotNull
+    Pair<List<CompiledNode>, Attributes> getBlocks(Attributes attributes) {
+        loadScripts();
+        List<CompiledNode> nodes = getCompiled().getNodes();
+        while (nodes.size() == 1 && nodes.getFirst() instanceof CompiledNode.Page page) {
+            if (attributes != null) {
+                attributes.updateAttributes(true);
+                attributes = new Attributes(attributes, page.getAttributes());
+            } else {
+                attributes = new Attributes(page.getAttributes());
+            }
+            nodes = page.getChildren();
+        }
+        return new Pair<>(nodes, attributes);
+    }
+
+    /**
+     * Loads a single block that was provided by {@link #getBlocks(Attributes)}.
+     *
+     * @param block The block to load.
+     * @param baseFormat The format that was provided with the block, it isn't changed.
+     * @return The loaded nodes of the block.
+     */
+    @NotNull
+    List<Node> loadBlock(@NotNull CompiledNode block, Attributes baseFormat) {
+        return loadBlocks(List.of(block), baseFormat);
+    }
+
+    /**
+     * Loads blocks that were provided by {@link #getBlocks(Attributes)}.
+     *
+     * @param blocks The blocks to load.
+     * @param baseFormat The format that was provided with the blocks, it isn't changed.
+     * @return The loaded nodes of the blocks.
+     */
+    @NotNull
+    List<Node> loadBlocks(@NotNull List<CompiledNode> blocks, Attributes baseFormat) {
+        return load(blocks, 0, baseFormat == null ? null : new Attributes(baseFormat));
+    }
+
+    /**
+     * Gets the compiled form of the GA-XML file of this processor,
+     * compiling it if it hasn't been compiled yet.
+     * <BR><BR>
+     * The compiled form is shared between all processors of the same file
+     * and is kept until {@link #recompile()} is called or the {@link XML} is changed.
+     * Changes made straight to the nodes of the XML are only seen once they are
+     * {@link XML#markDirty() marked}, or right away if the XML {@link XML#watchChanges() is watched}.
+     * Processors without a {@link XML} re-read their file when recompiling.
+     *
+     * @return The compiled page.
+     */
+    public CompiledPage getCompiled() {
+        CompiledPage page = compiled.get();
+        if (page == null || (file != null && page.getVersion() != file.getModificationCount())) {
+            CompiledPage old = page;
+            if (file != null) {
+                page = CompiledPage.compile(file);
+            } else {
+                try {
+                    page = CompiledPage.read(filePath);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            if (compiled.compareAndSet(old, page)) {
+                addToSearchIndex(page);
+            } else {
+                page = compiled.get();
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Drops the compiled form of the GA-XML file of this processor,
+     * so that changes made to the XML are picked up by the next load.
+     */
+    public void recompile() {
+        compiled.set(null);
+    }
+
+    /**
+     * Reads the GA-XML file of this processor again and compiles it,
+     * for when the file was changed outside of the processor.
+     * <BR><BR>
+     * The file is parsed before anything is replaced, so a file that isn't
+     * well-formed, such as one that is still being written, leaves the
+     * current page in place. The script scope is kept, only script
+     * and function tags that weren't in the old page are run.
+     *
+     * @return The old and the new compiled page.
+     * @throws IOException If the file couldn't be read or isn't well-formed XML.
+     */
+    public Pair<CompiledPage, CompiledPage> reload() throws IOException {
+        CompiledPage old = getCompiled();
+        CompiledPage page;
+        if (file != null) {
+            file.reload();
+            page = getCompiled();
+        } else {
+            page = CompiledPage.read(filePath);
+            compiled.set(page);
+            addToSearchIndex(page);
+        }
+        if (alreadyPreloaded) {
+            HashSet<CompiledNode> loaded = new HashSet<>(old.getElementsByTagName("script"));
+            loaded.addAll(old.getElementsByTagName("function"));
+            loadNewScripts(page.getNodes(), loaded);
+        }
+        return new Pair<>(old, page);
+    }
+
+    private void loadNewScripts(@NotNull List<CompiledNode> nodes, Set<CompiledNode> loaded) {
+        for (CompiledNode node : nodes) {
+            if (node instanceof CompiledNode.Element elm) {
+                if (elm.getTagName().equals("script") || elm.getTagName().equals("function")) {
+                    if (!loaded.contains(elm)) {
+                        loadScript(elm);
+                    }
+                } else if (!elm.getChildren().isEmpty()) {
+                    loadNewScripts(elm.getChildren(), loaded);
+                }
+            }
+        }
     }
 
     /**
@@ -352,333 +950,328 @@ public class XMLProcessor {
      *     provided before the function execution call in the var or variable tag.
      * </P>
      *
-     * @param xml The XML data to load.
+     * @param nodes The compiled XML data to load.
      * @param level How deep the XML data is from the top level of the XML file.
      * @param baseFormat The default format. (The format of the XML data's parent element.)
      * @return The list of nodes to be added as actual page content and of page options.
      */
     @NotNull
     @Contract("_, _, _ -> new")
-    private List<Node> load(@NotNull XML xml, int level, Attributes baseFormat) {
-        if (baseFormat != null) baseFormat.updateAttributes(true);
+    private List<Node> load(@NotNull List<CompiledNode> nodes, int level, Attributes baseFormat) {
         ArrayList<Node> paras = new ArrayList<>();
+        load(nodes, level, baseFormat, paras, null);
+        return paras;
+    }
 
-        if (xml.getChildNodes() == null) {
-            throw new RuntimeException("Cannot load XML with no child nodes.");
-        }
+    private void load(@NotNull List<CompiledNode> nodes, int level, Attributes baseFormat, ArrayList<Node> paras, Runnable afterNode) {
+        if (baseFormat != null) baseFormat.updateAttributes(true);
 
-        if (xml.getChildNodes().getLength() == 1) {
-            org.w3c.dom.Node node = xml.getChildNodes().item(0);
-            if (node.getNodeType() == 1 && ((Element) node).getTagName().equals("page")) {
-                Attributes format;
-                if (baseFormat != null) format = new Attributes(node, baseFormat);
-                else format = new Attributes(node);
-                return load(new XML(node), level+1, format);
-            }
+        if (nodes.size() == 1 && nodes.getFirst() instanceof CompiledNode.Page page) {
+            Attributes format = baseFormat == null ? new Attributes(page.getAttributes()) : new Attributes(baseFormat, page.getAttributes());
+            load(page.getChildren(), level+1, format, paras, afterNode);
+            return;
         }
 
-        xml.forEachNode(node -> {
+        for (CompiledNode node : nodes) {
             if (theme == null) theme = new Light();
             Formatter text = new Formatter(baseFormat, theme);
             text.setDefaultWidth(defaultWidth);
-            Attributes attrs = attributes(node);
-            if (node.getNodeType() == 1) {
-                Element elm = (Element) node;
-                XML elmXML = new XML(elm);
-                switch (elm.getTagName()) {
-                    case "page" -> {
-                        if (elm.hasAttribute("combine")) {
-                            if (elm.getAttribute("combine").equals("true")) {
-                                List<Node> aPage = load(elmXML, level+1, text.getBaseFormat(new Attributes(attrs, true)));
-                                text.add(aPage);
-                            }
-                        } else {
-                            if (elm.hasAttribute("type")) {
-                                if (elm.getAttribute("type").startsWith("inline")) {
-                                    boolean isNotice = elm.getAttribute("type").contains("notice");
-                                    String path = elm.getTextContent();
-                                    if (elm.hasAttribute("path")) path = elm.getAttribute("path");
-                                    String notice = path;
-                                    if (elm.hasAttribute("notice")) notice = elm.getAttribute("notice");
-                                    if (isNotice) {
-                                        text.add("<" + notice + " ---->", new Attributes(attrs, true));
-                                    }
-                                    text.add(new XMLProcessor(path).load(text.getBaseFormat(new Attributes(attrs, true))));
-                                    if (elm.getChildNodes().getLength() != 0) {
-                                        text.add(load(elmXML, level + 1, text.getBaseFormat(new Attributes(attrs, true))));
-                                    }
-                                    if (isNotice) {
-                                        text.add("<End " + notice + " ---->", new Attributes(attrs, true));
-                                    }
-                                } else {
-                                    throw new RuntimeException("Cannot put non-inline page here.");
-                                }
-                            } else {
-                                throw new RuntimeException("Cannot put non-inline page here.");
-                            }
-                        }
+            text.setCoalesceText(coalesceText);
+            switch (node) {
+                case CompiledNode.Combine combine -> {
+                    if (combine.isCombined()) {
+                        text.add(load(combine.getChildren(), level+1, text.getBaseFormat(combine.getPassableFormat())));
+                    }
+                }
+                case CompiledNode.Include include -> {
+                    if (include.isNotice()) {
+                        text.add("<" + include.getNotice() + " ---->", include.getPassableFormat());
                     }
-                    case "br" -> {
-                        text.addBreak(new Attributes(attrs, true));
+                    text.add(includes.include(this, include.getPath(), text.getBaseFormat(include.getPassableFormat())));
+                    if (!include.getChildren().isEmpty()) {
+                        text.add(load(include.getChildren(), level + 1, text.getBaseFormat(include.getPassableFormat())));
                     }
-                    case "hr" -> {
-                        text.addLine(new Attributes(attrs, true));
+                    if (include.isNotice()) {
+                        text.add("<End " + include.getNotice() + " ---->", include.getPassableFormat());
                     }
-                    case "p", "span", "a", "pre" -> {
-                        if (elm.getTagName().equals("p") || elm.getTagName().equals("pre")) {
-                            if (!attrs.containsKey("display")) {
-                                attrs.put("display", "block");
-                            }
-                        }
-                        if (elm.getTagName().equals("pre")) {
-                            if (!attrs.containsKey("allowSpace")) {
-                                attrs.put("allowSpace", "true");
-                            }
+                }
+                case CompiledNode.Break br -> {
+                    text.addBreak(br.getPassableFormat());
+                }
+                case CompiledNode.Line hr -> {
+                    text.addLine(hr.getPassableFormat());
+                }
+                case CompiledNode.Block block -> {
+                    text.add(load(block.getChildren(), level + 1, text.getBaseFormat(block.getPassableFormat())));
+                }
+                case CompiledNode.Value value -> {
+                    String charName = "";
+                    if (value.getName() != null) {
+                        charName = value.getName();
+                    } else {
+                        if (text.getBaseFormat().containsKey("name")) {
+                            charName = text.getBaseFormat().get("name");
                         }
-                        text.add(load(elmXML, level + 1, text.getBaseFormat(new Attributes(attrs, true))));
                     }
-                    case "var", "math" -> {
-                        //System.out.println(text.getBaseFormat().getAttributes());
-                        String charName = "";
-                        if (elm.hasAttribute("name")) {
-                            charName = elm.getAttribute("name");
+                    if (!value.isMath() && charName.isBlank()) {
+                        throw new RuntimeException("Cannot have a variable call with no name attribute.");
+                    }
+                    if (reactive) {
+                        StringBinding binding;
+                        if (value.isMath()) {
+                            binding = getVariableGraph().getEquation(value.getValue(), value.getVariables());
                         } else {
-                            if (text.getBaseFormat().containsKey("name")) {
-                                charName = text.getBaseFormat().get("name");
-                            }
+                            binding = getVariableGraph().getParsed("inFile." + charName);
+                        }
+                        Node valueNode = text.format(binding.get(), value.getFormat());
+                        if (valueNode instanceof Hyperlink link && link.getGraphic() instanceof Text linkText) {
+                            linkText.textProperty().bind(binding);
+                        } else if (valueNode instanceof Text valueText) {
+                            valueText.textProperty().bind(binding);
                         }
-                        if (elm.getTagName().equals("math")) {
-                            String[] vars = getVars(elm);
-                            charName = mathCheck(canBeValue(elm), vars);
+                        text.add(List.of(valueNode));
+                    } else {
+                        if (value.isMath()) {
+                            charName = mathCheck(value.getValue(), value.getVariables());
                         } else {
-                            if (charName.isBlank()) {
-                                throw new RuntimeException("Cannot have a variable call with no name attribute.");
-                            }
                             charName = variableParser(false, new String[]{"inFile." + charName})[0];
                         }
-                        text.add(charName, new Attributes(attrs));
+                        text.add(charName, value.getFormat());
                     }
                 }
-            } else if (node.getNodeType() == 3) {
-                boolean allowSpace = text.getBaseFormat().check("allowSpace", "true");
-                if (!node.getTextContent().isBlank() || allowSpace) {
-                    String msg = node.getTextContent();
-                    if (!allowSpace) {
-                        if (!text.getBaseFormat().check("allowLineBreaks", "true")) {
-                            msg = msg.replaceAll("\n", " ");
-                        }
-                        if (!text.getBaseFormat().check("allowNonEmptySpace", "true")) {
-                            msg = msg.replaceAll(" +", " ");
-                        }
-                        if (!text.getBaseFormat().check("allowBeginSpace", "true")) {
-                            int bi = 0;
-                            while (msg.charAt(bi) == ' ') {
-                                bi++;
+                case CompiledNode.Element elm -> {
+                    if (elm.getTagName().equals("page")) {
+                        throw new RuntimeException("Cannot put non-inline page here.");
+                    }
+                }
+                case CompiledNode.Text run -> {
+                    boolean allowSpace = text.getBaseFormat().check("allowSpace", "true");
+                    if (!run.isCData() && (!run.isBlank() || allowSpace)) {
+                        String msg = run.getText();
+                        if (!allowSpace) {
+                            if (!text.getBaseFormat().check("allowLineBreaks", "true")) {
+                                msg = msg.replace('\n', ' ');
+                            }
+                            if (!text.getBaseFormat().check("allowNonEmptySpace", "true")) {
+                                msg = MULTI_SPACE.matcher(msg).replaceAll(" ");
                             }
-                            if (bi != 0) {
-                                msg = msg.substring(bi);
+                            if (!text.getBaseFormat().check("allowBeginSpace", "true")) {
+                                int bi = 0;
+                                while (msg.charAt(bi) == ' ') {
+                                    bi++;
+                                }
+                                if (bi != 0) {
+                                    msg = msg.substring(bi);
+                                }
                             }
                         }
-                    }
-                    try {
-                        Node last = paras.getLast();
-                        if (last instanceof Text text1) {
+                        if (!paras.isEmpty() && paras.getLast() instanceof Text text1) {
                             if (!text1.getText().endsWith(" ") && !msg.startsWith(" ")) {
-                                Pattern spec = Pattern.compile("^[,.!?;:]");
-                                if (!spec.matcher(msg).find()) {
+                                if (!PUNCTUATION_START.matcher(msg).find()) {
                                     msg = " "+msg;
                                 }
                             }
                         }
-                    } catch (NoSuchElementException ignored) {}
-                    paras.add(text.format(msg, new Attributes(attrs)));
+                        paras.add(text.format(msg, new Attributes()));
+                    }
                 }
             }
             if (!text.isEmpty()) {
-                List<Node> nodes;
-                if (attrs.check("display", "block")) {
-                    nodes = new ArrayList<>();
+                Map<String, String> attrs = node.getAttributes();
+                List<Node> nodes1;
+                if ("block".equals(attrs.get("display"))) {
+                    nodes1 = new ArrayList<>();
 
-                    nodes.add(text.applyBlockFormat(text.getTextList(), new Attributes(attrs)));
+                    nodes1.add(text.applyBlockFormat(text.getTextList(), new Attributes(attrs)));
                 } else {
-                    nodes = text.getTextList();
+                    nodes1 = text.getTextList();
                 }
-                for (Node node1 : nodes) {
+                for (Node node1 : nodes1) {
                     applyEvents(node1, attrs);
                 }
-                paras.addAll(nodes);
+                paras.addAll(nodes1);
             }
-        });
-
-        return paras;
+            if (afterNode != null) {
+                afterNode.run();
+            }
+        }
     }
 
     private boolean alreadyPreloaded = false;
 
     public HashMap<String, Object> loadScripts() {
-        if (!alreadyPreloaded) {
-            alreadyPreloaded = true;
-            return loadScripts(file);
-        }
-        return null;
+        return script.exclusive(() -> {
+            if (!alreadyPreloaded) {
+                alreadyPreloaded = true;
+                return loadScripts(getCompiled().getNodes());
+            }
+            return null;
+        });
     }
 
     public HashMap<String, Object> loadScripts(@NotNull XML xml) {
+        return loadScripts(CompiledPage.compile(xml).getNodes());
+    }
+
+    public HashMap<String, Object> loadScripts(@NotNull List<CompiledNode> nodes) {
+        return script.exclusive(() -> loadScriptsLocked(nodes));
+    }
+
+    private HashMap<String, Object> loadScriptsLocked(@NotNull List<CompiledNode> nodes) {
         HashMap<String, Object> scriptReturns = new HashMap<>();
-        if (xml.hasChildNodes()) {
-            xml.forEachNode(node -> {
-                Pair<String, Pair<Boolean, Object>> loaded = loadScript(node);
+        for (CompiledNode node : nodes) {
+            if (node instanceof CompiledNode.Element elm) {
+                Pair<String, Pair<Boolean, Object>> loaded = loadScript(elm);
                 if (loaded.getKey() != null) {
                     if (loaded.getValue().getKey()) {
                         scriptReturns.put(loaded.getKey(), loaded.getValue().getValue());
                     }
                 } else {
-                    XML xmlNode = new XML(node);
-                    if (xmlNode.hasChildNodes()) {
-                        scriptReturns.putAll(loadScripts(xmlNode));
+                    if (!elm.getChildren().isEmpty()) {
+                        scriptReturns.putAll(loadScriptsLocked(elm.getChildren()));
                     }
                 }
-            });
+            }
         }
         return scriptReturns;
     }
 
     @NotNull
     @Contract("_ -> new")
-    private Pair<String, Pair<Boolean, Object>> loadScript(org.w3c.dom.Node node) {
-        Attributes attrs = attributes(node);
-        if (node.getNodeType() == 1) {
-            Element elm = (Element) node;
-            XML elmXML = new XML(elm);
-            Object val = null;
-            boolean canAdd = false;
-            switch (elm.getTagName()) {
-                case "script" -> {
-                    canAdd = true;
-                    if (elmXML.hasChildNodes() && elmXML.getChildNodes().item(0).getNodeType() == 1) {
-                        val = loadScripts(elmXML);
-                    } else {
-                        if (!attrs.check("parse", "false")) {
-                            if (attrs.containsKey("src")) {
-                                val = script.parse(findPath(attrs.get("src"), false).toFile());
-                            } else {
-                                val = script.parse(elm.getTextContent());
-                            }
+    private Pair<String, Pair<Boolean, Object>> loadScript(@NotNull CompiledNode.Element elm) {
+        Map<String, String> attrs = elm.getAttributes();
+        Object val = null;
+        boolean canAdd = false;
+        switch (elm.getTagName()) {
+            case "script" -> {
+                canAdd = true;
+                if (elm.isLeadingElement()) {
+                    val = loadScripts(elm.getChildren());
+                } else {
+                    if (!"false".equals(attrs.get("parse"))) {
+                        if (attrs.containsKey("src")) {
+                            val = script.parse(findPath(attrs.get("src"), false).toFile());
                         } else {
-                            canAdd = false;
+                            val = script.parse(elm.getTextContent());
                         }
+                    } else {
+                        canAdd = false;
                     }
                 }
-                case "function" -> {
-                    canAdd = true;
-                    AtomicReference<String> name = new AtomicReference<>();
-                    List<String> props = new ArrayList<>();
-                    AtomicReference<String> source = new AtomicReference<>();
-                    if (elmXML.hasChildNodes() && elmXML.getChildNodes().item(0).getNodeType() == 1) {
-                        elmXML.forEachNode(node1 -> {
-                            if (node1.getNodeType() == 1) {
-                                Element elm1 = (Element) node1;
-                                if (elm1.getTagName().equals("name")) {
-                                    name.set(elm1.getTextContent());
-                                } else if (elm1.getTagName().equals("properties")) {
-                                    NodeList nl = elm1.getChildNodes();
-                                    for (int i=0; i<nl.getLength(); i++) {
-                                        org.w3c.dom.Node n = nl.item(i);
-                                        if (n.getNodeType() == 1) {
-                                            Element e = (Element) n;
-                                            props.add(e.getTextContent());
-                                        }
+            }
+            case "function" -> {
+                canAdd = true;
+                String name = null;
+                List<String> props = new ArrayList<>();
+                String source = null;
+                if (elm.isLeadingElement()) {
+                    for (CompiledNode node1 : elm.getChildren()) {
+                        if (node1 instanceof CompiledNode.Element elm1) {
+                            if (elm1.getTagName().equals("name")) {
+                                name = elm1.getTextContent();
+                            } else if (elm1.getTagName().equals("properties")) {
+                                for (CompiledNode n : elm1.getChildren()) {
+                                    if (n instanceof CompiledNode.Element e) {
+                                        props.add(e.getTextContent());
                                     }
-                                } else if (elm1.getTagName().equals("source")) {
-                                    source.set(elm1.getTextContent());
                                 }
+                            } else if (elm1.getTagName().equals("source")) {
+                                source = elm1.getTextContent();
                             }
-                        });
-                    } else {
-                        name.set(null);
-                        source.set(elm.getTextContent());
-                    }
-                    Script.Func func;
-                    if (name.get() == null || name.get().isBlank()) {
-                        func = script.newFunction(source.get());
-                    } else {
-                        func = script.newFunction(name.get(), props, source.get());
-                    }
-                    if (attrs.check("parse", "true")) {
-                        String[] vars = variableParser(false, getVars(elm));
-                        if (attrs.check("construct", "true")) {
-                            val = func.construct(vars);
-                        } else {
-                            val = func.call(vars);
                         }
+                    }
+                } else {
+                    source = elm.getTextContent();
+                }
+                Script.Func func;
+                if (name == null || name.isBlank()) {
+                    func = script.newFunction(source);
+                } else {
+                    func = script.newFunction(name, props, source);
+                }
+                if ("true".equals(attrs.get("parse"))) {
+                    String[] vars = variableParser(false, getVars(elm));
+                    if ("true".equals(attrs.get("construct"))) {
+                        val = func.construct(vars);
                     } else {
-                        val = func;
+                        val = func.call(vars);
                     }
+                } else {
+                    val = func;
                 }
             }
-            return new Pair<>(attrs.get("name"), new Pair<>(canAdd, val));
         }
-        return new Pair<>(null, null);
+        return new Pair<>(attrs.get("name"), new Pair<>(canAdd, val));
     }
 
     public Object loadScript(String name) {
-        return loadScript(file, name);
+        return loadScript(getCompiled(), name, "script");
     }
 
     public Object loadScript(@NotNull XML xml, String name) {
-        return loadScript(xml, name, "script");
+        return loadScript(CompiledPage.compile(xml), name, "script");
     }
 
-    private Object loadScript(@NotNull XML xml, @NotNull String name, String tagName) {
+    private Object loadScript(@NotNull CompiledPage page, @NotNull String name, String tagName) {
         Object o = null;
         if (name.startsWith("script:")) {
             name = name.substring(7);
         } else {
-            String[] splitName = name.split("\\.");
-            Scriptable scriptable = script.getScope();
-            for (int i=0; i<splitName.length; i++) {
-                String n = splitName[i];
-                if (scriptable.has(n, scriptable)) {
-                    o = scriptable.get(name, scriptable);
-                    if (o instanceof Scriptable) {
-                        scriptable = (Scriptable) o;
-                    } else {
-                        if (i != splitName.length-1) {
-                            o = null;
-                            break;
-                        }
-                    }
-                } else {
-                    o = null;
-                    break;
-                }
-            }
+            o = getFromScope(name);
             if (o != null) {
                 return o;
             }
-            /*
-            if (script.getScope().has(name, script.getScope())) {
-                o = script.getScope().get(name, script.getScope());
-                if (o instanceof Function function) {
-                    return function;
-                }
-            }*/
-        }
-        NodeList nl = xml.getElementsByTagName(tagName);
-        Pair<String, Pair<Boolean, Object>> loaded = null;
-        for (int i=0; i<nl.getLength(); i++) {
-            Element elm = (Element) nl.item(i);
-            Attributes attrs = attributes(elm);
-            if (attrs.check("name", name)) {
-                loaded = loadScript(elm);
-                break;
+        }
+        CompiledNode.Element elm = getScriptElement(page, name, tagName);
+        if (elm != null) {
+            return loadScript(elm).getValue().getValue();
+        }
+        return o;
+    }
+
+    /**
+     * Gets a script element by its name.
+     *
+     * @param tagName The tag to look for first, if it's 'script' then 'function' elements are looked at next.
+     * @return The element, or null if there is none with the name.
+     */
+    private CompiledNode.Element getScriptElement(@NotNull CompiledPage page, @NotNull String name, String tagName) {
+        for (CompiledNode.Element elm : page.getElementsByTagName(tagName)) {
+            if (name.equals(elm.getAttribute("name"))) {
+                return elm;
             }
         }
-        if (loaded == null && tagName.equals("script")) {
-            return loadScript(xml, name, "function");
+        if (tagName.equals("script")) {
+            return getScriptElement(page, name, "function");
         }
-        if (loaded != null) {
-            return loaded.getValue().getValue();
+        return null;
+    }
+
+    private Object getFromScope(@NotNull String name) {
+        // the scope is changed by scripts that run on the loader and the script executor
+        return script.exclusive(() -> getFromScopeLocked(name));
+    }
+
+    private Object getFromScopeLocked(@NotNull String name) {
+        Object o = null;
+        String[] splitName = name.split("\\.");
+        Scriptable scriptable = script.getScope();
+        for (int i=0; i<splitName.length; i++) {
+            String n = splitName[i];
+            if (scriptable.has(n, scriptable)) {
+                o = scriptable.get(name, scriptable);
+                if (o instanceof Scriptable) {
+                    scriptable = (Scriptable) o;
+                } else {
+                    if (i != splitName.length-1) {
+                        o = null;
+                        break;
+                    }
+                }
+            } else {
+                o = null;
+                break;
+            }
         }
         return o;
     }
@@ -687,115 +1280,143 @@ public class XMLProcessor {
         String[] props = variableParser(false, vars);
         Object[] args = new Object[props.length];
         for (int i=0; i<props.length; i++) {
-            String prop = props[i];
+            args[i] = toArgument(props[i]);
+        }
+        return callScript(name, args);
+    }
+
+    /**
+     * Executes a script on the {@link #setScriptExecutor(ScriptExecutor) script executor},
+     * or right away if there is none.
+     *
+     * @param name The name of the script.
+     * @param vars The arguments, which are parsed like in {@link #executeScript(String, String[])}.
+     * @return A future of what the script returned, which completes on the FX executor.
+     */
+    @NotNull
+    public CompletableFuture<Object> executeScriptAsync(String name, String[] vars) {
+        ScriptExecutor executor = scriptExecutor;
+        if (executor == null) {
             try {
-                args[i] = new BigDecimal(prop);
-            } catch (NumberFormatException e) {
-                args[i] = prop;
+                return CompletableFuture.completedFuture(executeScript(name, vars));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
             }
         }
-        Object val = loadScript(name);
+        return executor.toFx(executor.submit(() -> executeScript(name, vars)));
+    }
+
+    /**
+     * Converts a parsed variable to the argument of a script, numbers become {@link BigDecimal}s.
+     */
+    static Object toArgument(@NotNull String prop) {
+        try {
+            return new BigDecimal(prop);
+        } catch (NumberFormatException e) {
+            return prop;
+        }
+    }
+
+    String parseArgument(@NotNull String var) {
+        return parseVariable(false, var, this::resolveReference);
+    }
+
+    /**
+     * Calls a script or function by name with arguments that are already converted.
+     * <BR><BR>
+     * The function of a 'function' element is only created the first time
+     * it's called for the compiled page, and then called again as is.
+     * Names are still looked up in the scope first, so functions that
+     * scripts define later are found like before.
+     *
+     * @param name The name of the script.
+     * @param args The arguments.
+     * @return What the script returned.
+     */
+    Object callScript(@NotNull String name, Object[] args) {
+        Object val = getScriptTarget(name);
         if (val instanceof Script.Func func) {
             return func.call(args);
         } else if (val instanceof Function func) {
-            Object ret;
-            try (Context cx = Context.enter()) {
-                ret = func.call(cx, script.getScope(), func, args);
-            }
-            return ret;
+            return script.call(func, args);
         }
         return val;
     }
 
-    @NotNull
-    private Map<String, Object> executeEventScript(String event) {
-        Pair<List<String>, Map<String, List<String>>> scripts = getEventScript(event);
-        return executeEventScript(scripts);
+    private Object getScriptTarget(@NotNull String name) {
+        String elmName = name;
+        if (name.startsWith("script:")) {
+            elmName = name.substring(7);
+        } else {
+            Object o = getFromScope(name);
+            if (o != null) {
+                return o;
+            }
+        }
+        ScriptTargets targets = checkTargetsPage();
+        Object target = targets.targets.get(name);
+        if (target == null) {
+            CompiledNode.Element elm = getScriptElement(targets.page, elmName, "script");
+            if (elm == null) {
+                target = NO_TARGET;
+            } else if (elm.getTagName().equals("function") && !"true".equals(elm.getAttribute("parse"))) {
+                target = loadScript(elm).getValue().getValue();
+            } else {
+                target = elm;
+            }
+            if (target != null) {
+                // another thread may have created the function first, which is then shared
+                Object previous = targets.targets.putIfAbsent(name, target);
+                if (previous != null) {
+                    target = previous;
+                }
+            }
+        }
+        if (target instanceof CompiledNode.Element elm) {
+            // scripts are run again on every call
+            return loadScript(elm).getValue().getValue();
+        }
+        return target == NO_TARGET ? null : target;
     }
 
+    /**
+     * Forgets the read events and script targets when the page was compiled again.
+     */
     @NotNull
-    private Map<String, Object> executeEventScript(Pair<List<String>, Map<String, List<String>>> scripts) {
-        HashMap<String, Object> items = new HashMap<>();
-        executeScriptedEvent(scripts, items::put);
-        return items;
-    }
-
-    private void executeScriptedEvent(@NotNull Pair<List<String>, Map<String, List<String>>> scripts, BiConsumer<String, Object> onReturn) {
-        String accurate = "ACCURATE:INLINE:SCRIPT";
-        if (scripts.getKey().getLast().equals(accurate)) {
-            onReturn.accept(accurate, script.parse(scripts.getValue().get(accurate).getFirst()));
-        } else {
-            for (String name : scripts.getKey()) {
-                onReturn.accept(name, executeScript(name, scripts.getValue().get(name).toArray(new String[0])));
+    private ScriptTargets checkTargetsPage() {
+        CompiledPage page = getCompiled();
+        ScriptTargets targets = scriptTargets.get();
+        while (targets == null || targets.page != page) {
+            ScriptTargets next = new ScriptTargets(page);
+            if (scriptTargets.compareAndSet(targets, next)) {
+                return next;
             }
+            targets = scriptTargets.get();
         }
+        return targets;
     }
 
     @NotNull
-    @Contract("_ -> new")
-    private Pair<List<String>, Map<String, List<String>>> getEventScript(@NotNull String event) {
-        StringBuilder parts = new StringBuilder();
-        HashMap<String, List<String>> scripts = new HashMap<>();
-        List<String> scriptNames = new ArrayList<>();
-        String scriptName = null;
-        List<String> scriptArgs = new ArrayList<>();
-        int braceLevel = 0;
-        boolean inlineScript = event.startsWith("inlineScript:");
-        //System.out.println(event);
-        if (!inlineScript) {
-            for (char c : event.toCharArray()) {
-                if (c == '(') {
-                    if (braceLevel == 0) {
-                        scriptName = parts.toString();
-                        parts = new StringBuilder();
-                    } else {
-                        parts.append(c);
-                    }
-                    braceLevel++;
-                } else if (c == ')') {
-                    braceLevel--;
-                    if (braceLevel == 0) {
-                        scriptArgs.add(parts.toString());
-                        parts = new StringBuilder();
-                        scripts.put(scriptName, scriptArgs);
-                        scriptNames.add(scriptName);
-                        scriptArgs = new ArrayList<>();
-                        scriptName = null;
-                    } else {
-                        parts.append(c);
-                    }
-                } else if (c == ',') {
-                    if (braceLevel == 1) {
-                        scriptArgs.add(parts.toString());
-                        parts = new StringBuilder();
-                    }
-                } else {
-                    if (braceLevel == 0 && c == ';') {
-                        if (!parts.isEmpty()) {
-                            scriptName = parts.toString();
-                            parts = new StringBuilder();
-                        }
-                        continue;
-                    }
-                    parts.append(c);
-                }
-            }
-            if (!parts.isEmpty()) {
-                scriptName = parts.toString();
-            }
-            //System.out.println(scriptName);
-            if (scriptName != null) {
-                scriptNames.add(scriptName);
-                scripts.put(scriptName, new ArrayList<>());
+    private Map<String, Object> executeEventScript(String event) {
+        return getEventScript(event).run(this);
+    }
+
+    /**
+     * Gets the read event of an onclick attribute or 'script.' reference,
+     * events are only read once for each compiled page.
+     */
+    @NotNull
+    private EventScript getEventScript(@NotNull String event) {
+        ScriptTargets targets = checkTargetsPage();
+        EventScript eventScript = targets.events.get(event);
+        if (eventScript == null) {
+            eventScript = EventScript.of(this, event);
+            EventScript previous = targets.events.putIfAbsent(event, eventScript);
+            if (previous != null) {
+                eventScript = previous;
             }
-        } else {
-            event = event.substring(13);
-            scriptName = "ACCURATE:INLINE:SCRIPT";
-            scriptNames.add(scriptName);
-            scripts.put(scriptName, List.of(event));
         }
-        //System.out.println(scriptNames);
-        return new Pair<>(scriptNames, scripts);
+        return eventScript;
     }
 
     @NotNull
@@ -810,14 +1431,25 @@ public class XMLProcessor {
         return new Attributes(node, onlyPassable);
     }
 
-    private void applyEvents(Node node, @NotNull Attributes attrs) {
+    private void applyEvents(Node node, @NotNull Map<String, String> attrs) {
         // events
         if (attrs.containsKey("onclick")) {
-            String clickEvent = attrs.get("onclick");
-            Pair<List<String>, Map<String, List<String>>> scripts = getEventScript(clickEvent);
-            onClick(node, event -> {
-                executeEventScript(scripts);
-            });
+            EventScript clickEvent = getEventScript(attrs.get("onclick"));
+            ScriptExecutor executor = scriptExecutor;
+            if (executor == null) {
+                onClick(node, event -> {
+                    clickEvent.run(this);
+                });
+            } else {
+                List<Object> key = List.of(node, clickEvent);
+                onClick(node, event -> {
+                    executor.toFx(executor.submit(key, () -> clickEvent.run(this))).whenComplete((items, e) -> {
+                        if (e != null) {
+                            System.out.println("Failed to run the onclick event " + attrs.get("onclick") + ": " + e.getMessage());
+                        }
+                    });
+                });
+            }
         }
     }
 
@@ -837,12 +1469,7 @@ public class XMLProcessor {
         }
     }
 
-    private String canBeValue(@NotNull Element elm) {
-        if (elm.hasAttribute("value")) return elm.getAttribute("value");
-        return elm.getTextContent();
-    }
-
-    private String[] getVars(@NotNull Element elm) {
+    private String[] getVars(@NotNull CompiledNode.Element elm) {
         String[] vars = new String[0];
         if (elm.hasAttribute("variables")) {
             vars = getVars(elm.getAttribute("variables"));
@@ -858,81 +1485,164 @@ public class XMLProcessor {
 
     public String[] variableParser(boolean onlyNumber, @NotNull String[] vars) {
         for (int i=0; i<vars.length; i++) {
-            String var = vars[i];
-            String name = "";
-            String[] named = var.split(":");
-            String[] parsing = new String[0];
-            String value = null;
-            if (named.length == 2) {
+            vars[i] = parseVariable(onlyNumber, vars[i], this::resolveReference);
+        }
+        return vars;
+    }
+
+    /**
+     * Parses a single variable of a variables list.
+     *
+     * @param onlyNumber Whether the variable is left as is when its value isn't a number.
+     * @param var The variable to parse.
+     * @param resolve Gives the value of the 'inFile.' or 'script.' reference of the variable,
+     *                or null if the reference has no value.
+     * @return The parsed variable, or the provided variable if it has no value.
+     */
+    String parseVariable(boolean onlyNumber, @NotNull String var, @NotNull UnaryOperator<String> resolve) {
+        String original = var;
+        String name = "";
+        String[] named = var.split(":");
+        String[] parsing = new String[0];
+        if (named.length == 2) {
+            var = named[1];
+            name = named[0]+":";
+        } else {
+            int diff = 0;
+            if (named[0].startsWith("name.")) {
+                name = named[0].substring(5);
                 var = named[1];
-                name = named[0]+":";
+                parsing = new String[named.length-2];
+                diff = 2;
             } else {
-                int diff = 0;
-                if (named[0].startsWith("name.")) {
-                    name = named[0].substring(5);
-                    var = named[1];
-                    parsing = new String[named.length-2];
-                    diff = 2;
-                } else {
-                    var = named[0];
-                    parsing = new String[named.length-1];
-                    diff = 1;
-                }
-                System.arraycopy(named, diff, parsing, 0, named.length - diff);
-            }
-            if (var.startsWith("inFile")) {
-                var = var.substring(7);
-                NodeList inVars = file.getElementsByTagName("variable");
-                for (int j=0; j < inVars.getLength(); j++) {
-                    Element elm = (Element) inVars.item(j);
-                    Attributes attributes = attributes(elm);
-                    if (attributes.check("name", var)) {
-                        if (attributes.check("mathParse", "true")) {
-                            value = mathCheck(
-                                    canBeValue(elm),
-                                    (attributes.containsKey("variables")?attributes.get("variables").split(";"):new String[0])
-                            );
-                        } else {
-                            value = canBeValue(elm);
-                        }
-                    }
-                    if (value != null && value.startsWith("script.")) {
-                        value = variableParser(false, new String[]{value})[0];
-                    }
-                }
-            } else if (var.startsWith("script")) {
-                var = var.substring(7);
-                Map<String, Object> val = executeEventScript(var);
-                if (val.size() == 1) {
-                    String key = val.keySet().toArray(new String[0])[0];
-                    value = val.get(key).toString();
-                } else {
-                    throw new RuntimeException("Variable calling a script must only call one script.");
-                }
+                var = named[0];
+                parsing = new String[named.length-1];
+                diff = 1;
             }
-            if (value!=null) {
-                try {
-                    value = new BigDecimal(value).toPlainString();
-                } catch (NumberFormatException e) {
-                    if (onlyNumber) {
-                        continue;
-                    }
+            System.arraycopy(named, diff, parsing, 0, named.length - diff);
+        }
+        String value = null;
+        if (var.startsWith("inFile") || var.startsWith("script")) {
+            value = resolve.apply(var);
+        }
+        if (value == null) {
+            return original;
+        }
+        try {
+            value = new BigDecimal(value).toPlainString();
+        } catch (NumberFormatException e) {
+            if (onlyNumber) {
+                return original;
+            }
+        }
+        for (String s : parsing) {
+            value = String.valueOf(Convert.convert(s, value));
+        }
+        return name+value;
+    }
+
+    /**
+     * Gets the value of an 'inFile.' or 'script.' reference.
+     *
+     * @param reference The reference.
+     * @return The value, or null if there is no variable with the referenced name.
+     */
+    private String resolveReference(@NotNull String reference) {
+        String value = null;
+        if (reference.startsWith("inFile")) {
+            CompiledNode.Variable variable = getCompiled().getVariable(reference.substring(7));
+            if (variable != null) {
+                if (variable.isMathParse()) {
+                    value = mathCheck(variable.getValue(), variable.getVariables());
+                } else {
+                    value = variable.getValue();
                 }
-                for (String s : parsing) {
-                    value = String.valueOf(Convert.convert(s, value));
+                if (value != null && value.startsWith("script.")) {
+                    value = variableParser(false, new String[]{value})[0];
                 }
-                vars[i] = name+value;
             }
+        } else if (reference.startsWith("script")) {
+            value = executeVariableScript(reference.substring(7));
         }
-        return vars;
+        return value;
+    }
+
+    /**
+     * Runs the script of a 'script.' reference.
+     *
+     * @param script The script call, without 'script.'.
+     * @return The string of what the script returned.
+     */
+    @NotNull
+    String executeVariableScript(String script) {
+        Map<String, Object> val = executeEventScript(script);
+        if (val.size() == 1) {
+            String key = val.keySet().toArray(new String[0])[0];
+            return val.get(key).toString();
+        }
+        throw new RuntimeException("Variable calling a script must only call one script.");
     }
 
+    /**
+     * Calculates an equation, the variables of the equation are parsed first.
+     * <BR><BR>
+     * Results are kept for each equation and parsed variables,
+     * so an equation is only calculated again when its variables change.
+     *
+     * @param equateMsg The equation.
+     * @param vars The variables of the equation, this array is changed to the parsed variables.
+     * @return The result of the equation.
+     */
     @NotNull
     public String mathCheck(String equateMsg, @NotNull String[] vars) {
+        if (vars.length != 0) {
+            vars = variableParser(true, vars);
+        }
+        return calculate(equateMsg, vars);
+    }
+
+    /**
+     * Calculates an equation with variables that are already parsed,
+     * results are kept for each equation and variables.
+     *
+     * @param equateMsg The equation.
+     * @param vars The parsed variables of the equation.
+     * @return The result of the equation.
+     */
+    @NotNull
+    static String calculate(String equateMsg, @NotNull String[] vars) {
+        List<String> key = new ArrayList<>(vars.length + 1);
+        key.add(equateMsg);
+        key.addAll(Arrays.asList(vars));
+        synchronized (mathResults) {
+            String result = mathResults.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
         Equation equation = new Equation(equateMsg);
+        String result;
         if (vars.length == 0) {
-            return equation.calculate().toPlainString();
+            result = equation.calculate().toPlainString();
+        } else {
+            result = equation.calculate(vars).toPlainString();
+        }
+        synchronized (mathResults) {
+            mathResults.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * The read events and script targets of one compiled page.
+     */
+    private static final class ScriptTargets {
+        private final CompiledPage page;
+        private final ConcurrentHashMap<String, EventScript> events = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, Object> targets = new ConcurrentHashMap<>();
+
+        private ScriptTargets(CompiledPage page) {
+            this.page = page;
         }
-        return equation.calculate(variableParser(true, vars)).toPlainString();
     }
 }
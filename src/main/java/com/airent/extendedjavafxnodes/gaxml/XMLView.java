@@ -0,0 +1,202 @@
+package com.airent.extendedjavafxnodes.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledNode;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import com.airent.extendedjavafxnodes.gaxml.themes.Theme;
+import com.airent.extendedjavafxnodes.utils.Pair;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.VBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A virtualized display of a GA-XML file.
+ * <BR><BR>
+ * Unlike {@link XMLProcessor#display()}, which puts every loaded node into
+ * a single {@link VBox}, this view only loads the top level blocks that are
+ * currently visible, each into its own cell. So the amount of nodes in the
+ * scene stays about the same no matter how long the page is.
+ * Blocks are loaded again every time they are scrolled back into view,
+ * so var and math tags are evaluated again as well.
+ * <BR><BR>
+ * Top level nodes that never display anything, such as scripts,
+ * variables and blank text, don't get a cell.
+ * <BR><BR>
+ * When the file is {@link #reload() reloaded}, only the items of the blocks
+ * that changed are replaced, so the scroll position is kept. The visible blocks
+ * are loaded again when a block calls a variable that changed, or includes
+ * a file that was saved since it was last loaded.
+ */
+public class XMLView extends ListView<CompiledNode> {
+    private final XMLProcessor processor;
+    private final Attributes attributes;
+    private Attributes baseFormat;
+    private CompiledPage page;
+    private final Map<Path, FileTime> included = new HashMap<>();
+    private Runnable stopWatching;
+
+    XMLView(@NotNull XMLProcessor processor, Attributes attributes) {
+        this.processor = processor;
+        this.attributes = attributes == null ? null : new Attributes(attributes);
+        Pair<List<CompiledNode>, Attributes> blocks = processor.getBlocks(attributes);
+        this.baseFormat = blocks.getValue();
+        this.page = processor.getCompiled();
+        PageChanges.record(page, included);
+        setItems(FXCollections.observableArrayList(displayed(blocks)));
+        setFocusTraversable(false);
+        setStyle("-fx-background-color: transparent; -fx-background-insets: 0; -fx-padding: 0;");
+        setCellFactory(listView -> new BlockCell());
+    }
+
+    @NotNull
+    private static List<CompiledNode> displayed(@NotNull Pair<List<CompiledNode>, Attributes> blocks) {
+        boolean allowSpace = blocks.getValue() != null && blocks.getValue().check("allowSpace", "true");
+        return blocks.getKey().stream().filter(node -> isDisplayed(node, allowSpace)).toList();
+    }
+
+    private static boolean isDisplayed(@NotNull CompiledNode node, boolean allowSpace) {
+        return switch (node) {
+            case CompiledNode.Text run -> !run.isCData() && (!run.isBlank() || allowSpace);
+            case CompiledNode.Combine combine -> combine.isCombined();
+            case CompiledNode.Variable variable -> false;
+            // plain elements only display anything when they're misplaced pages, which fail to load
+            case CompiledNode.Element elm -> elm.getClass() != CompiledNode.Element.class
+                    || elm.getTagName().equals("page");
+        };
+    }
+
+    public XMLProcessor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * Changes the theme of the processor and reloads the visible blocks,
+     * the scroll position is kept.
+     *
+     * @param theme The new theme.
+     */
+    public void setTheme(Theme theme) {
+        processor.setTheme(theme);
+        refresh();
+    }
+
+    /**
+     * Reads the file again and replaces the items of the blocks that changed.
+     *
+     * @throws IOException If the file couldn't be read or isn't well-formed XML.
+     * @see XMLProcessor#reload()
+     */
+    public void reload() throws IOException {
+        processor.reload();
+        update();
+    }
+
+    /**
+     * Replaces the items of the blocks that are different from the compiled
+     * page of the processor, for when the page was already compiled again.
+     */
+    public void update() {
+        Pair<List<CompiledNode>, Attributes> blocks = processor.getBlocks(attributes == null ? null : new Attributes(attributes));
+        List<CompiledNode> newItems = displayed(blocks);
+        ObservableList<CompiledNode> items = getItems();
+        boolean sameFormat = Objects.equals(baseFormat == null ? null : baseFormat.getAttributes(),
+                blocks.getValue() == null ? null : blocks.getValue().getAttributes());
+        baseFormat = blocks.getValue();
+        CompiledPage newPage = processor.getCompiled();
+        PageChanges changes = PageChanges.of(processor, page, newPage, included);
+        page = newPage;
+        if (!sameFormat) {
+            items.setAll(newItems);
+            return;
+        }
+        BlockDiff diff = BlockDiff.of(items, newItems);
+        if (!diff.isUnchanged()) {
+            replace(diff, newItems);
+        }
+        // cells only load their block again when their item is replaced by one that isn't equal
+        if (newItems.stream().anyMatch(changes::isStale)) {
+            refresh();
+        }
+    }
+
+    private void replace(@NotNull BlockDiff diff, @NotNull List<CompiledNode> newItems) {
+        ObservableList<CompiledNode> items = getItems();
+        int from = diff.getPrefix();
+        int oldEnd = items.size() - diff.getSuffix();
+        int newEnd = newItems.size() - diff.getSuffix();
+        if (oldEnd - from == newEnd - from) {
+            for (int i=from; i < newEnd; i++) {
+                if (!items.get(i).equals(newItems.get(i))) {
+                    items.set(i, newItems.get(i));
+                }
+            }
+        } else {
+            items.remove(from, oldEnd);
+            items.addAll(from, newItems.subList(from, newEnd));
+        }
+    }
+
+    /**
+     * Reloads the view every time the file of the processor is saved,
+     * until {@link #stopWatching()} is called.
+     *
+     * @throws IOException If the file cannot be watched.
+     */
+    public void startWatching() throws IOException {
+        if (stopWatching != null) return;
+        stopWatching = FileWatcher.watch(processor.getFilePath(), () -> {
+            if (stopWatching == null) return;
+            try {
+                reload();
+            } catch (IOException e) {
+                System.out.println("Failed to reload story file: " + e.getMessage());
+            }
+        });
+    }
+
+    public boolean isWatching() {
+        return stopWatching != null;
+    }
+
+    public void stopWatching() {
+        if (stopWatching != null) {
+            stopWatching.run();
+            stopWatching = null;
+        }
+    }
+
+    /**
+     * A cell that loads the block it is showing.
+     */
+    private final class BlockCell extends ListCell<CompiledNode> {
+        private final VBox content = new VBox();
+
+        private BlockCell() {
+            content.setFillWidth(true);
+            setStyle("-fx-background-color: transparent; -fx-padding: 0;");
+        }
+
+        @Override
+        protected void updateItem(CompiledNode item, boolean empty) {
+            super.updateItem(item, empty);
+            setText(null);
+            if (empty || item == null) {
+                content.getChildren().clear();
+                setGraphic(null);
+            } else {
+                content.getChildren().setAll(processor.loadBlock(item, baseFormat));
+                setGraphic(content);
+            }
+        }
+    }
+}
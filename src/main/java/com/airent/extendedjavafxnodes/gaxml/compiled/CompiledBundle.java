@@ -0,0 +1,406 @@
+package com.airent.extendedjavafxnodes.gaxml.compiled;
+
+import com.airent.extendedjavafxnodes.gaxml.javascript.Script;
+import org.jetbrains.annotations.NotNull;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.DefiningClassLoader;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A single file of already compiled GA-XML pages, so that an application
+ * with many pages doesn't have to parse them every time it starts.
+ * <BR><BR>
+ * A bundle is written once with {@link #write(Path, Path, Collection)},
+ * or from the command line with {@link #main(String[])}. It holds the compiled
+ * page of every file, the strings of all pages only once, the compiled classes
+ * of the scripts of the pages and a checksum of every file.
+ * <BR><BR>
+ * An opened bundle is mapped into memory and only the pages that are asked for
+ * are read from it. A page is only given while its file still has the checksum
+ * it had when the bundle was written, otherwise the file must be parsed again,
+ * see {@link com.airent.extendedjavafxnodes.gaxml.XMLProcessor#setBundle(CompiledBundle)}.
+ * The checksum of a file is only computed again when its size or last modified time
+ * changed since it was last checked.
+ */
+public final class CompiledBundle {
+    /**
+     * The version of the format of bundles, bundles of other versions cannot be opened.
+     */
+    public static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x47415842; // GAXB
+
+    private static final byte TEXT = 0;
+    private static final byte CDATA = 1;
+    private static final byte ELEMENT = 2;
+    private static final byte LEADING_ELEMENT = 1;
+    private static final byte ONLY_CHILD = 2;
+
+    private final Path root;
+    private final ByteBuffer data;
+    private final String[] strings;
+    private final Map<String, Entry> entries;
+    private final DefiningClassLoader loader = new DefiningClassLoader(Context.class.getClassLoader());
+
+    private CompiledBundle(Path root, ByteBuffer data, String[] strings, Map<String, Entry> entries) {
+        this.root = root;
+        this.data = data;
+        this.strings = strings;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens a bundle.
+     *
+     * @param bundle The bundle file.
+     * @param root The directory that the paths of the bundle are relative to,
+     *             usually the same directory that was used to write it.
+     * @return The opened bundle.
+     * @throws IOException If the bundle couldn't be read, or isn't a bundle of {@link #FORMAT_VERSION}.
+     */
+    @NotNull
+    public static CompiledBundle open(@NotNull Path bundle, @NotNull Path root) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(bundle, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (data.getInt() != MAGIC) {
+                throw new IOException("Not a GA-XML bundle: " + bundle);
+            }
+            int version = data.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported GA-XML bundle version " + version + ": " + bundle);
+            }
+            String[] strings = new String[data.getInt()];
+            for (int i=0; i < strings.length; i++) {
+                byte[] bytes = new byte[data.getInt()];
+                data.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int count = data.getInt();
+            HashMap<String, Entry> entries = new HashMap<>(count * 2);
+            for (int i=0; i < count; i++) {
+                String path = strings[data.getInt()];
+                entries.put(path, new Entry(data.getLong(), data.getInt()));
+            }
+            return new CompiledBundle(root.toAbsolutePath().normalize(), data.slice(), strings, entries);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt GA-XML bundle: " + bundle, e);
+        }
+    }
+
+    /**
+     * Gets the files that are in this bundle.
+     *
+     * @return The paths of the files, relative to the root of the bundle.
+     */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Gets the compiled page of a file, if the file didn't change since the bundle was written.
+     * The scripts of the page are given to {@link Script#addPrecompiled} the first time.
+     *
+     * @param source The GA-XML file.
+     * @return The compiled page, or null if the file isn't in this bundle or was changed.
+     */
+    public CompiledPage get(@NotNull Path source) {
+        Path file = source.toAbsolutePath().normalize();
+        if (!file.startsWith(root)) return null;
+        Entry entry = entries.get(relative(root, file));
+        if (entry == null) return null;
+        synchronized (entry) {
+            if (!entry.verify(file)) {
+                return null;
+            }
+            if (entry.page == null) {
+                ByteBuffer in = data.duplicate().position(entry.offset);
+                List<CompiledNode> nodes = readChildren(in);
+                readScripts(in);
+                entry.page = new CompiledPage(file, nodes);
+            }
+            return entry.page;
+        }
+    }
+
+    @NotNull
+    private List<CompiledNode> readChildren(@NotNull ByteBuffer in) {
+        int count = in.getInt();
+        List<CompiledNode> children = new ArrayList<>(count);
+        for (int i=0; i < count; i++) {
+            byte kind = in.get();
+            if (kind == ELEMENT) {
+                String tagName = strings[in.getInt()];
+                byte flags = in.get();
+                int attrCount = in.getInt();
+                HashMap<String, String> attributes = new HashMap<>(attrCount * 2);
+                for (int j=0; j < attrCount; j++) {
+                    attributes.put(strings[in.getInt()], strings[in.getInt()]);
+                }
+                children.add(CompiledNode.create(tagName, attributes, readChildren(in),
+                        (flags & LEADING_ELEMENT) != 0, (flags & ONLY_CHILD) != 0));
+            } else {
+                children.add(new CompiledNode.Text(strings[in.getInt()], kind == CDATA));
+            }
+        }
+        return children;
+    }
+
+    private void readScripts(@NotNull ByteBuffer in) {
+        int count = in.getInt();
+        for (int i=0; i < count; i++) {
+            String source = strings[in.getInt()];
+            int classCount = in.getInt();
+            Class<?> main = null;
+            for (int j=0; j < classCount; j++) {
+                String name = strings[in.getInt()];
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                Class<?> defined = loader.defineClass(name, bytes);
+                loader.linkClass(defined);
+                if (main == null) {
+                    main = defined;
+                }
+            }
+            try {
+                if (main != null) {
+                    Script.addPrecompiled(source, (org.mozilla.javascript.Script) main.getDeclaredConstructor().newInstance());
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("Failed to load a precompiled script.", e);
+            }
+        }
+    }
+
+    /**
+     * Compiles GA-XML files into a bundle.
+     *
+     * @param bundle The file to write the bundle to, it is replaced if it exists.
+     * @param root The directory that the paths of the files are stored relative to.
+     * @param sources The GA-XML files, they must be inside the root.
+     * @throws IOException If a file couldn't be read or isn't well-formed XML, or the bundle couldn't be written.
+     */
+    public static void write(@NotNull Path bundle, @NotNull Path root, @NotNull Collection<Path> sources) throws IOException {
+        Path base = root.toAbsolutePath().normalize();
+        Writer writer = new Writer();
+        LinkedHashMap<Integer, Long> checksums = new LinkedHashMap<>();
+        LinkedHashMap<Integer, byte[]> pages = new LinkedHashMap<>();
+        for (Path source : sources) {
+            Path file = source.toAbsolutePath().normalize();
+            if (!file.startsWith(base)) {
+                throw new IOException("File isn't inside the root of the bundle: " + file);
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            CompiledPage page = CompiledPage.read(file);
+            int path = writer.string(relative(base, file));
+            checksums.put(path, checksum(bytes));
+            pages.put(path, writer.page(page, scriptName(file)));
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bundle)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(writer.strings.size());
+            for (String string : writer.strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(pages.size());
+            int offset = 0;
+            for (Map.Entry<Integer, byte[]> page : pages.entrySet()) {
+                out.writeInt(page.getKey());
+                out.writeLong(checksums.get(page.getKey()));
+                out.writeInt(offset);
+                offset += page.getValue().length;
+            }
+            for (byte[] page : pages.values()) {
+                out.write(page);
+            }
+        }
+    }
+
+    /**
+     * Compiles the GA-XML files of a directory into a bundle.
+     * <BR><BR>
+     * Arguments: the bundle file, the root directory and optionally the files to compile.
+     * Without files, every '.xml' file under the root is compiled.
+     *
+     * @param args The arguments.
+     * @throws IOException If the bundle couldn't be written.
+     */
+    public static void main(String @NotNull [] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CompiledBundle <bundle> <root> [files...]");
+            return;
+        }
+        Path root = Path.of(args[1]);
+        List<Path> sources = new ArrayList<>();
+        if (args.length > 2) {
+            for (int i=2; i < args.length; i++) {
+                sources.add(root.resolve(args[i]));
+            }
+        } else {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(p -> p.toString().endsWith(".xml") && Files.isRegularFile(p)).sorted().forEach(sources::add);
+            }
+        }
+        write(Path.of(args[0]), root, sources);
+        System.out.println("Compiled " + sources.size() + " files into " + args[0]);
+    }
+
+    @NotNull
+    private static String relative(@NotNull Path root, @NotNull Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static long checksum(byte @NotNull [] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Gets the name scripts of a file are compiled under, the same name that
+     * {@link Script#getFileName()} gives for the processor of the file.
+     */
+    @NotNull
+    private static String scriptName(@NotNull Path file) {
+        return file.getFileName().toString().split("\\.")[0] + ".js";
+    }
+
+    private static final class Entry {
+        private final long checksum;
+        private final int offset;
+        private CompiledPage page;
+        // the last modified time and size the file had when it last had the checksum
+        private FileTime verifiedTime;
+        private long verifiedSize;
+
+        private Entry(long checksum, int offset) {
+            this.checksum = checksum;
+            this.offset = offset;
+        }
+
+        /**
+         * Checks whether a file still has the checksum of this entry,
+         * the file is only read when it changed since it was last checked.
+         */
+        private boolean verify(@NotNull Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.lastModifiedTime().equals(verifiedTime) && attributes.size() == verifiedSize) {
+                    return true;
+                }
+                verifiedTime = null;
+                if (checksum != checksum(Files.readAllBytes(file))) {
+                    return false;
+                }
+                verifiedTime = attributes.lastModifiedTime();
+                verifiedSize = attributes.size();
+                return true;
+            } catch (IOException e) {
+                verifiedTime = null;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Encodes pages while collecting the strings they use.
+     */
+    private static final class Writer {
+        private final LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        private final ClassCompiler compiler;
+        private int classes = 0;
+
+        private Writer() {
+            CompilerEnvirons environment = new CompilerEnvirons();
+            environment.setGeneratingSource(false);
+            compiler = new ClassCompiler(environment);
+        }
+
+        private int string(@NotNull String string) {
+            return strings.computeIfAbsent(string, s -> strings.size());
+        }
+
+        private byte @NotNull [] page(@NotNull CompiledPage page, @NotNull String scriptName) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            children(out, page.getNodes());
+            List<String> scripts = page.getScriptSources();
+            LinkedHashMap<String, Object[]> compiledScripts = new LinkedHashMap<>();
+            for (String source : scripts) {
+                try {
+                    compiledScripts.put(source, compiler.compileToClassFiles(source, scriptName, 0,
+                            "gaxml.bundle.Script" + classes++));
+                } catch (RhinoException e) {
+                    // left to fail with the same error when the page runs it
+                }
+            }
+            out.writeInt(compiledScripts.size());
+            for (Map.Entry<String, Object[]> script : compiledScripts.entrySet()) {
+                Object[] compiled = script.getValue();
+                out.writeInt(string(script.getKey()));
+                out.writeInt(compiled.length / 2);
+                for (int i=0; i < compiled.length; i += 2) {
+                    byte[] classBytes = (byte[]) compiled[i+1];
+                    out.writeInt(string((String) compiled[i]));
+                    out.writeInt(classBytes.length);
+                    out.write(classBytes);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void children(@NotNull DataOutputStream out, @NotNull List<CompiledNode> nodes) throws IOException {
+            out.writeInt(nodes.size());
+            for (CompiledNode node : nodes) {
+                if (node instanceof CompiledNode.Element elm) {
+                    out.writeByte(ELEMENT);
+                    out.writeInt(string(elm.getTagName()));
+                    int flags = 0;
+                    if (elm.isLeadingElement()) flags |= LEADING_ELEMENT;
+                    // only a page that is the only child of its parent is compiled into a Page
+                    if (elm instanceof CompiledNode.Page) flags |= ONLY_CHILD;
+                    out.writeByte(flags);
+                    out.writeInt(elm.getAttributes().size());
+                    for (Map.Entry<String, String> attr : elm.getAttributes().entrySet()) {
+                        out.writeInt(string(attr.getKey()));
+                        out.writeInt(string(attr.getValue()));
+                    }
+                    children(out, elm.getChildren());
+                } else if (node instanceof CompiledNode.Text text) {
+                    out.writeByte(text.isCData() ? CDATA : TEXT);
+                    out.writeInt(string(text.getText()));
+                }
+            }
+        }
+    }
+}
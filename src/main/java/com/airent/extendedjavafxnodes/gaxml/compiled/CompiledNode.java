@@ -0,0 +1,456 @@
+package com.airent.extendedjavafxnodes.gaxml.compiled;
+
+import com.airent.extendedjavafxnodes.gaxml.Attributes;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A single immutable node of a {@link CompiledPage}.
+ * <BR><BR>
+ * Compiled nodes are produced once from a GA-XML document, with all the
+ * tag switching, attribute extraction and attribute defaulting already done,
+ * so that rendering only has to instantiate JavaFX nodes from them.
+ * <BR><BR>
+ * Compiled nodes are equal when they have the same structure,
+ * so the nodes of two compilations of a file can be compared
+ * to find what changed between them.
+ */
+public abstract sealed class CompiledNode permits CompiledNode.Text, CompiledNode.Element {
+
+    CompiledNode() {}
+
+    /**
+     * Creates the compiled element that fits the provided tag.
+     *
+     * @param tagName The tag name of the element.
+     * @param attributes The attributes of the element, this map is taken over by the element.
+     * @param children The compiled children of the element.
+     * @param leadingElement Whether the first child node of the element is an element.
+     * @param onlyChild Whether the element is the only child node of its parent.
+     * @return The new compiled element.
+     */
+    @NotNull
+    static Element create(@NotNull String tagName, Map<String, String> attributes, List<CompiledNode> children, boolean leadingElement, boolean onlyChild) {
+        Element element = switch (tagName) {
+            case "page" -> {
+                if (onlyChild) {
+                    yield new Page(attributes, children);
+                } else if (attributes.containsKey("combine")) {
+                    yield new Combine(attributes, children);
+                } else if (attributes.containsKey("type") && attributes.get("type").startsWith("inline")) {
+                    yield new Include(attributes, children);
+                }
+                yield new Element(tagName, attributes, children);
+            }
+            case "br" -> new Break(attributes, children);
+            case "hr" -> new Line(attributes, children);
+            case "p", "span", "a", "pre" -> new Block(tagName, attributes, children);
+            case "var", "math" -> new Value(tagName, attributes, children);
+            case "variable" -> new Variable(attributes, children);
+            default -> new Element(tagName, attributes, children);
+        };
+        element.leadingElement = leadingElement;
+        return element;
+    }
+
+    /**
+     * Gets the attributes that were defined on this node.
+     *
+     * @return An unmodifiable map of the attributes of this node.
+     */
+    public abstract Map<String, String> getAttributes();
+
+    /**
+     * Gets the text content of this node and all of its descendants.
+     *
+     * @return The text content of this node.
+     */
+    public abstract String getTextContent();
+
+    /**
+     * A run of character data.
+     */
+    public static final class Text extends CompiledNode {
+        private final String text;
+        private final boolean blank;
+        private final boolean cData;
+
+        Text(@NotNull String text) {
+            this(text, false);
+        }
+
+        Text(@NotNull String text, boolean cData) {
+            this.text = text;
+            this.blank = text.isBlank();
+            this.cData = cData;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isBlank() {
+            return blank;
+        }
+
+        /**
+         * Checks whether this text is a CDATA section,
+         * which only counts towards the text content of its parent.
+         *
+         * @return True if this is a CDATA section.
+         */
+        public boolean isCData() {
+            return cData;
+        }
+
+        @Override
+        public Map<String, String> getAttributes() {
+            return Map.of();
+        }
+
+        @Override
+        public String getTextContent() {
+            return text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Text other)) return false;
+            return cData == other.cData && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, cData);
+        }
+    }
+
+    /**
+     * Any element, elements that have a meaning when rendered
+     * are compiled into one of the subclasses of this class.
+     */
+    public static sealed class Element extends CompiledNode permits Page, Combine, Include, Break, Line, Block, Value, Variable {
+        private final String tagName;
+        private final Map<String, String> attributes;
+        private final Map<String, String> passable;
+        private final List<CompiledNode> children;
+        private boolean leadingElement;
+        private int hash = 0;
+
+        Element(String tagName, Map<String, String> attributes, List<CompiledNode> children) {
+            this.tagName = tagName;
+            this.attributes = Map.copyOf(attributes);
+            Map<String, String> passable = Attributes.removeUnpassable(new HashMap<>(attributes));
+            if (passable.size() == attributes.size()) {
+                this.passable = this.attributes;
+            } else {
+                this.passable = Map.copyOf(passable);
+            }
+            this.children = List.copyOf(children);
+        }
+
+        public String getTagName() {
+            return tagName;
+        }
+
+        @Override
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * Gets the attributes of this element without the attributes
+         * that cannot be passed on to child elements.
+         *
+         * @return An unmodifiable map of the passable attributes.
+         */
+        public Map<String, String> getPassable() {
+            return passable;
+        }
+
+        public boolean hasAttribute(String name) {
+            return attributes.containsKey(name);
+        }
+
+        public String getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        /**
+         * Creates a new {@link Attributes} of all the attributes of this element.
+         *
+         * @return A new Attributes.
+         */
+        public Attributes getFormat() {
+            return new Attributes(attributes);
+        }
+
+        /**
+         * Creates a new {@link Attributes} of only the passable attributes of this element.
+         *
+         * @return A new Attributes.
+         */
+        public Attributes getPassableFormat() {
+            return new Attributes(passable);
+        }
+
+        /**
+         * Gets the text content of this element, which is built
+         * from its children every time this is called.
+         *
+         * @return The text content of this element.
+         */
+        @Override
+        public String getTextContent() {
+            if (children.size() == 1) {
+                return children.getFirst().getTextContent();
+            }
+            StringBuilder textContent = new StringBuilder();
+            for (CompiledNode child : children) {
+                textContent.append(child.getTextContent());
+            }
+            return textContent.toString();
+        }
+
+        public List<CompiledNode> getChildren() {
+            return children;
+        }
+
+        /**
+         * Checks whether the first child node of this element,
+         * including any comments or CDATA, is an element.
+         *
+         * @return True if the first child node is an element.
+         */
+        public boolean isLeadingElement() {
+            return leadingElement;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Element other = (Element) o;
+            return hashCode() == other.hashCode()
+                    && leadingElement == other.leadingElement
+                    && tagName.equals(other.tagName)
+                    && attributes.equals(other.attributes)
+                    && children.equals(other.children);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = hash;
+            if (h == 0) {
+                h = Objects.hash(getClass(), tagName, attributes, children, leadingElement);
+                hash = h;
+            }
+            return h;
+        }
+    }
+
+    /**
+     * A page that is the only child of its parent, its attributes
+     * are merged on top of the format of its parent.
+     */
+    public static final class Page extends Element {
+        Page(Map<String, String> attributes, List<CompiledNode> children) {
+            super("page", attributes, children);
+        }
+    }
+
+    /**
+     * A page with the 'combine' attribute.
+     */
+    public static final class Combine extends Element {
+        private final boolean combined;
+
+        Combine(Map<String, String> attributes, List<CompiledNode> children) {
+            super("page", attributes, children);
+            this.combined = "true".equals(attributes.get("combine"));
+        }
+
+        public boolean isCombined() {
+            return combined;
+        }
+    }
+
+    /**
+     * An inline page, which includes the content of another GA-XML file.
+     */
+    public static final class Include extends Element {
+        private final String path;
+        private final String notice;
+        private final boolean isNotice;
+
+        Include(Map<String, String> attributes, List<CompiledNode> children) {
+            super("page", attributes, children);
+            this.isNotice = attributes.get("type").contains("notice");
+            this.path = attributes.containsKey("path") ? attributes.get("path") : getTextContent();
+            this.notice = attributes.getOrDefault("notice", this.path);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getNotice() {
+            return notice;
+        }
+
+        public boolean isNotice() {
+            return isNotice;
+        }
+    }
+
+    /**
+     * The br tag.
+     */
+    public static final class Break extends Element {
+        Break(Map<String, String> attributes, List<CompiledNode> children) {
+            super("br", attributes, children);
+        }
+    }
+
+    /**
+     * The hr tag.
+     */
+    public static final class Line extends Element {
+        Line(Map<String, String> attributes, List<CompiledNode> children) {
+            super("hr", attributes, children);
+        }
+    }
+
+    /**
+     * The p, span, a and pre tags.
+     * The default 'display' and 'allowSpace' attributes
+     * of p and pre are already applied.
+     */
+    public static final class Block extends Element {
+        Block(String tagName, Map<String, String> attributes, List<CompiledNode> children) {
+            super(tagName, withDefaults(tagName, attributes), children);
+        }
+
+        private static Map<String, String> withDefaults(@NotNull String tagName, Map<String, String> attributes) {
+            if (tagName.equals("p") || tagName.equals("pre")) {
+                attributes.putIfAbsent("display", "block");
+            }
+            if (tagName.equals("pre")) {
+                attributes.putIfAbsent("allowSpace", "true");
+            }
+            return attributes;
+        }
+    }
+
+    /**
+     * The var and math tags.
+     */
+    public static final class Value extends Element {
+        private final boolean math;
+        private final String name;
+        private final String value;
+        private final String[] variables;
+
+        Value(String tagName, Map<String, String> attributes, List<CompiledNode> children) {
+            super(tagName, attributes, children);
+            this.math = tagName.equals("math");
+            this.name = attributes.get("name");
+            this.value = attributes.containsKey("value") ? attributes.get("value") : getTextContent();
+            if (attributes.containsKey("variables")) {
+                this.variables = attributes.get("variables").split(";");
+            } else {
+                this.variables = new String[0];
+            }
+        }
+
+        public boolean isMath() {
+            return math;
+        }
+
+        /**
+         * Gets the name of the variable that is called.
+         *
+         * @return The name attribute, or null if there isn't one.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the value attribute, or if there isn't one, the text content.
+         *
+         * @return The value of this tag.
+         */
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Gets the variables attribute, split into each variable.
+         *
+         * @return A new array of the variables.
+         */
+        public String[] getVariables() {
+            return variables.clone();
+        }
+    }
+
+    /**
+     * The variable tag, which defines a value that var tags
+     * and 'inFile.' variables can call by name.
+     */
+    public static final class Variable extends Element {
+        private final String name;
+        private final String value;
+        private final boolean mathParse;
+        private final String[] variables;
+
+        Variable(Map<String, String> attributes, List<CompiledNode> children) {
+            super("variable", attributes, children);
+            this.name = attributes.get("name");
+            this.value = attributes.containsKey("value") ? attributes.get("value") : getTextContent();
+            this.mathParse = "true".equals(attributes.get("mathParse"));
+            if (attributes.containsKey("variables")) {
+                this.variables = attributes.get("variables").split(";");
+            } else {
+                this.variables = new String[0];
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the value attribute, or if there isn't one, the text content.
+         *
+         * @return The value of this variable, or its equation if it is math parsed.
+         */
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Checks whether the value of this variable is an equation.
+         *
+         * @return True if the 'mathParse' attribute is "true".
+         */
+        public boolean isMathParse() {
+            return mathParse;
+        }
+
+        /**
+         * Gets the variables attribute, split into each variable.
+         *
+         * @return A new array of the variables.
+         */
+        public String[] getVariables() {
+            return variables.clone();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.airent.extendedjavafxnodes.gaxml.compiled;
+
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import org.jetbrains.annotations.NotNull;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled form of a GA-XML document.
+ * <BR><BR>
+ * A compiled page is immutable, it is built once, either from the DOM of
+ * a {@link XML} or straight from a file through {@link CompiledPageReader},
+ * and can then be rendered as many times as needed without walking
+ * a DOM again.
+ */
+public final class CompiledPage {
+    private final Path path;
+    private final long version;
+    private final List<CompiledNode> nodes;
+    private final Map<String, List<CompiledNode.Element>> elementsByTag = new HashMap<>();
+    private final Map<String, CompiledNode.Variable> variables = new HashMap<>();
+
+    CompiledPage(Path path, List<CompiledNode> nodes) {
+        this(path, -1, nodes);
+    }
+
+    CompiledPage(Path path, long version, List<CompiledNode> nodes) {
+        this.path = path;
+        this.version = version;
+        this.nodes = Collections.unmodifiableList(nodes);
+        index(this.nodes);
+        elementsByTag.replaceAll((tagName, elements) -> Collections.unmodifiableList(elements));
+    }
+
+    private void index(@NotNull List<CompiledNode> nodes) {
+        for (CompiledNode node : nodes) {
+            if (node instanceof CompiledNode.Element elm) {
+                elementsByTag.computeIfAbsent(elm.getTagName(), k -> new ArrayList<>()).add(elm);
+                if (elm instanceof CompiledNode.Variable variable && variable.getName() != null) {
+                    // the last variable with a name is the one that is used
+                    variables.put(variable.getName(), variable);
+                }
+                index(elm.getChildren());
+            }
+        }
+    }
+
+    /**
+     * Gets the path of the file this page was compiled from.
+     *
+     * @return The path of the source file, or null if the page has no file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the {@link XML#getModificationCount() modification count} that the XML
+     * this page was compiled from had when it was compiled.
+     *
+     * @return The version of the XML, or -1 if the page wasn't compiled from a XML.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the top level nodes of this page.
+     *
+     * @return An unmodifiable list of the top level nodes.
+     */
+    public List<CompiledNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets all the elements of this page with the provided tag name,
+     * in the order they appear in the document.
+     *
+     * @param tagName The tag name to look for.
+     * @return An unmodifiable list of the elements with the tag name.
+     */
+    public List<CompiledNode.Element> getElementsByTagName(String tagName) {
+        return elementsByTag.getOrDefault(tagName, List.of());
+    }
+
+    /**
+     * Gets the variable tag with the provided name,
+     * if there are many, the last one in the document is given.
+     *
+     * @param name The name of the variable.
+     * @return The variable, or null if there is no variable with the name.
+     */
+    public CompiledNode.Variable getVariable(String name) {
+        return variables.get(name);
+    }
+
+    /**
+     * Gets the sources of the scripts that are compiled when this page is used,
+     * which are the text of 'script' elements and the inline scripts of onclick attributes.
+     * Scripts that are read from a 'src' file aren't included.
+     *
+     * @return The sources, in the order they appear in the document, without duplicates.
+     */
+    public List<String> getScriptSources() {
+        List<String> sources = new ArrayList<>();
+        collectScripts(nodes, sources);
+        return sources;
+    }
+
+    private static void collectScripts(@NotNull List<CompiledNode> nodes, @NotNull List<String> sources) {
+        for (CompiledNode node : nodes) {
+            if (node instanceof CompiledNode.Element elm) {
+                if (elm.getTagName().equals("script") && !elm.isLeadingElement()
+                        && !"false".equals(elm.getAttribute("parse")) && !elm.hasAttribute("src")) {
+                    addScript(sources, elm.getTextContent());
+                }
+                String onclick = elm.getAttribute("onclick");
+                if (onclick != null && onclick.startsWith("inlineScript:")) {
+                    addScript(sources, onclick.substring(13));
+                }
+                collectScripts(elm.getChildren(), sources);
+            }
+        }
+    }
+
+    private static void addScript(@NotNull List<String> sources, @NotNull String source) {
+        if (!sources.contains(source)) {
+            sources.add(source);
+        }
+    }
+
+    /**
+     * Compiles the provided XML from its current root.
+     *
+     * @param xml The XML to compile.
+     * @return The compiled form of the XML.
+     */
+    @NotNull
+    public static CompiledPage compile(@NotNull XML xml) {
+        Path path = null;
+        if (xml.getFile() != null) {
+            path = xml.getFile().toPath();
+        }
+        long version = xml.getModificationCount();
+        return new CompiledPage(path, version, compileChildren(xml.getRoot()));
+    }
+
+    /**
+     * Reads and compiles a GA-XML file without building a DOM for it.
+     *
+     * @param path The path of the GA-XML file.
+     * @return The compiled form of the file.
+     * @throws IOException If the file couldn't be read or isn't well-formed XML.
+     * @see CompiledPageReader
+     */
+    @NotNull
+    public static CompiledPage read(@NotNull Path path) throws IOException {
+        return CompiledPageReader.read(path);
+    }
+
+    @NotNull
+    private static List<CompiledNode> compileChildren(@NotNull Node parent) {
+        NodeList childNodes = parent.getChildNodes();
+        int length = childNodes.getLength();
+        List<CompiledNode> children = new ArrayList<>(length);
+        for (int i=0; i < length; i++) {
+            Node node = childNodes.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element elm = (Element) node;
+                Node first = elm.getFirstChild();
+                children.add(CompiledNode.create(
+                        elm.getTagName(), attributesOf(elm), compileChildren(elm),
+                        first != null && first.getNodeType() == Node.ELEMENT_NODE, length == 1
+                ));
+            } else if (node.getNodeType() == Node.TEXT_NODE) {
+                children.add(new CompiledNode.Text(node.getNodeValue()));
+            } else if (node.getNodeType() == Node.CDATA_SECTION_NODE) {
+                children.add(new CompiledNode.Text(node.getNodeValue(), true));
+            }
+        }
+        return children;
+    }
+
+    @NotNull
+    private static Map<String, String> attributesOf(@NotNull Element elm) {
+        NamedNodeMap attrs = elm.getAttributes();
+        HashMap<String, String> attributes = new HashMap<>();
+        for (int i=0; i < attrs.getLength(); i++) {
+            Node attr = attrs.item(i);
+            attributes.put(attr.getNodeName(), attr.getNodeValue());
+        }
+        return attributes;
+    }
+}
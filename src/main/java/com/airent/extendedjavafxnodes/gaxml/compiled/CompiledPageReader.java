@@ -0,0 +1,219 @@
+package com.airent.extendedjavafxnodes.gaxml.compiled;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads GA-XML straight into a {@link CompiledPage} with a StAX pull-parser.
+ * <BR><BR>
+ * Unlike {@link com.airent.extendedjavafxnodes.gaxml.XML}, no DOM is built,
+ * so only the compiled page is kept in memory once reading is done.
+ * The compiled page that is produced is the same as the one produced by
+ * {@link CompiledPage#compile(com.airent.extendedjavafxnodes.gaxml.XML)}
+ * for the same file.
+ */
+public final class CompiledPageReader {
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    private static final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+    static {
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+        // CDATA sections are their own nodes in the DOM, so they must not be merged into the text around them
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, true);
+        }
+    }
+
+    private CompiledPageReader() {}
+
+    /**
+     * Reads and compiles a GA-XML file.
+     *
+     * @param path The path of the GA-XML file.
+     * @return The compiled form of the file.
+     * @throws IOException If the file couldn't be read or isn't well-formed XML.
+     */
+    @NotNull
+    public static CompiledPage read(@NotNull Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return read(in, path);
+        }
+    }
+
+    /**
+     * Reads and compiles GA-XML from a stream.
+     *
+     * @param in The stream to read, it isn't closed by this method.
+     * @param path The path the GA-XML came from, may be null.
+     * @return The compiled form of the GA-XML.
+     * @throws IOException If the stream couldn't be read or isn't well-formed XML.
+     */
+    @NotNull
+    public static CompiledPage read(@NotNull InputStream in, Path path) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            if (path == null) {
+                reader = factory.createXMLStreamReader(in);
+            } else {
+                reader = factory.createXMLStreamReader(path.toUri().toString(), in);
+            }
+            return new CompiledPage(path, read(reader));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {}
+            }
+        }
+    }
+
+    @NotNull
+    private static List<CompiledNode> read(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        Frame document = new Frame(null, null);
+        Deque<Frame> frames = new ArrayDeque<>();
+        frames.push(document);
+        while (reader.hasNext()) {
+            int event = reader.next();
+            Frame frame = frames.peek();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    frame.addRaw(true);
+                    frames.push(new Frame(qualifiedName(reader), attributesOf(reader)));
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    frames.pop();
+                    frames.peek().addChild(frame.toElement());
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE -> {
+                    if (frame != document) {
+                        frame.addText(reader.getText());
+                    }
+                }
+                case XMLStreamConstants.CDATA -> {
+                    frame.addRaw(false);
+                    frame.children.add(new CompiledNode.Text(reader.getText(), true));
+                }
+                case XMLStreamConstants.COMMENT, XMLStreamConstants.PROCESSING_INSTRUCTION, XMLStreamConstants.DTD -> {
+                    frame.addRaw(false);
+                }
+            }
+        }
+        return document.finish();
+    }
+
+    @NotNull
+    private static String qualifiedName(@NotNull XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    @NotNull
+    private static Map<String, String> attributesOf(@NotNull XMLStreamReader reader) {
+        HashMap<String, String> attributes = new HashMap<>();
+        for (int i=0; i < reader.getAttributeCount(); i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String name = reader.getAttributeLocalName(i);
+            if (prefix != null && !prefix.isEmpty()) {
+                name = prefix + ":" + name;
+            }
+            attributes.put(name, reader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    /**
+     * An element that is still being read.
+     */
+    private static final class Frame {
+        private final String tagName;
+        private final Map<String, String> attributes;
+        private final List<CompiledNode> children = new ArrayList<>();
+        private StringBuilder text = null;
+        private int rawCount = 0;
+        private boolean leadingElement = false;
+
+        private Frame(String tagName, Map<String, String> attributes) {
+            this.tagName = tagName;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Counts a child node that isn't character data.
+         */
+        private void addRaw(boolean isElement) {
+            flushText();
+            if (rawCount == 0) {
+                leadingElement = isElement;
+            }
+            rawCount++;
+        }
+
+        /**
+         * Adds character data, consecutive character data
+         * is joined into a single text node like in the DOM.
+         */
+        private void addText(String data) {
+            if (text == null) {
+                text = new StringBuilder();
+                rawCount++;
+            }
+            text.append(data);
+        }
+
+        private void flushText() {
+            if (text != null) {
+                children.add(new CompiledNode.Text(text.toString()));
+                text = null;
+            }
+        }
+
+        private void addChild(CompiledNode.Element child) {
+            children.add(child);
+        }
+
+        @NotNull
+        private List<CompiledNode> finish() {
+            flushText();
+            if (rawCount == 1 && children.size() == 1
+                    && children.getFirst() instanceof CompiledNode.Element elm
+                    && elm.getTagName().equals("page")) {
+                // the only child node of its parent, which is only known once the parent ends
+                children.set(0, CompiledNode.create(
+                        "page", new HashMap<>(elm.getAttributes()),
+                        elm.getChildren(), elm.isLeadingElement(), true
+                ));
+            }
+            return children;
+        }
+
+        @NotNull
+        private CompiledNode.Element toElement() {
+            List<CompiledNode> children = finish();
+            return CompiledNode.create(
+                    tagName, attributes, children, leadingElement, false
+            );
+        }
+    }
+}
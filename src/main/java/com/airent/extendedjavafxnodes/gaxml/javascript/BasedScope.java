@@ -386,21 +386,22 @@ public abstract class BasedScope extends ScriptableObject implements Serializabl
     protected abstract void init(ScriptableObject baseScope);
 
     // the BaseScope holder, holds the true, unchangeable, scope information.
+    // the standard library isn't copied into every BaseScope, it's looked up in the shared StandardLibrary.
     protected static class BaseScope extends ScriptableObject {
+        private final ScriptableObject library;
+
         public BaseScope() {
             this(null, null);
         }
         public BaseScope(Scriptable scope, Scriptable prototype) {
             super();
-            try(Context cx = Context.enter()) {
-                cx.initStandardObjects(this, false);
+            try(Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+                library = StandardLibrary.get(cx);
             }
             if (scope != null) {
                 super.setParentScope(scope);
             }
-            if (prototype != null) {
-                super.setPrototype(prototype);
-            }
+            super.setPrototype(prototype == null ? library : prototype);
         }
 
         @Override
@@ -408,6 +409,66 @@ public abstract class BasedScope extends ScriptableObject implements Serializabl
             return "BaseScope";
         }
 
+        @Override
+        public boolean has(String name, Scriptable start) {
+            return super.has(name, start) || library.has(name, library);
+        }
+
+        @Override
+        public boolean has(int index, Scriptable start) {
+            return super.has(index, start) || library.has(index, library);
+        }
+
+        @Override
+        public boolean has(Symbol key, Scriptable start) {
+            return super.has(key, start) || library.has(key, library);
+        }
+
+        @Override
+        public Object get(String name, Scriptable start) {
+            if (super.has(name, start)) {
+                return super.get(name, start);
+            }
+            return library.get(name, library);
+        }
+
+        @Override
+        public Object get(int index, Scriptable start) {
+            if (super.has(index, start)) {
+                return super.get(index, start);
+            }
+            return library.get(index, library);
+        }
+
+        @Override
+        public Object get(Symbol key, Scriptable start) {
+            if (super.has(key, start)) {
+                return super.get(key, start);
+            }
+            return library.get(key, library);
+        }
+
+        @Override
+        public int getAttributes(String name) {
+            if (!super.has(name, this) && library.has(name, library)) {
+                return library.getAttributes(name);
+            }
+            return super.getAttributes(name);
+        }
+
+        @Override
+        public int getAttributes(Symbol sym) {
+            if (!super.has(sym, this) && library.has(sym, library)) {
+                return library.getAttributes(sym);
+            }
+            return super.getAttributes(sym);
+        }
+
+        @Override
+        public Object[] getAllIds() {
+            return getListed(super.getAllIds(), library.getAllIds());
+        }
+
         @Override
         public void setParentScope(Scriptable m) {
             throw new RuntimeException("Cannot set the parent scope of a BaseScope.");
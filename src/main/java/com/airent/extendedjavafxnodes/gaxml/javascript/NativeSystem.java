@@ -1,6 +1,10 @@
 package com.airent.extendedjavafxnodes.gaxml.javascript;
 
+import com.airent.extendedjavafxnodes.gaxml.ScriptExecutor;
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
 import org.jetbrains.annotations.NotNull;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
 import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.Undefined;
@@ -12,6 +16,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 public class NativeSystem extends NativeObject {
     // static
@@ -131,6 +138,34 @@ public class NativeSystem extends NativeObject {
             }
             return ensureSafe(script.parse((File) object));
         });
+        itemConstructor.addItem("fx", 1, (contextScriptablePair, scriptablePair) -> {
+            Object object = scriptablePair.getValue().length == 0 ? null : scriptablePair.getValue()[0];
+            if (!(object instanceof Function function)) {
+                throw new RuntimeException("Cannot process Scope.System.fx("+object+"). Must only provide a function.");
+            }
+            Scriptable scope = contextScriptablePair.getValue();
+            Supplier<Object> call = () -> script.exclusive(() -> {
+                try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+                    return function.call(cx, scope, scope, new Object[0]);
+                }
+            });
+            // scene graph nodes are only touched on the JavaFX Application Thread,
+            // the worker waits for the function so that the script goes on with what it did,
+            // without holding the script, which the JavaFX Application Thread may be waiting for
+            XMLProcessor processor = script.getProcessor();
+            ScriptExecutor executor = processor == null ? null : processor.getScriptExecutor();
+            if (executor != null && executor.isWorkerThread()) {
+                try {
+                    return ensureSafe(script.released(() -> CompletableFuture.supplyAsync(call, executor.getFxExecutor()).join()));
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+            }
+            return ensureSafe(call.get());
+        });
         itemConstructor.addItem("return", 1, (contextScriptablePair, scriptablePair) -> {
             Object ret;
             if (scriptablePair.getValue() == null) {
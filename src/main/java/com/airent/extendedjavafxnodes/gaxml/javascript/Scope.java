@@ -4,8 +4,6 @@ import com.airent.extendedjavafxnodes.utils.Pair;
 import org.mozilla.javascript.Callable;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.EvaluatorException;
-import org.mozilla.javascript.NativeConsole;
-import org.mozilla.javascript.ScriptStackElement;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Symbol;
@@ -381,41 +379,6 @@ public final class Scope extends BasedScope {
         if (preBase != null) {
             preBase.accept(baseScope);
         }
-        NativeConsole.init(baseScope, true, (NativeConsole.ConsolePrinter) (context, scriptable, level, objects, scriptStackElements) -> {
-            boolean isError = level.compareTo(NativeConsole.Level.ERROR)==0;
-            if (isError) {
-                System.err.println("ERROR: JavaScript native error was declared.");
-            }
-            if (level.compareTo(NativeConsole.Level.WARN)==0) {
-                System.err.println("WARNING: JavaScript native warn was declared.");
-            }
-            if (level.compareTo(NativeConsole.Level.TRACE)==0) {
-                System.err.println("TRACING: JavaScript native trace was declared.");
-            }
-            if (level.compareTo(NativeConsole.Level.DEBUG)==0) {
-                System.err.println("DEBUGGING: JavaScript native debug was declared.");
-            }
-            if (objects != null) {
-                for (Object o : objects) {
-                    if (isError) {
-                        System.err.println(o);
-                    } else {
-                        System.out.println(o);
-                    }
-                }
-            }
-            if (scriptStackElements != null) {
-                for (ScriptStackElement stackElement : scriptStackElements) {
-                    StringBuilder sb = new StringBuilder();
-                    stackElement.renderJavaStyle(sb);
-                    if (isError) {
-                        System.err.println(sb);
-                    } else {
-                        System.out.println(sb);
-                    }
-                }
-            }
-        });
         NativeObject ns = NativeSystem.init(getScopeActual(), true, NativeSystem.class, new Object[]{
                 new Pair<>("script", getScript())
         });
@@ -2,19 +2,48 @@ package com.airent.extendedjavafxnodes.gaxml.javascript;
 
 import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
 import org.jetbrains.annotations.NotNull;
+import org.mozilla.javascript.BaseFunction;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.WrappedException;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
+/**
+ * Runs the scripts and functions of a GA-XML document in the scope of the document.
+ * <BR><BR>
+ * Every call of a script or function is limited by the {@link #setInstructionLimit(long) instruction limit}
+ * and the {@link #setTimeLimit(long) time limit} of its script, a call that runs past
+ * a limit is stopped with a {@link ScriptLimitException}, so that a script that never ends
+ * doesn't hang the application. Limits are checked while the script runs,
+ * a script that waits in Java code is only stopped once it runs JavaScript again.
+ * Calls made within a call count towards the limits of both calls.
+ * Bytecode only counts its instructions if it was compiled while the script had limits,
+ * scripts are interpreted by default, which always counts them.
+ * <BR><BR>
+ * The scope of a document is shared by every processor of the document, so its scripts
+ * may be run from the thread that loads the document, the JavaFX Application Thread
+ * and a {@link com.airent.extendedjavafxnodes.gaxml.ScriptExecutor} at once.
+ * Every call takes the lock of its script, which keeps calls of the same script
+ * from running at the same time, see {@link #exclusive(Supplier)}.
+ */
 public class Script {
     private final String name;
     private Scope scope;
     private final XMLProcessor processor;
+    private volatile long instructionLimit = ScriptContextFactory.getShared().getInstructionLimit();
+    private volatile long timeLimit = ScriptContextFactory.getShared().getTimeLimit();
+    private final ConcurrentHashMap<String, ScriptUsage> usage = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
 
     public Script(@NotNull XMLProcessor processor) {
         this(null, null, processor);
@@ -33,7 +62,7 @@ public class Script {
             if (processor == null) {
                 throw new NullPointerException("A XMLProcessor must be stated if name is null.");
             } else {
-                name = processor.getFile().getFile().getName().split("\\.")[0];
+                name = processor.getFilePath().getFileName().toString().split("\\.")[0];
             }
         }
         this.name = name;
@@ -56,6 +85,12 @@ public class Script {
         return name;
     }
 
+    /**
+     * Gets the scope of this script, which other threads may change while their scripts run,
+     * so it should be used within {@link #exclusive(Supplier)}.
+     *
+     * @return The scope.
+     */
     public Scope getScope() {
         return scope;
     }
@@ -69,14 +104,222 @@ public class Script {
         return processor;
     }
 
+    public long getInstructionLimit() {
+        return instructionLimit;
+    }
+
+    /**
+     * Sets the most instructions a call of a script or function of this script may run.
+     *
+     * @param instructionLimit The instruction limit, or 0 for no limit.
+     */
+    public void setInstructionLimit(long instructionLimit) {
+        if (instructionLimit < 0) {
+            throw new IllegalArgumentException("The instruction limit cannot be negative.");
+        }
+        this.instructionLimit = instructionLimit;
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Sets the most milliseconds a call of a script or function of this script may run.
+     *
+     * @param timeLimit The time limit, or 0 for no limit.
+     */
+    public void setTimeLimit(long timeLimit) {
+        if (timeLimit < 0) {
+            throw new IllegalArgumentException("The time limit cannot be negative.");
+        }
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Gets what every script and function of this script has cost so far,
+     * the most expensive first. It is only counted while
+     * {@link ScriptContextFactory#setAccounting(boolean) accounting} is on.
+     *
+     * @return A snapshot of the usage of each script and function.
+     */
+    @NotNull
+    public List<ScriptUsage> getUsage() {
+        List<ScriptUsage> list = new ArrayList<>();
+        for (ScriptUsage scriptUsage : usage.values()) {
+            list.add(scriptUsage.copy());
+        }
+        list.sort(Comparator.comparingLong(ScriptUsage::getCpuTime).reversed());
+        return list;
+    }
+
+    public void resetUsage() {
+        usage.clear();
+    }
+
+    /**
+     * Checks whether the calls of this script are guarded, because it has limits or its usage is counted.
+     */
+    private boolean isGuarded() {
+        return instructionLimit > 0 || timeLimit > 0 || ScriptContextFactory.getShared().isAccounting();
+    }
+
+    /**
+     * Runs an action while no other thread runs a script of this script or uses its scope.
+     * The lock is reentrant, so the action may call scripts itself.
+     *
+     * @param action The action, such as loading the scripts of a page or running an event.
+     * @return What the action returned.
+     */
+    public <T> T exclusive(@NotNull Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets other threads run the scripts of this script while the current thread waits,
+     * such as for a function that it handed to the JavaFX Application Thread,
+     * and then takes the lock back as often as the current thread held it.
+     *
+     * @param wait What the current thread waits for.
+     * @return What the wait returned.
+     */
+    public <T> T released(@NotNull Supplier<T> wait) {
+        int holds = lock.getHoldCount();
+        for (int i=0; i < holds; i++) {
+            lock.unlock();
+        }
+        try {
+            return wait.get();
+        } finally {
+            for (int i=0; i < holds; i++) {
+                lock.lock();
+            }
+        }
+    }
+
+    private interface Body<T> {
+        T run(Context cx);
+    }
+
+    /**
+     * Runs a call within the limits of this script and counts its usage,
+     * while holding the lock of this script.
+     */
+    private <T> T guarded(@NotNull String name, @NotNull Body<T> body) {
+        ScriptContextFactory factory = ScriptContextFactory.getShared();
+        ScriptUsage scriptUsage = factory.isAccounting() ? usage.computeIfAbsent(name, ScriptUsage::new) : null;
+        lock.lock();
+        try (Context cx = factory.enterThreadContext();
+             ScriptContextFactory.Guard guard = factory.guard(cx, name, instructionLimit, timeLimit, scriptUsage)) {
+            T ret = body.run(cx);
+            if (guard != null) {
+                guard.checkExceeded();
+            }
+            return ret;
+        } catch (WrappedException e) {
+            // a limit that was exceeded in a script that was called by Java code
+            if (e.getWrappedException() instanceof ScriptLimitException limit) {
+                throw limit;
+            }
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calls a function in the scope of this script, within the limits of this script.
+     *
+     * @param function The function.
+     * @param args The arguments.
+     * @return What the function returned.
+     */
+    public Object call(@NotNull Function function, Object[] args) {
+        return guarded(nameOf(function), cx -> function.call(cx, this.scope, function, args));
+    }
+
+    @NotNull
+    private static String nameOf(Function function) {
+        if (function instanceof BaseFunction baseFunction && !baseFunction.getFunctionName().isEmpty()) {
+            return baseFunction.getFunctionName();
+        }
+        return "anonymous";
+    }
+
     Object parseReturn;
 
+    private static final ConcurrentHashMap<String, org.mozilla.javascript.Script> precompiled = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a script that was compiled ahead of time, such as one from a
+     * {@link com.airent.extendedjavafxnodes.gaxml.compiled.CompiledBundle},
+     * it is used instead of compiling the same source again.
+     * Scripts with an instruction or time limit, or whose usage is counted, compile
+     * the source themselves, since scripts from a bundle don't count their instructions.
+     *
+     * @param source The source the script was compiled from.
+     * @param compiled The compiled script.
+     */
+    public static void addPrecompiled(@NotNull String source, @NotNull org.mozilla.javascript.Script compiled) {
+        precompiled.put(source, compiled);
+    }
+
     public Object parse(String source) {
-        Object ret = null;
-        try (Context cx = Context.enter()) {
-            org.mozilla.javascript.Script script = cx.compileString(source, getFileName(), 0, null);
-            ret = script.exec(cx, this.scope);
+        return exec(compile(source));
+    }
+
+    /**
+     * Compiles a source without running it, so that it can be run many times
+     * with {@link #exec(org.mozilla.javascript.Script)}.
+     * The compiled script is shared through the {@link ScriptCache}.
+     *
+     * @param source The source of the script.
+     * @return The compiled script.
+     */
+    public org.mozilla.javascript.Script compile(String source) {
+        boolean guarded = isGuarded();
+        if (!guarded) {
+            org.mozilla.javascript.Script compiled = precompiled.get(source);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+            cx.setGenerateObserverCount(guarded);
+            return ScriptCache.compile(cx, source, getFileName());
         }
+    }
+
+    /**
+     * Compiles a source ahead of time, so that the first {@link #compile(String)}
+     * of the same source doesn't have to.
+     *
+     * @param source The source of the script.
+     */
+    public void precompile(String source) {
+        compile(source);
+    }
+
+    /**
+     * Runs a compiled script in the scope of this script.
+     *
+     * @param compiled The compiled script.
+     * @return What the script returned.
+     */
+    public Object exec(@NotNull org.mozilla.javascript.Script compiled) {
+        return guarded(getFileName(), cx -> returned(compiled.exec(cx, this.scope)));
+    }
+
+    /**
+     * Takes what a script gave to 'return', if it did, instead of the value of its last statement.
+     * This is called while the lock is held, so that the value of another thread's script isn't taken.
+     */
+    private Object returned(Object ret) {
         if (parseReturn != null) {
             ret = parseReturn;
             parseReturn = null;
@@ -86,18 +329,16 @@ public class Script {
 
     public Object parse(@NotNull File jsFile) {
         if (jsFile.exists() && jsFile.getPath().endsWith(".js")) {
-            Object ret = null;
-            try (Context cx = Context.enter()) {
-                org.mozilla.javascript.Script script = cx.compileReader(new FileReader(jsFile), jsFile.getName(), 0, null);
-                ret = script.exec(cx, this.scope);
+            String source;
+            try {
+                source = Files.readString(jsFile.toPath());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-            if (parseReturn != null) {
-                ret = parseReturn;
-                parseReturn = null;
-            }
-            return ret;
+            return guarded(jsFile.getName(), cx -> {
+                cx.setGenerateObserverCount(isGuarded());
+                return returned(ScriptCache.compile(cx, source, jsFile.getName()).exec(cx, this.scope));
+            });
         }
         throw new RuntimeException("Cannot parse JavaScript file.");
     }
@@ -125,9 +366,17 @@ public class Script {
         return new Func(source);
     }
 
+    /**
+     * A function in the scope of the script.
+     * It is compiled, called and promoted while holding the lock of the script,
+     * the source and the function may be read on any thread.
+     */
     public class Func {
-        private String source;
-        private Function function;
+        private volatile String source;
+        private volatile Function function;
+        private int calls;
+        private volatile boolean promoted;
+        private boolean promotedCounting;
 
         public Func(String source) {
             setSource(source);
@@ -138,34 +387,88 @@ public class Script {
         }
 
         public void setSource(String source) {
-            this.source = source;
-            parse();
+            exclusive(() -> {
+                this.source = source;
+                this.calls = 0;
+                this.promoted = false;
+                parse();
+                return null;
+            });
         }
 
         public Function getFunction() {
             return function;
         }
 
+        /**
+         * Gets the name of this function, which its usage is counted under.
+         *
+         * @return The name, or 'anonymous'.
+         */
+        @NotNull
+        public String getName() {
+            return nameOf(function);
+        }
+
         private void parse() {
-            try (Context cx = Context.enter()) {
-                this.function = cx.compileFunction(Script.this.scope, this.source, Script.this.getFileName(), 0, null);
+            try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+                cx.setGenerateObserverCount(isGuarded());
+                this.function = ScriptCache.compileFunction(cx, Script.this.scope, this.source, Script.this.getFileName());
             }
         }
 
         public Object call(Object[] args) {
-            Object ret;
-            try (Context cx = Context.enter()) {
-                ret = this.function.call(cx, Script.this.scope, this.function, args);
-            }
-            return ret;
+            return guarded(getName(), cx -> {
+                promote(cx);
+                return this.function.call(cx, Script.this.scope, this.function, args);
+            });
         }
 
         public Scriptable construct(Object[] args) {
-            Scriptable ret;
-            try (Context cx = Context.enter()) {
-                ret = this.function.construct(cx, Script.this.scope, args);
+            return guarded(getName(), cx -> {
+                promote(cx);
+                return this.function.construct(cx, Script.this.scope, args);
+            });
+        }
+
+        /**
+         * Compiles an interpreted function to bytecode once it has been called
+         * more than the {@link ScriptContextFactory#getPromotionThreshold() promotion threshold},
+         * and again if the limits of the script were set or removed since then.
+         */
+        private void promote(@NotNull Context cx) {
+            if (cx.getOptimizationLevel() != ScriptContextFactory.INTERPRETED) {
+                return;
             }
-            return ret;
+            boolean counting = isGuarded();
+            if (promoted) {
+                if (counting == promotedCounting) {
+                    return;
+                }
+            } else {
+                int threshold = ScriptContextFactory.getShared().getPromotionThreshold();
+                if (threshold == 0 || ++calls < threshold) {
+                    return;
+                }
+                promoted = true;
+            }
+            promotedCounting = counting;
+            cx.setOptimizationLevel(ScriptContextFactory.PROMOTED_OPTIMIZATION_LEVEL);
+            cx.setGenerateObserverCount(counting);
+            try {
+                this.function = ScriptCache.compileFunction(cx, Script.this.scope, this.source, Script.this.getFileName());
+            } finally {
+                cx.setOptimizationLevel(ScriptContextFactory.INTERPRETED);
+            }
+        }
+
+        /**
+         * Checks whether this function was compiled to bytecode because it was called often.
+         *
+         * @return True if this function was promoted.
+         */
+        public boolean isPromoted() {
+            return promoted;
         }
     }
 }
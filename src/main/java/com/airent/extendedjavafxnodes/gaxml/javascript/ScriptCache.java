@@ -0,0 +1,246 @@
+package com.airent.extendedjavafxnodes.gaxml.javascript;
+
+import org.jetbrains.annotations.NotNull;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.FunctionNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A process-wide cache of compiled scripts, so that the same script and function
+ * sources, which recur across many GA-XML files and across reloads, are only compiled once.
+ * <BR><BR>
+ * Scripts are keyed by the SHA-256 digest of their source, the file name they are
+ * compiled under and the optimization level of the {@link Context} they are compiled with,
+ * and whether the bytecode counts its instructions.
+ * A compiled script holds no scope, so one compiled script is run in any amount of scopes.
+ * Functions are bound to the scope they are made in, so for functions the function expression
+ * is what is cached, and running it makes a new function in the scope without compiling again.
+ * A function source is only cached once it is parsed as a single function, so running the
+ * expression never runs anything else in the scope.
+ * <BR><BR>
+ * The cache holds at most {@link #getMaxSize()} scripts, the least recently used
+ * scripts are evicted first. All methods of this class are thread-safe.
+ */
+public final class ScriptCache {
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static int maxSize = DEFAULT_MAX_SIZE;
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long evictions = 0;
+    private static final LinkedHashMap<List<Object>, org.mozilla.javascript.Script> scripts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, org.mozilla.javascript.Script> eldest) {
+            if (size() > maxSize) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private ScriptCache() {}
+
+    /**
+     * Gets the compiled script of a source, compiling it if it isn't cached.
+     *
+     * @param cx The current context, its optimization level is what the script is compiled with.
+     * @param source The source of the script.
+     * @param fileName The file name that errors of the script are reported with.
+     * @return The compiled script.
+     */
+    @NotNull
+    public static org.mozilla.javascript.Script compile(@NotNull Context cx, @NotNull String source, @NotNull String fileName) {
+        return compile(cx, source, fileName, false);
+    }
+
+    /**
+     * Gets the compiled script of a source, or of the function expression of a function source.
+     *
+     * @return The compiled script, or null if the function source isn't a single function.
+     */
+    private static org.mozilla.javascript.Script compile(@NotNull Context cx, @NotNull String source, @NotNull String fileName, boolean function) {
+        // bytecode differs when it counts its instructions, the interpreter always can
+        boolean counted = cx.getOptimizationLevel() >= 0 && cx.generateObserverCount;
+        List<Object> key = List.of(digest(source), fileName, cx.getOptimizationLevel(), counted, function);
+        synchronized (scripts) {
+            org.mozilla.javascript.Script script = scripts.get(key);
+            if (script != null) {
+                hits++;
+                return script;
+            }
+            misses++;
+        }
+        org.mozilla.javascript.Script compiled;
+        if (function) {
+            if (!isFunction(cx, source, fileName)) {
+                return null;
+            }
+            // the line break keeps a trailing line comment from swallowing the parenthesis
+            compiled = cx.compileString("(" + source + "\n)", fileName, 0, null);
+        } else {
+            compiled = cx.compileString(source, fileName, 0, null);
+        }
+        synchronized (scripts) {
+            org.mozilla.javascript.Script script = scripts.putIfAbsent(key, compiled);
+            return script == null ? compiled : script;
+        }
+    }
+
+    /**
+     * Makes a function in a scope from its source, such as 'function add(a, b) {return a+b;}',
+     * compiling the source only if it isn't cached.
+     *
+     * @param cx The current context.
+     * @param scope The scope the function is made in.
+     * @param source The source of the function.
+     * @param fileName The file name that errors of the function are reported with.
+     * @return The new function.
+     */
+    @NotNull
+    public static Function compileFunction(@NotNull Context cx, @NotNull Scriptable scope, @NotNull String source, @NotNull String fileName) {
+        org.mozilla.javascript.Script expression = compile(cx, source, fileName, true);
+        if (expression != null && expression.exec(cx, scope) instanceof Function function) {
+            return function;
+        }
+        // not a single function, so let Rhino report why
+        return cx.compileFunction(scope, source, fileName, 0, null);
+    }
+
+    /**
+     * Checks that a source is a single function declaration and nothing else,
+     * without running it.
+     */
+    private static boolean isFunction(@NotNull Context cx, @NotNull String source, @NotNull String fileName) {
+        CompilerEnvirons environment = new CompilerEnvirons();
+        environment.initFromContext(cx);
+        AstRoot root;
+        try {
+            root = new Parser(environment).parse(source, fileName, 0);
+        } catch (EvaluatorException e) {
+            return false;
+        }
+        return root.getFirstChild() instanceof FunctionNode && root.getFirstChild() == root.getLastChild();
+    }
+
+    @NotNull
+    private static String digest(@NotNull String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static int getMaxSize() {
+        synchronized (scripts) {
+            return maxSize;
+        }
+    }
+
+    /**
+     * Sets how many scripts are cached at most, scripts over the new
+     * size are evicted the next time a script is added.
+     *
+     * @param maxSize The most scripts to cache.
+     */
+    public static void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The size of the cache cannot be negative.");
+        }
+        synchronized (scripts) {
+            ScriptCache.maxSize = maxSize;
+        }
+    }
+
+    @NotNull
+    public static Stats getStats() {
+        synchronized (scripts) {
+            return new Stats(hits, misses, evictions, scripts.size());
+        }
+    }
+
+    public static void resetStats() {
+        synchronized (scripts) {
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
+
+    /**
+     * Forgets every compiled script, scripts that are in use stay in use.
+     */
+    public static void clear() {
+        synchronized (scripts) {
+            scripts.clear();
+        }
+    }
+
+    /**
+     * A snapshot of the statistics of the cache.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        private Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Gets how many times a script had to be compiled.
+         *
+         * @return The misses.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * Gets the amount of scripts that are cached right now.
+         *
+         * @return The size.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 1 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + "}";
+        }
+    }
+}
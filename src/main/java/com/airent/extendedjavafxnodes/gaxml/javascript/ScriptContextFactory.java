@@ -0,0 +1,335 @@
+package com.airent.extendedjavafxnodes.gaxml.javascript;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The {@link ContextFactory} of the GA-XML scripting layer, every script,
+ * function and event of GA-XML runs in a context of the {@link #getShared() shared} factory.
+ * <BR><BR>
+ * Contexts are made with the optimization level and language version of the factory.
+ * Scripts are interpreted by default, which compiles them the fastest, and
+ * {@link Script.Func functions} that are called more than the
+ * {@link #getPromotionThreshold() promotion threshold} are compiled again
+ * to Java bytecode, which runs them the fastest.
+ * <BR><BR>
+ * Every thread keeps the context it was given, so that entering a context
+ * again on the same thread doesn't make a new one. Listeners are told that a context
+ * was created once, when its thread first enters it, and that it was released every
+ * time the thread leaves it. Entering while a context is already entered on the
+ * thread uses that context, even if it is from another factory, but scripts with
+ * limits cannot run in a context of another factory.
+ * <BR><BR>
+ * Contexts observe the instructions they run while a {@link Script} with limits
+ * or with {@link #setAccounting(boolean) accounting} runs in them, every
+ * {@link #OBSERVER_THRESHOLD} instructions the limits of the script are checked.
+ * Scripts that are compiled to bytecode only count their instructions
+ * if they were compiled for a script with limits or while accounting was on,
+ * because counting makes bytecode much slower.
+ */
+public final class ScriptContextFactory extends ContextFactory {
+    /**
+     * The optimization level that interprets scripts instead of compiling them to bytecode.
+     */
+    public static final int INTERPRETED = -1;
+    /**
+     * The optimization level that functions are compiled with when they are promoted.
+     */
+    public static final int PROMOTED_OPTIMIZATION_LEVEL = 9;
+    public static final int DEFAULT_PROMOTION_THRESHOLD = 64;
+    /**
+     * How many instructions a script runs between checks of its limits.
+     */
+    public static final int OBSERVER_THRESHOLD = 1000;
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private static final ScriptContextFactory shared = new ScriptContextFactory();
+
+    private final ThreadLocal<Context> contexts = new ThreadLocal<>();
+    private volatile int optimizationLevel = INTERPRETED;
+    private volatile int languageVersion = Context.VERSION_DEFAULT;
+    private volatile int promotionThreshold = DEFAULT_PROMOTION_THRESHOLD;
+    private volatile long instructionLimit = 0;
+    private volatile long timeLimit = 0;
+    private volatile boolean accounting = false;
+
+    private ScriptContextFactory() {}
+
+    @NotNull
+    public static ScriptContextFactory getShared() {
+        return shared;
+    }
+
+    /**
+     * Enters the context of the current thread, it must be closed once the caller is done with it.
+     *
+     * @return The entered context.
+     */
+    @NotNull
+    public Context enterThreadContext() {
+        if (Context.getCurrentContext() != null) {
+            return enterContext(null);
+        }
+        Context cx = contexts.get();
+        if (cx == null) {
+            cx = makeContext();
+            // entering a context that was already made doesn't tell the listeners about it
+            onContextCreated(cx);
+            contexts.set(cx);
+        } else {
+            apply(cx);
+        }
+        return enterContext(cx);
+    }
+
+    @Override
+    protected Context makeContext() {
+        Context cx = new GuardedContext(this);
+        apply(cx);
+        return cx;
+    }
+
+    @Override
+    protected void observeInstructionCount(Context cx, int instructionCount) {
+        if (cx instanceof GuardedContext guarded && guarded.guard != null) {
+            guarded.guard.observe(instructionCount);
+        }
+    }
+
+    /**
+     * Starts guarding a call of a script, until the returned guard is closed the instructions
+     * and the time of the call are checked against the limits, and of the calls it was made in.
+     *
+     * @param cx The entered context.
+     * @param name The name of the script or function.
+     * @param instructionLimit The most instructions the call may run, or 0 for no limit.
+     * @param timeLimit The most milliseconds the call may run, or 0 for no limit.
+     * @param usage The usage to add the cost of the call to, or null.
+     * @return The guard, or null if the call needs no guard.
+     * @throws IllegalStateException If the call has limits and the context is from another factory,
+     *                               which cannot observe instructions. The usage isn't counted in such
+     *                               contexts, calls without limits run unguarded.
+     */
+    @Nullable
+    Guard guard(@NotNull Context cx, @NotNull String name, long instructionLimit, long timeLimit, @Nullable ScriptUsage usage) {
+        if (instructionLimit <= 0 && timeLimit <= 0 && usage == null) {
+            return null;
+        }
+        if (!(cx instanceof GuardedContext guarded)) {
+            if (instructionLimit > 0 || timeLimit > 0) {
+                throw new IllegalStateException("The script '" + name + "' has limits, which cannot be applied in a context of another factory.");
+            }
+            return null;
+        }
+        return new Guard(guarded, name, instructionLimit, timeLimit, usage);
+    }
+
+    private void apply(@NotNull Context cx) {
+        if (cx.getOptimizationLevel() != optimizationLevel) {
+            cx.setOptimizationLevel(optimizationLevel);
+        }
+        if (cx.getLanguageVersion() != languageVersion) {
+            cx.setLanguageVersion(languageVersion);
+        }
+    }
+
+    public int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * Sets the optimization level of the contexts that are entered from now on.
+     *
+     * @param optimizationLevel {@link #INTERPRETED} or a level from 0 to 9.
+     * @throws IllegalArgumentException If the level isn't valid.
+     * @see Context#setOptimizationLevel(int)
+     */
+    public void setOptimizationLevel(int optimizationLevel) {
+        if (!Context.isValidOptimizationLevel(optimizationLevel)) {
+            throw new IllegalArgumentException("Invalid optimization level: " + optimizationLevel);
+        }
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    public int getLanguageVersion() {
+        return languageVersion;
+    }
+
+    /**
+     * Sets the language version of the contexts that are entered from now on.
+     *
+     * @param languageVersion A version such as {@link Context#VERSION_ES6}.
+     * @throws IllegalArgumentException If the version isn't valid.
+     * @see Context#setLanguageVersion(int)
+     */
+    public void setLanguageVersion(int languageVersion) {
+        if (!Context.isValidLanguageVersion(languageVersion)) {
+            throw new IllegalArgumentException("Invalid language version: " + languageVersion);
+        }
+        this.languageVersion = languageVersion;
+    }
+
+    public int getPromotionThreshold() {
+        return promotionThreshold;
+    }
+
+    /**
+     * Sets how many times an interpreted function is called before it's compiled to bytecode.
+     *
+     * @param promotionThreshold The amount of calls, or 0 to never promote functions.
+     */
+    public void setPromotionThreshold(int promotionThreshold) {
+        if (promotionThreshold < 0) {
+            throw new IllegalArgumentException("The promotion threshold cannot be negative.");
+        }
+        this.promotionThreshold = promotionThreshold;
+    }
+
+    public long getInstructionLimit() {
+        return instructionLimit;
+    }
+
+    /**
+     * Sets the instruction limit that scripts are made with from now on.
+     *
+     * @param instructionLimit The most instructions a call may run, or 0 for no limit.
+     * @see Script#setInstructionLimit(long)
+     */
+    public void setInstructionLimit(long instructionLimit) {
+        if (instructionLimit < 0) {
+            throw new IllegalArgumentException("The instruction limit cannot be negative.");
+        }
+        this.instructionLimit = instructionLimit;
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Sets the time limit that scripts are made with from now on.
+     *
+     * @param timeLimit The most milliseconds a call may run, or 0 for no limit.
+     * @see Script#setTimeLimit(long)
+     */
+    public void setTimeLimit(long timeLimit) {
+        if (timeLimit < 0) {
+            throw new IllegalArgumentException("The time limit cannot be negative.");
+        }
+        this.timeLimit = timeLimit;
+    }
+
+    public boolean isAccounting() {
+        return accounting;
+    }
+
+    /**
+     * Sets whether the calls, instructions and time of every script and function
+     * are counted, they are read with {@link Script#getUsage()}.
+     *
+     * @param accounting True to count the usage of scripts.
+     */
+    public void setAccounting(boolean accounting) {
+        this.accounting = accounting;
+    }
+
+    private static final class GuardedContext extends Context {
+        private Guard guard;
+
+        private GuardedContext(ContextFactory factory) {
+            super(factory);
+        }
+    }
+
+    /**
+     * The limits and the cost of one call of a script, guards of calls made
+     * within a call are checked together with the guard of that call.
+     */
+    static final class Guard implements AutoCloseable {
+        private final GuardedContext cx;
+        private final Guard parent;
+        private final String name;
+        private final long instructionLimit;
+        private final long timeLimit;
+        private final ScriptUsage usage;
+        private final long start;
+        private final long startCpu;
+        private final int previousThreshold;
+        private long instructions;
+        private boolean exceeded;
+
+        private Guard(@NotNull GuardedContext cx, @NotNull String name, long instructionLimit, long timeLimit, @Nullable ScriptUsage usage) {
+            this.cx = cx;
+            this.parent = cx.guard;
+            this.name = name;
+            this.instructionLimit = instructionLimit;
+            this.timeLimit = timeLimit;
+            this.usage = usage;
+            this.start = System.nanoTime();
+            this.startCpu = usage == null ? 0 : cpuTime();
+            this.previousThreshold = cx.getInstructionObserverThreshold();
+            if (previousThreshold != OBSERVER_THRESHOLD) {
+                cx.setInstructionObserverThreshold(OBSERVER_THRESHOLD);
+            }
+            cx.guard = this;
+        }
+
+        private void observe(int instructionCount) {
+            long now = System.nanoTime();
+            for (Guard guard = this; guard != null; guard = guard.parent) {
+                guard.instructions += instructionCount;
+            }
+            for (Guard guard = this; guard != null; guard = guard.parent) {
+                guard.check(now);
+            }
+        }
+
+        private void check(long now) {
+            if (instructionLimit > 0 && instructions > instructionLimit) {
+                throw exceed("ran more than " + instructionLimit + " instructions");
+            }
+            if (timeLimit > 0 && now - start > timeLimit * 1_000_000) {
+                throw exceed("ran longer than " + timeLimit + " ms");
+            }
+        }
+
+        @NotNull
+        private ScriptLimitException exceed(String reason) {
+            exceeded = true;
+            return new ScriptLimitException(name, "The script '" + name + "' " + reason + ".");
+        }
+
+        /**
+         * Throws if a limit was exceeded, for when the script caught the exception
+         * as it was passed through Java code and returned anyway.
+         *
+         * @throws ScriptLimitException If a limit was exceeded.
+         */
+        void checkExceeded() {
+            if (exceeded) {
+                throw new ScriptLimitException(name, "The script '" + name + "' ran past its limits.");
+            }
+        }
+
+        @Override
+        public void close() {
+            cx.guard = parent;
+            if (previousThreshold != OBSERVER_THRESHOLD) {
+                cx.setInstructionObserverThreshold(previousThreshold);
+            }
+            if (usage != null) {
+                usage.add(instructions, cpuTime() - startCpu, System.nanoTime() - start, exceeded);
+            }
+        }
+
+        private static long cpuTime() {
+            return threads.isCurrentThreadCpuTimeSupported() ? Math.max(threads.getCurrentThreadCpuTime(), 0) : 0;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.airent.extendedjavafxnodes.gaxml.javascript;
+
+/**
+ * Thrown when a script runs past the instruction limit or the time limit of its {@link Script}.
+ * <BR><BR>
+ * Scripts cannot catch it with a 'catch' block, 'finally' blocks still run.
+ *
+ * @see Script#setInstructionLimit(long)
+ * @see Script#setTimeLimit(long)
+ */
+public class ScriptLimitException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String scriptName;
+
+    public ScriptLimitException(String scriptName, String message) {
+        super(message);
+        this.scriptName = scriptName;
+    }
+
+    /**
+     * Gets the name of the script or function that ran past its limit.
+     *
+     * @return The name.
+     */
+    public String getScriptName() {
+        return scriptName;
+    }
+}
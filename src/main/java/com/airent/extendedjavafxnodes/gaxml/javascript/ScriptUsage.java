@@ -0,0 +1,99 @@
+package com.airent.extendedjavafxnodes.gaxml.javascript;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * What a script or function of a {@link Script} has cost so far, it is
+ * counted while {@link ScriptContextFactory#setAccounting(boolean) accounting} is on.
+ * <BR><BR>
+ * The cost of a function includes the functions it called through its script.
+ * Instructions are counted by Rhino in steps of {@link ScriptContextFactory#OBSERVER_THRESHOLD},
+ * so the instructions of short calls may be counted for the next call instead.
+ *
+ * @see Script#getUsage()
+ */
+public final class ScriptUsage {
+    private final String name;
+    private long calls;
+    private long instructions;
+    private long cpuTime;
+    private long wallTime;
+    private long limitsExceeded;
+
+    ScriptUsage(@NotNull String name) {
+        this.name = name;
+    }
+
+    synchronized void add(long instructions, long cpuTime, long wallTime, boolean exceeded) {
+        this.calls++;
+        this.instructions += instructions;
+        this.cpuTime += cpuTime;
+        this.wallTime += wallTime;
+        if (exceeded) {
+            this.limitsExceeded++;
+        }
+    }
+
+    @NotNull
+    synchronized ScriptUsage copy() {
+        ScriptUsage copy = new ScriptUsage(name);
+        copy.calls = calls;
+        copy.instructions = instructions;
+        copy.cpuTime = cpuTime;
+        copy.wallTime = wallTime;
+        copy.limitsExceeded = limitsExceeded;
+        return copy;
+    }
+
+    /**
+     * Gets the name of the function, or the file name for scripts that aren't functions.
+     *
+     * @return The name.
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    public synchronized long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * Gets the CPU time the calls took on their threads.
+     *
+     * @return The CPU time in nanoseconds.
+     */
+    public synchronized long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Gets the time from the start to the end of the calls.
+     *
+     * @return The wall time in nanoseconds.
+     */
+    public synchronized long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Gets how many calls were stopped by a limit.
+     *
+     * @return The amount of stopped calls.
+     */
+    public synchronized long getLimitsExceeded() {
+        return limitsExceeded;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScriptUsage{name=" + name + ", calls=" + calls + ", instructions=" + instructions
+                + ", cpuTime=" + cpuTime / 1_000_000.0 + "ms, wallTime=" + wallTime / 1_000_000.0
+                + "ms, limitsExceeded=" + limitsExceeded + "}";
+    }
+}
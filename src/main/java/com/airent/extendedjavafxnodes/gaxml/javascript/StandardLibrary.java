@@ -0,0 +1,84 @@
+package com.airent.extendedjavafxnodes.gaxml.javascript;
+
+import org.jetbrains.annotations.NotNull;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeConsole;
+import org.mozilla.javascript.ScriptStackElement;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The top level scope that holds the JavaScript standard library and the console,
+ * which is shared by every {@link BasedScope} instead of each scope setting up its own.
+ * <BR><BR>
+ * The library is sealed, its objects, such as 'Array.prototype', cannot be changed,
+ * so that a script cannot change the library of the scripts of other documents.
+ * There is one library for every language version, it is made the first time
+ * a scope is made with that version.
+ */
+final class StandardLibrary {
+    private static final ConcurrentHashMap<Integer, ScriptableObject> libraries = new ConcurrentHashMap<>();
+
+    private StandardLibrary() {}
+
+    /**
+     * Gets the library of the language version of a context.
+     *
+     * @param cx The current context.
+     * @return The sealed library.
+     */
+    @NotNull
+    static ScriptableObject get(@NotNull Context cx) {
+        return libraries.computeIfAbsent(cx.getLanguageVersion(), version -> create(cx));
+    }
+
+    @NotNull
+    private static ScriptableObject create(@NotNull Context cx) {
+        ScriptableObject library = cx.initStandardObjects(null, true);
+        NativeConsole.init(library, true, (NativeConsole.ConsolePrinter) (context, scriptable, level, objects, scriptStackElements) -> {
+            boolean isError = level.compareTo(NativeConsole.Level.ERROR)==0;
+            if (isError) {
+                System.err.println("ERROR: JavaScript native error was declared.");
+            }
+            if (level.compareTo(NativeConsole.Level.WARN)==0) {
+                System.err.println("WARNING: JavaScript native warn was declared.");
+            }
+            if (level.compareTo(NativeConsole.Level.TRACE)==0) {
+                System.err.println("TRACING: JavaScript native trace was declared.");
+            }
+            if (level.compareTo(NativeConsole.Level.DEBUG)==0) {
+                System.err.println("DEBUGGING: JavaScript native debug was declared.");
+            }
+            if (objects != null) {
+                for (Object o : objects) {
+                    if (isError) {
+                        System.err.println(o);
+                    } else {
+                        System.out.println(o);
+                    }
+                }
+            }
+            if (scriptStackElements != null) {
+                for (ScriptStackElement stackElement : scriptStackElements) {
+                    StringBuilder sb = new StringBuilder();
+                    stackElement.renderJavaStyle(sb);
+                    if (isError) {
+                        System.err.println(sb);
+                    } else {
+                        System.out.println(sb);
+                    }
+                }
+            }
+        });
+        // lazily loaded objects are made on their first use, which would write
+        // to the library from whichever thread uses them first
+        for (Object id : library.getAllIds()) {
+            if (id instanceof String name) {
+                ScriptableObject.getProperty(library, name);
+            }
+        }
+        library.sealObject();
+        return library;
+    }
+}
@@ -0,0 +1,443 @@
+package com.airent.extendedjavafxnodes.gaxml.story;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded cache of {@link Segment}s, keyed by the path of their GA-XML file,
+ * as given by {@link #key(Path)}.
+ * <BR><BR>
+ * Segments are kept in least recently used order, when the total weight of
+ * the segments goes over the maximum weight, the least recently used segments
+ * are evicted until it isn't. By default every segment weighs 1 and there is
+ * no maximum, so nothing is evicted.
+ * <BR><BR>
+ * How strongly the segments are held is set by the {@link Retention}.
+ * Segments that are softly or weakly held can also be collected by the
+ * garbage collector, which is counted as an eviction.
+ * <BR><BR>
+ * A segment that isn't in the registry is loaded once, even when many threads
+ * ask for it at the same time, see {@link #getOrClaim(String)}.
+ * <BR><BR>
+ * All methods of this class are synchronized.
+ */
+public class SegmentRegistry {
+    /**
+     * How the segments of a registry are held.
+     */
+    public enum Retention {
+        /**
+         * Segments are only removed by eviction or invalidation.
+         */
+        STRONG,
+        /**
+         * Segments can also be removed when memory runs low.
+         */
+        SOFT,
+        /**
+         * Segments can also be removed once nothing else uses them.
+         */
+        WEAK
+    }
+
+    private final String name;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReferenceQueue<Segment> collected = new ReferenceQueue<>();
+    // the keys that are being loaded, and the thread loading each of them
+    private final HashMap<String, Thread> loading = new HashMap<>();
+    private Retention retention = Retention.STRONG;
+    private long maximumWeight = Long.MAX_VALUE;
+    private ToLongFunction<Segment> weigher = segment -> 1;
+    private long totalWeight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public SegmentRegistry(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the key of a GA-XML file, which is its absolute and normalized path,
+     * so that every way of reaching the same file gives the same key.
+     *
+     * @param path The path of the file.
+     * @return The key of the file.
+     */
+    @NotNull
+    public static String key(@NotNull Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    public synchronized Retention getRetention() {
+        return retention;
+    }
+
+    /**
+     * Sets how the segments are held, segments that are already
+     * in this registry are held the new way from now on.
+     *
+     * @param retention The new retention.
+     */
+    public synchronized void setRetention(@NotNull Retention retention) {
+        if (this.retention == retention) return;
+        this.retention = retention;
+        for (Entry entry : List.copyOf(entries.values())) {
+            Segment segment = entry.get();
+            if (segment != null) {
+                entries.put(entry.key, new Entry(entry.key, segment, entry.weight));
+            }
+        }
+        expunge();
+    }
+
+    public synchronized long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Sets the maximum amount of segments that are kept.
+     *
+     * @param maximumSize The maximum amount of segments.
+     */
+    public synchronized void setMaximumSize(long maximumSize) {
+        setMaximumWeight(maximumSize, segment -> 1);
+    }
+
+    /**
+     * Sets the maximum total weight of the segments that are kept,
+     * and how each segment is weighed. A segment is weighed once,
+     * when it is put into this registry.
+     *
+     * @param maximumWeight The maximum total weight.
+     * @param weigher Gives the weight of a segment, weights must not be negative.
+     */
+    public synchronized void setMaximumWeight(long maximumWeight, @NotNull ToLongFunction<Segment> weigher) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("The maximum weight must not be negative.");
+        }
+        this.maximumWeight = maximumWeight;
+        if (this.weigher != weigher) {
+            this.weigher = weigher;
+            totalWeight = 0;
+            for (Entry entry : List.copyOf(entries.values())) {
+                Segment segment = entry.get();
+                if (segment != null) {
+                    Entry weighed = new Entry(entry.key, segment, weigh(segment));
+                    entries.put(entry.key, weighed);
+                    totalWeight += weighed.weight;
+                }
+            }
+        }
+        expunge();
+        evict();
+    }
+
+    /**
+     * Gets the segment of the provided path, which becomes the most recently used segment.
+     *
+     * @param key The path of the segment.
+     * @return The segment, or null if it isn't in this registry.
+     */
+    public synchronized Segment get(String key) {
+        expunge();
+        Entry entry = entries.get(key);
+        Segment segment = entry == null ? null : entry.get();
+        if (segment == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return segment;
+    }
+
+    /**
+     * Gets the segment of the provided path, or claims the path so that
+     * the current thread loads its segment.
+     * <BR><BR>
+     * When another thread claimed the path, this waits until that thread
+     * puts the segment or gives up, so the file is only loaded once.
+     * A claim ends when the segment is {@link #put(Segment) put},
+     * or when {@link #release(String)} is called, which must be done
+     * if the segment couldn't be loaded. The thread that claimed
+     * a path can claim it again, which returns null again.
+     *
+     * @param key The path of the segment.
+     * @return The segment, or null if the current thread must load it.
+     */
+    public synchronized Segment getOrClaim(String key) {
+        Thread current = Thread.currentThread();
+        while (true) {
+            expunge();
+            Entry entry = entries.get(key);
+            Segment segment = entry == null ? null : entry.get();
+            if (segment != null) {
+                hits++;
+                return segment;
+            }
+            Thread loader = loading.get(key);
+            if (loader == null || loader == current || !loader.isAlive()) {
+                loading.put(key, current);
+                misses++;
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                current.interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Ends the claim of the current thread on a path without putting its segment,
+     * so that another thread waiting for it loads it instead.
+     *
+     * @param key The path that was claimed.
+     */
+    public synchronized void release(String key) {
+        if (loading.remove(key, Thread.currentThread())) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Puts a segment into this registry under its name,
+     * replacing any segment with the same name.
+     * Least recently used segments are evicted if this goes over the maximum weight.
+     *
+     * @param segment The segment to put.
+     */
+    public synchronized void put(@NotNull Segment segment) {
+        expunge();
+        Entry entry = new Entry(segment.getName(), segment, weigh(segment));
+        Entry old = entries.put(entry.key, entry);
+        if (old != null) {
+            totalWeight -= old.weight;
+        }
+        totalWeight += entry.weight;
+        evict();
+        if (loading.remove(entry.key) != null) {
+            notifyAll();
+        }
+    }
+
+    public synchronized boolean contains(String key) {
+        expunge();
+        return entries.containsKey(key);
+    }
+
+    public synchronized int size() {
+        expunge();
+        return entries.size();
+    }
+
+    /**
+     * Removes the segment of the provided path, the next processor
+     * made for the path will load the file again.
+     * Processors that already exist are not changed.
+     *
+     * @param key The path of the segment.
+     * @return Whether there was a segment for the path.
+     */
+    public synchronized boolean invalidate(String key) {
+        expunge();
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalWeight -= entry.weight;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all segments.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalWeight = 0;
+        while (collected.poll() != null);
+    }
+
+    /**
+     * Gets the statistics of this registry, since it was made
+     * or since {@link #resetStats()} was last called.
+     *
+     * @return The current statistics.
+     */
+    public synchronized Stats getStats() {
+        expunge();
+        return new Stats(hits, misses, evictions, entries.size(), totalWeight);
+    }
+
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    private long weigh(Segment segment) {
+        long weight = weigher.applyAsLong(segment);
+        if (weight < 0) {
+            throw new IllegalArgumentException("The weight of a segment must not be negative.");
+        }
+        return weight;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalWeight > maximumWeight && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            totalWeight -= entry.weight;
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the entries of segments that were garbage collected.
+     */
+    private void expunge() {
+        Reference<? extends Segment> reference;
+        while ((reference = collected.poll()) != null) {
+            Entry entry = ((EntryReference) reference).getEntry();
+            // the entry may already have been replaced, removing by value doesn't change the order
+            if (entries.remove(entry.key, entry)) {
+                totalWeight -= entry.weight;
+                evictions++;
+            }
+        }
+    }
+
+    private interface EntryReference {
+        Entry getEntry();
+    }
+
+    private final class Entry {
+        private final String key;
+        private final long weight;
+        private final Segment strong;
+        private final Reference<Segment> reference;
+
+        private Entry(String key, Segment segment, long weight) {
+            this.key = key;
+            this.weight = weight;
+            switch (retention) {
+                case SOFT -> {
+                    this.strong = null;
+                    this.reference = new SoftEntry(segment, this);
+                }
+                case WEAK -> {
+                    this.strong = null;
+                    this.reference = new WeakEntry(segment, this);
+                }
+                default -> {
+                    this.strong = segment;
+                    this.reference = null;
+                }
+            }
+        }
+
+        private Segment get() {
+            return strong != null ? strong : reference.get();
+        }
+    }
+
+    private final class SoftEntry extends SoftReference<Segment> implements EntryReference {
+        private final Entry entry;
+
+        private SoftEntry(Segment segment, Entry entry) {
+            super(segment, collected);
+            this.entry = entry;
+        }
+
+        @Override
+        public Entry getEntry() {
+            return entry;
+        }
+    }
+
+    private final class WeakEntry extends WeakReference<Segment> implements EntryReference {
+        private final Entry entry;
+
+        private WeakEntry(Segment segment, Entry entry) {
+            super(segment, collected);
+            this.entry = entry;
+        }
+
+        @Override
+        public Entry getEntry() {
+            return entry;
+        }
+    }
+
+    /**
+     * A snapshot of the statistics of a {@link SegmentRegistry}.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final long weight;
+
+        private Stats(long hits, long misses, long evictions, int size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Gets the amount of segments that were evicted or garbage collected.
+         *
+         * @return The eviction count.
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 1 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", size=" + size + ", weight=" + weight + "}";
+        }
+    }
+}
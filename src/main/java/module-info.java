@@ -9,6 +9,7 @@ module com.airent.extendedjavafxnodes {
     requires org.mozilla.rhino;
 
     requires java.desktop;
+    requires java.management;
 
 
     //opens com.airent.extendedjavafxnodes to javafx.fxml;
@@ -23,6 +24,7 @@ module com.airent.extendedjavafxnodes {
     exports com.airent.extendedjavafxnodes.gaxml.themes;
     exports com.airent.extendedjavafxnodes.gaxml.javascript;
     exports com.airent.extendedjavafxnodes.gaxml.story;
+    exports com.airent.extendedjavafxnodes.gaxml.compiled;
     exports com.airent.extendedjavafxnodes.control.tutorial;
     opens com.airent.extendedjavafxnodes.control.tutorial to javafx.fxml;
     exports com.airent.extendedjavafxnodes.shape;
@@ -3,7 +3,12 @@ module test {
     requires javafx.fxml;
     requires org.jetbrains.annotations;
     requires com.airent.extendedjavafxnodes;
+    requires java.xml;
+    requires org.junit.jupiter.api;
+    requires org.mozilla.rhino;
 
     opens test to javafx.fxml;
     exports test;
-}
\ No newline at end of file
+
+    opens test.gaxml to org.junit.platform.commons;
+}
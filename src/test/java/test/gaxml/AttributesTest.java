@@ -0,0 +1,117 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.Attributes;
+import com.airent.extendedjavafxnodes.gaxml.FormatSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AttributesTest {
+    @Test
+    void childSeesTheAttributesOfItsParent() {
+        Attributes parent = new Attributes(Map.of("color", "#FF0000", "size", "12"));
+        Attributes child = new Attributes(parent, Map.of("size", "20"));
+        assertEquals("#FF0000", child.get("color"));
+        assertEquals("20", child.get("size"));
+        assertEquals("12", parent.get("size"));
+        assertEquals(2, child.size());
+    }
+
+    @Test
+    void changesToACopyDontChangeTheOriginal() {
+        Attributes original = new Attributes(Map.of("color", "#FF0000"));
+        Attributes copy = new Attributes(original);
+        copy.put("color", "#00FF00");
+        copy.put("size", "20");
+        assertEquals("#FF0000", original.get("color"));
+        assertFalse(original.containsKey("size"));
+        original.put("font", "Arial");
+        assertFalse(copy.containsKey("font"));
+    }
+
+    @Test
+    void nullValuesAreKeptLikeInAMap() {
+        Attributes parent = new Attributes(Map.of("color", "#FF0000"));
+        Attributes child = new Attributes(parent);
+        assertNull(child.put("size", null));
+        assertTrue(child.containsKey("size"));
+        assertEquals(2, child.size());
+        child.put("color", null);
+        assertTrue(child.containsKey("color"));
+        assertNull(child.get("color"));
+        assertEquals(2, child.size());
+        assertTrue(child.getAttributes().containsKey("color"));
+    }
+
+    @Test
+    void removeHidesTheInheritedValue() {
+        Attributes parent = new Attributes(Map.of("color", "#FF0000", "size", "12"));
+        Attributes child = new Attributes(parent);
+        assertEquals("#FF0000", child.remove("color"));
+        assertFalse(child.containsKey("color"));
+        assertEquals(1, child.size());
+        assertEquals(Map.of("size", "12"), child.getAttributes());
+        assertTrue(parent.containsKey("color"));
+    }
+
+    @Test
+    void deepInheritanceKeepsEveryLevel() {
+        Attributes attributes = new Attributes(Map.of("level0", "0"));
+        for (int i = 1; i < 50; i++) {
+            attributes = new Attributes(attributes, Map.of("level" + i, String.valueOf(i)));
+            attributes.remove("level" + (i - 1));
+            attributes.put("kept" + i, String.valueOf(i));
+        }
+        assertEquals(50, attributes.size());
+        assertEquals("49", attributes.get("level49"));
+        assertFalse(attributes.containsKey("level48"));
+        assertEquals("1", attributes.get("kept1"));
+        assertEquals(attributes.getAttributes().size(), attributes.size());
+    }
+
+    @Test
+    void onlyPassableAttributesAreInherited() {
+        HashMap<String, String> map = new HashMap<>(Map.of("id", "title", "color", "#FF0000"));
+        map.put("onclick", null);
+        Attributes attributes = new Attributes(new Attributes(map), true);
+        assertFalse(attributes.containsKey("id"));
+        assertFalse(attributes.containsKey("onclick"));
+        assertEquals(Map.of("color", "#FF0000"), attributes.getAttributes());
+    }
+
+    @Test
+    void theMapOfTheAttributesIsKeptUntilTheyChange() {
+        Attributes parent = new Attributes(Map.of("color", "#FF0000"));
+        Attributes child = new Attributes(parent, Map.of("size", "20"));
+        Map<String, String> map = child.getAttributes();
+        assertSame(map, child.getAttributes());
+        assertThrows(UnsupportedOperationException.class, () -> map.put("font", "Arial"));
+        child.put("font", "Arial");
+        assertNotSame(map, child.getAttributes());
+        assertEquals(Map.of("color", "#FF0000", "size", "20", "font", "Arial"), child.getAttributes());
+        assertEquals(Map.of("color", "#FF0000", "size", "20"), map);
+    }
+
+    @Test
+    void siblingsWithTheSameFormatShareTheirSpec() {
+        Attributes parent = new Attributes(Map.of("size", "12"));
+        Attributes first = new Attributes(parent, Map.of("color", "#FF0000"));
+        Attributes second = new Attributes(parent, new HashMap<>(Map.of("color", "#FF0000")));
+        FormatSpec spec = FormatSpec.of(first, null);
+        assertSame(spec, FormatSpec.of(second, null));
+        assertSame(spec, FormatSpec.of(new Attributes(second), null));
+        second.put("size", "20");
+        assertNotSame(spec, FormatSpec.of(second, null));
+        assertEquals(20, FormatSpec.of(second, null).getSize());
+        assertEquals(12, FormatSpec.of(first, null).getSize());
+    }
+}
@@ -0,0 +1,59 @@
+package test.gaxml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Times the runs of a benchmark, the result is the median of the runs after warming up.
+ */
+final class Bench {
+    private Bench() {}
+
+    /**
+     * Runs a task and prints its median time.
+     *
+     * @param label What is measured.
+     * @param warmup The runs that aren't measured.
+     * @param runs The runs that are measured.
+     * @param task The task.
+     * @return The median time in milliseconds.
+     */
+    static double time(@NotNull String label, int warmup, int runs, @NotNull Runnable task) {
+        for (int i=0; i < warmup; i++) {
+            task.run();
+        }
+        double[] times = new double[runs];
+        for (int i=0; i < runs; i++) {
+            long start = System.nanoTime();
+            task.run();
+            times[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(times);
+        double median = times[runs / 2];
+        System.out.printf("%-40s %10.3f ms (median of %d)%n", label, median, runs);
+        return median;
+    }
+
+    /**
+     * Gets the heap in use after collecting garbage.
+     *
+     * @return The used heap in bytes.
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i=0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static void print(@NotNull String label, @NotNull String value) {
+        System.out.printf("%-40s %10s%n", label, value);
+    }
+}
@@ -0,0 +1,115 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledBundle;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import com.airent.extendedjavafxnodes.gaxml.javascript.Script;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes pages into a bundle and reads them back.
+ */
+class CompiledBundleTest {
+    @TempDir
+    Path dir;
+
+    private Path bundle(Path... sources) throws IOException {
+        Path bundle = dir.resolve("pages.gaxb");
+        CompiledBundle.write(bundle, dir, List.of(sources));
+        return bundle;
+    }
+
+    @Test
+    void pagesAreReadBackAsTheyWereCompiled() throws Exception {
+        Path story = Documents.story(dir, "story.xml", 20);
+        Path scripted = Documents.scripted(dir, "chapters/scripted.xml");
+        CompiledBundle bundle = CompiledBundle.open(bundle(story, scripted), dir);
+        assertEquals(Set.of("story.xml", "chapters/scripted.xml"), bundle.getPaths());
+        for (Path source : List.of(story, scripted)) {
+            CompiledPage page = bundle.get(source);
+            assertNotNull(page);
+            CompiledPage parsed = CompiledPage.read(source);
+            assertEquals(parsed.getNodes(), page.getNodes());
+            assertEquals(parsed.getScriptSources(), page.getScriptSources());
+            assertEquals(source.toAbsolutePath().normalize(), page.getPath());
+            assertSame(page, bundle.get(source));
+        }
+    }
+
+    @Test
+    void changedFilesAreNotGiven() throws Exception {
+        Path story = Documents.story(dir, "story.xml", 5);
+        CompiledBundle bundle = CompiledBundle.open(bundle(story), dir);
+        assertNotNull(bundle.get(story));
+        FileTime modified = Files.getLastModifiedTime(story);
+        Documents.story(dir, "story.xml", 6);
+        Files.setLastModifiedTime(story, FileTime.fromMillis(modified.toMillis() + 10_000));
+        assertNull(bundle.get(story));
+        // the same content again has the checksum of the bundle, whatever its time is
+        Documents.story(dir, "story.xml", 5);
+        assertNotNull(bundle.get(story));
+    }
+
+    @Test
+    void filesOutsideTheRootAreRefused() throws Exception {
+        Path inside = Documents.story(dir, "root/story.xml", 2);
+        Path outside = Documents.story(dir, "other/story.xml", 2);
+        Path root = dir.resolve("root");
+        Path file = dir.resolve("pages.gaxb");
+        assertThrows(IOException.class, () -> CompiledBundle.write(file, root, List.of(inside, outside)));
+        CompiledBundle.write(file, root, List.of(inside));
+        CompiledBundle bundle = CompiledBundle.open(file, root);
+        assertNotNull(bundle.get(inside));
+        assertNull(bundle.get(outside));
+        assertNull(bundle.get(root.resolve("../other/story.xml")));
+    }
+
+    @Test
+    void otherFilesAndVersionsCannotBeOpened() throws Exception {
+        Path bundle = bundle(Documents.story(dir, "story.xml", 2));
+        byte[] bytes = Files.readAllBytes(bundle);
+
+        Path notABundle = Files.write(dir.resolve("magic.gaxb"), bytes.clone());
+        Files.write(notABundle, new byte[]{'n', 'o', 'p', 'e'}, StandardOpenOption.WRITE);
+        IOException magic = assertThrows(IOException.class, () -> CompiledBundle.open(notABundle, dir));
+        assertTrue(magic.getMessage().startsWith("Not a GA-XML bundle"), magic.getMessage());
+
+        byte[] versioned = bytes.clone();
+        ByteBuffer.wrap(versioned).putInt(4, CompiledBundle.FORMAT_VERSION + 1);
+        Path otherVersion = Files.write(dir.resolve("version.gaxb"), versioned);
+        IOException version = assertThrows(IOException.class, () -> CompiledBundle.open(otherVersion, dir));
+        assertTrue(version.getMessage().startsWith("Unsupported GA-XML bundle version"), version.getMessage());
+
+        Path truncated = Files.write(dir.resolve("truncated.gaxb"), Arrays.copyOf(bytes, 12));
+        assertThrows(IOException.class, () -> CompiledBundle.open(truncated, dir));
+    }
+
+    @Test
+    void precompiledScriptsAreRun() throws Exception {
+        String source = "'bundled ' + 6 * 7";
+        Path page = Documents.write(dir, "script.xml", "<page><script>" + source + "</script><p>text</p></page>\n");
+        CompiledBundle bundle = CompiledBundle.open(bundle(page), dir);
+        assertEquals(List.of(source), bundle.get(page).getScriptSources());
+        Script script = new Script("script");
+        org.mozilla.javascript.Script compiled = script.compile(source);
+        assertTrue(compiled.getClass().getName().startsWith("gaxml.bundle.Script"), compiled.getClass().getName());
+        assertEquals("bundled 42", String.valueOf(script.exec(compiled)));
+    }
+}
@@ -0,0 +1,37 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Compares rendering a page from its cached compiled model
+ * with compiling the page again before every render.
+ */
+@Tag("benchmark")
+class CompiledPageBenchmark {
+    @TempDir
+    Path dir;
+
+    @Test
+    void renderFromCompiledPage() throws Exception {
+        Path path = Documents.story(dir, "story.xml", 2000);
+        XML xml = new XML(path, false);
+        XMLProcessor processor = new XMLProcessor(xml);
+        assertFalse(processor.load().isEmpty());
+
+        Bench.time("compile 2000 paragraphs", 10, 20, () -> CompiledPage.compile(xml));
+        Bench.time("render from compiled page", 10, 20, processor::load);
+        Bench.time("compile and render", 10, 20, () -> {
+            processor.recompile();
+            processor.load();
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPageReader;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares compiling a page through a DOM with reading it through the StAX reader,
+ * by time and by the heap that is kept per read page.
+ */
+@Tag("benchmark")
+class CompiledPageReaderBenchmark {
+    private static final int KEPT = 30;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void domAgainstStax() throws Exception {
+        Path path = Documents.story(dir, "story.xml", 2000);
+        assertEquals(CompiledPage.compile(new XML(path, false)).getNodes(), CompiledPageReader.read(path).getNodes());
+
+        Bench.time("DOM and compile", 5, 20, () -> dom(path));
+        Bench.time("StAX reader", 5, 20, () -> stax(path));
+
+        Bench.print("DOM and compile retained per page", retained(() -> dom(path)) / 1024 + " KB");
+        Bench.print("StAX reader retained per page", retained(() -> stax(path)) / 1024 + " KB");
+    }
+
+    private static Object dom(Path path) {
+        try {
+            XML xml = new XML(path, false);
+            // the processor keeps the DOM next to the compiled page
+            return List.of(xml, CompiledPage.compile(xml));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object stax(Path path) {
+        try {
+            return CompiledPageReader.read(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long retained(Supplier<Object> read) {
+        List<Object> kept = new ArrayList<>(KEPT);
+        long before = Bench.usedHeap();
+        for (int i=0; i < KEPT; i++) {
+            kept.add(read.get());
+        }
+        long after = Bench.usedHeap();
+        assertEquals(KEPT, kept.size());
+        return (after - before) / KEPT;
+    }
+}
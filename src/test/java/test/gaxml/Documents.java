@@ -0,0 +1,80 @@
+package test.gaxml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the GA-XML documents that the tests and benchmarks load.
+ */
+final class Documents {
+    static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n";
+
+    private Documents() {}
+
+    /**
+     * Writes a document.
+     *
+     * @param dir The directory to write to.
+     * @param name The file name.
+     * @param body The XML after the declaration.
+     * @return The path of the file.
+     */
+    @NotNull
+    static Path write(@NotNull Path dir, @NotNull String name, @NotNull String body) throws IOException {
+        Path path = dir.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, HEADER + body);
+        return path;
+    }
+
+    /**
+     * Writes a long story page, each paragraph has a variable, a span with its own format and a small span.
+     *
+     * @param dir The directory to write to.
+     * @param name The file name.
+     * @param paragraphs The amount of paragraphs.
+     * @return The path of the file.
+     */
+    @NotNull
+    static Path story(@NotNull Path dir, @NotNull String name, int paragraphs) throws IOException {
+        return write(dir, name, page(paragraphs));
+    }
+
+    @NotNull
+    static String page(int paragraphs) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<page size=\"13\">\n");
+        xml.append("<variable name=\"hero\">Alice</variable>\n");
+        for (int i=0; i < paragraphs; i++) {
+            xml.append("<p color=\"#112233\" border=\"1 solid 3 #000000 2\">Paragraph ").append(i)
+                    .append(" says   hello to <var name=\"hero\"/> <span underline=\"full\">under ").append(i)
+                    .append("</span>, and <span size=\"10\">small</span> text.</p>\n");
+        }
+        xml.append("</page>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Writes a page with scripts, functions, variables and onclick events.
+     *
+     * @param dir The directory to write to.
+     * @param name The file name.
+     * @return The path of the file.
+     */
+    @NotNull
+    static Path scripted(@NotNull Path dir, @NotNull String name) throws IOException {
+        return write(dir, name, """
+                <page size="14" name="Narrator">
+                    <variable name="hero">Alice</variable>
+                    <variable name="gold" mathParse="true">20*2+1</variable>
+                    <script name="s1">(function() { this.counter = 3; })();</script>
+                    <function name="f1"><name>mul</name><properties><p>a</p><p>b</p></properties><source>return a*b;</source></function>
+                    <p>Hello <var name="hero"/>, you have <var name="gold"/> gold.</p>
+                    <p onclick="f1(2,3)">Click <math>15+5</math></p>
+                </page>
+                """);
+    }
+}
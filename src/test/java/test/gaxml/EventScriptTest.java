@@ -0,0 +1,69 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Reads and runs events through 'script.' references, the way var tags and onclick attributes do.
+ */
+class EventScriptTest {
+    @TempDir
+    Path dir;
+    private XMLProcessor processor;
+
+    @BeforeEach
+    void load() throws Exception {
+        Path page = Documents.write(dir, "events.xml", """
+                <page>
+                    <variable name="gold" mathParse="true">20*2+1</variable>
+                    <function name="mul"><name>mul</name><properties><p>a</p><p>b</p></properties><source>return a*b;</source></function>
+                    <function name="seven"><name>seven</name><source>return 7;</source></function>
+                    <p>text</p>
+                </page>
+                """);
+        processor = new XMLProcessor(page.toString());
+        processor.load(null);
+    }
+
+    private String run(String reference) {
+        return processor.variableParser(false, new String[]{reference})[0];
+    }
+
+    private static void assertNumber(int expected, String actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(new BigDecimal(actual)), actual);
+    }
+
+    @Test
+    void callsWithConstantArguments() {
+        assertNumber(6, run("script.mul(2,3)"));
+    }
+
+    @Test
+    void callsWithoutArguments() {
+        assertNumber(7, run("script.seven"));
+        assertNumber(7, run("script.seven()"));
+    }
+
+    @Test
+    void argumentsWithReferencesAreParsed() {
+        assertNumber(82, run("script.mul(inFile.gold,2)"));
+    }
+
+    @Test
+    void callsOfTheSameNameUseTheLastArguments() {
+        assertNumber(12, run("script.mul(1,2);mul(3,4)"));
+    }
+
+    @Test
+    void aReferenceMayOnlyCallOneScript() {
+        assertThrows(RuntimeException.class, () -> run("script.seven();mul(1,2)"));
+    }
+}
@@ -0,0 +1,59 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.IncludeResolver;
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncludeResolverTest {
+    @TempDir
+    Path dir;
+    private final IncludeResolver includes = XMLProcessor.getIncludes();
+
+    @BeforeEach
+    void clear() {
+        includes.clear();
+        includes.resetStats();
+    }
+
+    private XMLProcessor including(String name, Path... templates) throws Exception {
+        StringBuilder body = new StringBuilder("<page>");
+        for (Path template : templates) {
+            body.append("<page type=\"inline\" path=\"").append(template.toAbsolutePath()).append("\"/>");
+        }
+        return new XMLProcessor(Documents.write(dir, name, body.append("</page>\n").toString()).toString());
+    }
+
+    @Test
+    void includesAreCountedForEachFile() throws Exception {
+        Path header = Documents.write(dir, "header.xml", "<page><p>header</p></page>\n");
+        Path footer = Documents.write(dir, "footer.xml", "<page><p>footer</p></page>\n");
+        including("a.xml", header, header, footer).load();
+        IncludeResolver.Stats stats = includes.getStats();
+        assertEquals(3, stats.getIncludes());
+        assertEquals(2, stats.getTemplates());
+        assertEquals(1.5, stats.getAverageFanOut());
+    }
+
+    @Test
+    void resetForgetsFilesThatWereIncludedBefore() throws Exception {
+        Path header = Documents.write(dir, "header.xml", "<page><p>header</p></page>\n");
+        Path footer = Documents.write(dir, "footer.xml", "<page><p>footer</p></page>\n");
+        including("a.xml", header, footer).load();
+        includes.resetStats();
+        assertEquals(0, includes.getStats().getTemplates());
+        assertTrue(includes.getFanOut().isEmpty());
+
+        including("b.xml", header, header).load();
+        IncludeResolver.Stats stats = includes.getStats();
+        assertEquals(1, stats.getTemplates());
+        assertEquals(2.0, stats.getAverageFanOut());
+        assertEquals(1, includes.getFanOut().size());
+    }
+}
@@ -0,0 +1,67 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.ResourceIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResourceIndexTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void clear() {
+        ResourceIndex.clearAll();
+    }
+
+    @Test
+    void onlyListsAsDeepAsAsked() throws Exception {
+        Path deep = Files.createDirectories(dir.resolve("a/b/c"));
+        Files.createFile(deep.resolve("deep.xml"));
+        Files.createFile(dir.resolve("a/near.xml"));
+        ResourceIndex index = ResourceIndex.of(dir);
+        assertEquals(-1, index.getDepth());
+        assertEquals(dir.resolve("a/near.xml").toAbsolutePath(), index.find("near.xml", 1));
+        assertEquals(1, index.getDepth());
+        assertNull(index.find("deep.xml", 1));
+        assertEquals(deep.resolve("deep.xml").toAbsolutePath(), index.find("deep.xml", 3));
+        assertEquals(3, index.getDepth());
+    }
+
+    @Test
+    void findsTheClosestFile() throws Exception {
+        Files.createDirectories(dir.resolve("b/c"));
+        Files.createDirectories(dir.resolve("a"));
+        Files.createFile(dir.resolve("b/c/page.xml"));
+        Files.createFile(dir.resolve("b/page.xml"));
+        Files.createFile(dir.resolve("a/page.xml"));
+        assertEquals(dir.resolve("a/page.xml").toAbsolutePath(), ResourceIndex.of(dir).find("page.xml", 2));
+    }
+
+    @Test
+    void seesFilesMadeAfterItWasListed() throws Exception {
+        Path sub = Files.createDirectories(dir.resolve("a"));
+        ResourceIndex index = ResourceIndex.of(dir);
+        assertNull(index.find("late.xml", 1));
+        Files.createFile(sub.resolve("late.xml"));
+        assertEquals(sub.resolve("late.xml").toAbsolutePath(), index.find("late.xml", 1));
+    }
+
+    @Test
+    void nestedDirectoriesHaveTheirOwnIndex() throws Exception {
+        Path sub = Files.createDirectories(dir.resolve("a"));
+        Files.createFile(dir.resolve("page.xml"));
+        ResourceIndex outer = ResourceIndex.of(dir);
+        ResourceIndex inner = ResourceIndex.of(sub);
+        assertNotSame(outer, inner);
+        assertEquals(sub.toAbsolutePath().normalize(), inner.getRoot());
+        assertNull(inner.find("page.xml", 3));
+    }
+}
@@ -0,0 +1,62 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.javascript.Script;
+import com.airent.extendedjavafxnodes.gaxml.javascript.ScriptContextFactory;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures the time to make the script scope of a segment and the heap that the scope keeps,
+ * against setting up a whole standard library for every segment, which is what each scope did
+ * before the library was shared.
+ */
+@Tag("benchmark")
+class ScopeBenchmark {
+    private static final int SEGMENTS = 400;
+
+    /**
+     * Makes an object for every segment and keeps all of them, then prints the heap kept per segment.
+     */
+    private static void retained(@NotNull String label, @NotNull IntFunction<Object> make) {
+        List<Object> kept = new ArrayList<>(SEGMENTS);
+        long before = Bench.usedHeap();
+        for (int i=0; i < SEGMENTS; i++) {
+            kept.add(make.apply(i));
+        }
+        long after = Bench.usedHeap();
+        Bench.print(label, String.format("%.1f KiB", (after - before) / 1024.0 / kept.size()));
+        assertEquals(SEGMENTS, kept.size());
+    }
+
+    @Test
+    void sharedLibraryAgainstOwnLibrary() {
+        // the shared library is made once, before anything is measured
+        new Script("warmup");
+
+        double shared = Bench.time(SEGMENTS + " scopes, shared library", 5, 15, () -> {
+            for (int i=0; i < SEGMENTS; i++) {
+                new Script("segment" + i);
+            }
+        });
+        retained("retained per scope, shared library", i -> new Script("segment" + i));
+
+        try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+            double own = Bench.time(SEGMENTS + " scopes, own library", 5, 15, () -> {
+                for (int i=0; i < SEGMENTS; i++) {
+                    cx.initStandardObjects();
+                }
+            });
+            retained("retained per scope, own library", i -> cx.initStandardObjects());
+            Bench.print("per scope, shared library", String.format("%.1f us", shared * 1000 / SEGMENTS));
+            Bench.print("per scope, own library", String.format("%.1f us", own * 1000 / SEGMENTS));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.javascript.ScriptCache;
+import com.airent.extendedjavafxnodes.gaxml.javascript.ScriptContextFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScriptCacheTest {
+    @BeforeEach
+    void clear() {
+        ScriptCache.clear();
+        ScriptCache.resetStats();
+    }
+
+    @AfterEach
+    void restore() {
+        ScriptCache.setMaxSize(ScriptCache.DEFAULT_MAX_SIZE);
+        ScriptCache.clear();
+    }
+
+    @Test
+    void sameSourceIsCompiledOnce() {
+        try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+            Script first = ScriptCache.compile(cx, "1 + 2", "a.js");
+            Script second = ScriptCache.compile(cx, "1" + " + 2", "a.js");
+            assertSame(first, second);
+            assertEquals(1, ScriptCache.getStats().getHits());
+            assertEquals(1, ScriptCache.getStats().getMisses());
+            assertEquals(3, ((Number) first.exec(cx, cx.initStandardObjects())).intValue());
+        }
+    }
+
+    @Test
+    void fileNameAndCountingAreKeptApart() {
+        try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+            Script plain = ScriptCache.compile(cx, "1 + 2", "a.js");
+            assertNotSame(plain, ScriptCache.compile(cx, "1 + 2", "b.js"));
+            boolean counting = cx.generateObserverCount;
+            cx.setGenerateObserverCount(!counting);
+            try {
+                Script other = ScriptCache.compile(cx, "1 + 2", "a.js");
+                // the interpreter runs the same script either way
+                if (cx.getOptimizationLevel() >= 0) {
+                    assertNotSame(plain, other);
+                } else {
+                    assertSame(plain, other);
+                }
+            } finally {
+                cx.setGenerateObserverCount(counting);
+            }
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedScriptsAreEvicted() {
+        ScriptCache.setMaxSize(2);
+        try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+            Script first = ScriptCache.compile(cx, "1", "a.js");
+            ScriptCache.compile(cx, "2", "a.js");
+            ScriptCache.compile(cx, "1", "a.js");
+            ScriptCache.compile(cx, "3", "a.js");
+            assertEquals(2, ScriptCache.getStats().getSize());
+            assertEquals(1, ScriptCache.getStats().getEvictions());
+            assertSame(first, ScriptCache.compile(cx, "1", "a.js"));
+        }
+    }
+
+    @Test
+    void functionsAreMadeInEachScope() {
+        try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+            Scriptable firstScope = cx.initStandardObjects();
+            Scriptable secondScope = cx.initStandardObjects();
+            String source = "function add(a, b) { return a + b; } // a comment";
+            Function first = ScriptCache.compileFunction(cx, firstScope, source, "f.js");
+            Function second = ScriptCache.compileFunction(cx, secondScope, source, "f.js");
+            assertNotSame(first, second);
+            assertSame(secondScope, second.getParentScope());
+            assertEquals(1, ScriptCache.getStats().getMisses());
+            assertEquals(5, ((Number) second.call(cx, secondScope, secondScope, new Object[]{2, 3})).intValue());
+        }
+    }
+
+    @Test
+    void sourcesThatAreMoreThanAFunctionAreNotRun() {
+        try (Context cx = ScriptContextFactory.getShared().enterThreadContext()) {
+            Scriptable scope = cx.initStandardObjects();
+            // wrapped in parentheses, this would run the assignment and give the second function
+            String source = "function first() {}) ; this.ran = true; (function second() {}";
+            assertThrows(EvaluatorException.class, () -> ScriptCache.compileFunction(cx, scope, source, "f.js"));
+            assertFalse(ScriptableObject.hasProperty(scope, "ran"));
+            assertEquals(0, ScriptCache.getStats().getSize());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.javascript.Script;
+import com.airent.extendedjavafxnodes.gaxml.javascript.ScriptContextFactory;
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScriptContextFactoryTest {
+    @Test
+    void listenersAreToldAboutNewContexts() throws Exception {
+        ScriptContextFactory factory = ScriptContextFactory.getShared();
+        List<Context> created = new CopyOnWriteArrayList<>();
+        ContextFactory.Listener listener = new ContextFactory.Listener() {
+            @Override
+            public void contextCreated(Context cx) {
+                created.add(cx);
+            }
+
+            @Override
+            public void contextReleased(Context cx) {}
+        };
+        factory.addListener(listener);
+        try {
+            Context[] entered = new Context[2];
+            // a new thread has no context yet
+            Thread thread = new Thread(() -> {
+                try (Context cx = factory.enterThreadContext()) {
+                    entered[0] = cx;
+                }
+                try (Context cx = factory.enterThreadContext()) {
+                    entered[1] = cx;
+                }
+            });
+            thread.start();
+            thread.join();
+            assertSame(entered[0], entered[1]);
+            assertEquals(List.of(entered[0]), created);
+        } finally {
+            factory.removeListener(listener);
+        }
+    }
+
+    @Test
+    void limitsFailInAContextOfAnotherFactory() {
+        try (Context foreign = new ContextFactory().enterContext()) {
+            Script free = new Script("free");
+            assertEquals(3, ((Number) free.parse("1 + 2")).intValue());
+            Script limited = new Script("limited");
+            limited.setInstructionLimit(100_000);
+            assertThrows(IllegalStateException.class, () -> limited.parse("1 + 2"));
+            assertSame(foreign, Context.getCurrentContext());
+        }
+    }
+}
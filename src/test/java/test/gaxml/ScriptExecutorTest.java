@@ -0,0 +1,141 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.ScriptExecutor;
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScriptExecutorTest {
+    @TempDir
+    Path dir;
+    private ExecutorService fx;
+    private ScriptExecutor executor;
+
+    @BeforeEach
+    void start() {
+        // stands in for the JavaFX Application Thread, and is slow to run what it is given
+        fx = Executors.newSingleThreadExecutor();
+        executor = new ScriptExecutor("test-script", action -> fx.execute(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            action.run();
+        }));
+    }
+
+    @AfterEach
+    void stop() {
+        executor.close();
+        fx.shutdownNow();
+    }
+
+    private XMLProcessor processor(String functions) throws Exception {
+        Path page = Documents.write(dir, "fx.xml", "<page>" + functions + "<p>text</p></page>");
+        XMLProcessor processor = new XMLProcessor(page.toString());
+        XMLProcessor.getSegments().invalidate(processor.getFilePath().toAbsolutePath().toString());
+        processor.setScriptExecutor(executor);
+        return processor;
+    }
+
+    @Test
+    void fxWaitsForTheFunction() throws Exception {
+        XMLProcessor processor = processor("""
+                <function name="f"><name>ranBefore</name><source>
+                    var ran = false;
+                    Scope.System.fx(function() { ran = true; });
+                    return ran;
+                </source></function>
+                <function name="g"><name>fromFx</name><source>
+                    return Scope.System.fx(function() { return 7; });
+                </source></function>
+                """);
+        assertEquals(true, processor.executeScriptAsync("f", new String[0]).get(10, TimeUnit.SECONDS));
+        Object result = processor.executeScriptAsync("g", new String[0]).get(10, TimeUnit.SECONDS);
+        assertEquals(7, ((Number) result).intValue());
+    }
+
+    @Test
+    void eventsAreReadWhileScriptsRun() throws Exception {
+        XMLProcessor processor = processor("""
+                <function name="f"><name>mul</name><properties><p>a</p><p>b</p></properties><source>return a*b;</source></function>
+                <p onclick="f(2,3)">click</p>
+                """);
+        ExecutorService loader = Executors.newSingleThreadExecutor();
+        try {
+            // the onclick events are read while the page is loaded, as on the JavaFX Application Thread
+            CompletableFuture<Void> loads = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 20; i++) {
+                    processor.load(null);
+                }
+            }, loader);
+            List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(processor.executeScriptAsync("f", new String[]{String.valueOf(i), "2"}));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Object result = results.get(i).get(10, TimeUnit.SECONDS);
+                assertEquals(i * 2, ((Number) result).intValue());
+            }
+            loads.get(10, TimeUnit.SECONDS);
+        } finally {
+            loader.shutdownNow();
+        }
+    }
+
+    @Test
+    void scriptsOfOtherThreadsDontRunAtTheSameTime() throws Exception {
+        // the load-time script, the events and the calls of other threads all change one counter
+        XMLProcessor processor = processor("""
+                <script name="s">(function() {
+                    if (!this.state) Object.defineProperty(this, 'state', {value: {count: 0}});
+                    state.count += 1000;
+                })();</script>
+                <function name="f"><name>bump</name><source>
+                    if (!this.state) Object.defineProperty(this, 'state', {value: {count: 0}});
+                    var seen = state.count;
+                    for (var i = 50; i > 0; i--) {}
+                    state.count = seen + 1;
+                    return state.count;
+                </source></function>
+                <p onclick="f()">click</p>
+                """);
+        int threads = 3;
+        int calls = 100;
+        ExecutorService others = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<CompletableFuture<?>> running = new ArrayList<>();
+            running.add(CompletableFuture.runAsync(() -> processor.load(null), others));
+            for (int t = 0; t < threads; t++) {
+                running.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < calls; i++) {
+                        processor.executeScript("f", new String[0]);
+                    }
+                }, others));
+            }
+            for (int i = 0; i < calls; i++) {
+                running.add(processor.executeScriptAsync("f", new String[0]));
+            }
+            for (CompletableFuture<?> future : running) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            others.shutdownNow();
+        }
+        Object counter = processor.executeScript("f", new String[0]);
+        assertEquals(1000 + (threads + 1) * calls + 1, ((Number) counter).intValue());
+    }
+}
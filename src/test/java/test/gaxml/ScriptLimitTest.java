@@ -0,0 +1,45 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.javascript.Script;
+import com.airent.extendedjavafxnodes.gaxml.javascript.ScriptLimitException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScriptLimitTest {
+    private static final String LOOP = "(function() { var i = 0; while (true) { i++; } })();";
+
+    @Test
+    void instructionLimitStopsALoop() {
+        Script script = new Script("limited");
+        script.setInstructionLimit(100_000);
+        assertThrows(ScriptLimitException.class, () -> script.parse(LOOP));
+    }
+
+    @Test
+    void timeLimitStopsALoop() {
+        Script script = new Script("timed");
+        script.setTimeLimit(50);
+        assertThrows(ScriptLimitException.class, () -> script.parse(LOOP));
+    }
+
+    @Test
+    void scriptsWithinTheirLimitRun() {
+        Script script = new Script("small");
+        script.setInstructionLimit(1_000_000);
+        Object result = script.parse("(function() { var sum = 0; for (var i = 0; i < 10; i++) { sum += i; } return sum; })();");
+        assertEquals(45, ((Number) result).intValue());
+    }
+
+    @Test
+    void limitsApplyToPrecompiledSources() {
+        String source = "(function() { var i = 0; while (true) { i++; } return 'loop'; })();";
+        // stands in for a script from a bundle, which doesn't count its instructions
+        Script.addPrecompiled(source, (cx, scope) -> "bundle");
+        assertEquals("bundle", String.valueOf(new Script("free").parse(source)));
+        Script script = new Script("limited");
+        script.setInstructionLimit(100_000);
+        assertThrows(ScriptLimitException.class, () -> script.parse(source));
+    }
+}
@@ -0,0 +1,102 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.SearchIndex;
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import com.airent.extendedjavafxnodes.gaxml.compiled.CompiledPage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+    @TempDir
+    Path dir;
+
+    private SearchIndex index(Path... files) throws Exception {
+        SearchIndex index = new SearchIndex();
+        for (Path file : files) {
+            index.index(file.toString(), CompiledPage.compile(new XML(file, false)));
+        }
+        return index;
+    }
+
+    @Test
+    void tokenizeSplitsOnAnythingButLettersAndDigits() {
+        assertEquals(List.of("alice", "s", "gold", "42"), SearchIndex.tokenize("Alice's gold, 42!"));
+    }
+
+    @Test
+    void everyWordMustBeInTheSegment() throws Exception {
+        Path first = Documents.write(dir, "first.xml", "<page><p>Alice found the gold.</p></page>");
+        Path second = Documents.write(dir, "second.xml", "<page><p>Bob found <span>nothing</span>.</p></page>");
+        SearchIndex index = index(first, second);
+        List<SearchIndex.Hit> hits = index.search("fou gol");
+        assertEquals(1, hits.size());
+        assertEquals(first.toString(), hits.getFirst().getSegment());
+        assertEquals(List.of("/page[1]/p[1]"), hits.getFirst().getPaths());
+        assertEquals(List.of("/page[1]/p[1]/span[1]"), index.search("nothing").getFirst().getPaths());
+        assertEquals(2, index.search("found").size());
+        assertTrue(index.search("").isEmpty());
+    }
+
+    @Test
+    void hiddenTextIsNotIndexed() throws Exception {
+        Path page = Documents.story(dir, "story.xml", 3);
+        SearchIndex index = index(page);
+        assertEquals(3, index.search("hello").getFirst().getPaths().size());
+        // the value of the variable is only shown through var tags
+        assertTrue(index.search("alice").isEmpty());
+    }
+
+    @Test
+    void indexingAgainReplacesTheSegment() throws Exception {
+        Path page = Documents.write(dir, "page.xml", "<page><p>before</p></page>");
+        SearchIndex index = index(page);
+        Documents.write(dir, "page.xml", "<page><p>after</p></page>");
+        index.index(page.toString(), CompiledPage.compile(new XML(page, false)));
+        assertTrue(index.search("before").isEmpty());
+        assertEquals(1, index.search("after").size());
+        assertTrue(index.remove(page.toString()));
+        assertEquals(0, index.getTermCount());
+    }
+
+    @Test
+    void completesTermsInOrder() throws Exception {
+        SearchIndex index = index(Documents.write(dir, "page.xml", "<page><p>gold goat good bad</p></page>"));
+        assertEquals(List.of("goat", "gold"), index.complete("Go", 2));
+    }
+
+    @Test
+    void writtenIndexIsReadBackWithoutChangedFiles() throws Exception {
+        Path kept = Documents.write(dir, "kept.xml", "<page><p>kept words</p></page>");
+        Path changed = Documents.write(dir, "changed.xml", "<page><p>changed words</p></page>");
+        SearchIndex index = index(kept, changed);
+        Path file = dir.resolve("index.bin");
+        index.write(file);
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 10_000));
+        SearchIndex read = SearchIndex.read(file);
+        assertTrue(read.contains(kept.toString()));
+        assertFalse(read.contains(changed.toString()));
+        assertEquals(index.search("kept").getFirst().getPaths(), read.search("kept").getFirst().getPaths());
+    }
+
+    @Test
+    void longTermsAreWrittenAndReadBack() throws Exception {
+        // more than the 65535 bytes that writeUTF can write, in 3 byte characters
+        String term = "€".repeat(30_000) + "x".repeat(10_000);
+        Path page = Documents.write(dir, "long.xml", "<page><p>short " + term + "</p></page>");
+        SearchIndex index = index(page);
+        Path file = dir.resolve("index.bin");
+        index.write(file);
+        SearchIndex read = SearchIndex.read(file);
+        assertEquals(1, read.search(term).size());
+        assertEquals(index.search("short").getFirst().getPaths(), read.search("short").getFirst().getPaths());
+    }
+}
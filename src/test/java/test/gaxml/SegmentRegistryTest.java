@@ -0,0 +1,113 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import com.airent.extendedjavafxnodes.gaxml.story.Segment;
+import com.airent.extendedjavafxnodes.gaxml.story.SegmentRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentRegistryTest {
+    @TempDir
+    Path dir;
+
+    private static Segment segment(String key) {
+        return new Segment(key, (XML) null);
+    }
+
+    @Test
+    void keysAreAbsoluteAndNormalized() {
+        Path path = dir.resolve("a/../story.xml");
+        assertEquals(dir.resolve("story.xml").toAbsolutePath().toString(), SegmentRegistry.key(path));
+    }
+
+    @Test
+    void leastRecentlyUsedSegmentsAreEvicted() {
+        SegmentRegistry registry = new SegmentRegistry("test");
+        registry.setMaximumSize(2);
+        registry.put(segment("a"));
+        registry.put(segment("b"));
+        registry.get("a");
+        registry.put(segment("c"));
+        assertTrue(registry.contains("a"));
+        assertFalse(registry.contains("b"));
+        assertTrue(registry.contains("c"));
+        assertEquals(1, registry.getStats().getEvictions());
+    }
+
+    @Test
+    void aClaimedKeyIsLoadedOnce() throws Exception {
+        SegmentRegistry registry = new SegmentRegistry("test");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Segment>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    Segment segment = registry.getOrClaim("story");
+                    if (segment == null) {
+                        loads.incrementAndGet();
+                        Thread.sleep(50);
+                        segment = segment("story");
+                        registry.put(segment);
+                    }
+                    return segment;
+                }));
+            }
+            start.countDown();
+            Segment first = results.getFirst().get(10, TimeUnit.SECONDS);
+            for (Future<Segment> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void releasedClaimIsTakenOverByAWaitingThread() throws Exception {
+        SegmentRegistry registry = new SegmentRegistry("test");
+        assertNull(registry.getOrClaim("story"));
+        // the thread that claimed a key can claim it again
+        assertNull(registry.getOrClaim("story"));
+        Thread waiting = new Thread(() -> {
+            if (registry.getOrClaim("story") == null) {
+                registry.put(segment("story"));
+            }
+        });
+        waiting.start();
+        registry.release("story");
+        waiting.join(10_000);
+        assertFalse(waiting.isAlive());
+        assertTrue(registry.contains("story"));
+    }
+
+    @Test
+    void processorsOfTheSameFileShareOneSegment() throws Exception {
+        Path story = Documents.story(dir, "shared.xml", 2);
+        XMLProcessor first = new XMLProcessor(new XML(story, false));
+        XMLProcessor second = new XMLProcessor(new XML(dir.resolve("./shared.xml"), false));
+        assertSame(first.getFile(), second.getFile());
+        assertTrue(XMLProcessor.getSegments().contains(SegmentRegistry.key(story)));
+        XMLProcessor.getSegments().invalidate(SegmentRegistry.key(story));
+    }
+}
@@ -0,0 +1,107 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares a dialogue heavy page loaded with and without merging runs of equally formatted text,
+ * by the amount of nodes, the time to load the page and the time of a layout pass.
+ * <BR><BR>
+ * The layout pass needs the native font libraries of JavaFX, it is skipped on machines without them.
+ */
+@Tag("benchmark")
+class TextCoalescingBenchmark {
+    private static final int PARAGRAPHS = 2000;
+    private static final int SPANS = 8;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Writes a page where every paragraph is many small spans of the same format,
+     * the way lines of dialogue are written word by word.
+     */
+    @NotNull
+    private static String dialogue() {
+        StringBuilder xml = new StringBuilder("<page size=\"13\">\n");
+        xml.append("<variable name=\"hero\">Alice</variable>\n");
+        for (int i=0; i < PARAGRAPHS; i++) {
+            xml.append("<p><span color=\"#334455\"><var name=\"hero\"/>: </span>");
+            for (int s=0; s < SPANS; s++) {
+                xml.append("<span color=\"#334455\">word").append(s).append(' ').append("</span>");
+            }
+            xml.append("<span color=\"#334455\" italic=\"true\">line ").append(i).append("</span></p>\n");
+        }
+        return xml.append("</page>\n").toString();
+    }
+
+    private static int count(@NotNull List<Node> nodes, boolean texts) {
+        int count = 0;
+        for (Node node : nodes) {
+            if (!texts || node instanceof Text) {
+                count++;
+            }
+            if (node instanceof Parent parent) {
+                count += count(parent.getChildrenUnmodifiable(), texts);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks that text can be measured, which loads the native font libraries.
+     */
+    private static boolean canLayout() {
+        try {
+            new Text("probe").getLayoutBounds();
+            return true;
+        } catch (RuntimeException | Error e) {
+            return false;
+        }
+    }
+
+    private static void measure(@NotNull XMLProcessor processor, boolean coalesce, boolean layout) {
+        String label = coalesce ? "coalesced" : "not coalesced";
+        processor.setCoalesceText(coalesce);
+        List<Node> nodes = processor.load();
+        Bench.print(label + " nodes", String.valueOf(count(nodes, false)));
+        Bench.print(label + " Text nodes", String.valueOf(count(nodes, true)));
+        Bench.time("load " + label, 3, 10, processor::load);
+        if (!layout) {
+            Bench.print("load and layout " + label, "skipped");
+            return;
+        }
+        Bench.time("load and layout " + label, 3, 10, () -> {
+            VBox box = new VBox();
+            box.getChildren().setAll(processor.load());
+            box.resize(800, 100_000);
+            box.layout();
+        });
+    }
+
+    @Test
+    void coalescedAgainstSeparateRuns() throws Exception {
+        XMLProcessor processor = new XMLProcessor(Documents.write(dir, "dialogue.xml", dialogue()).toString());
+        processor.setCoalesceText(false);
+        int separate = count(processor.load(), true);
+        processor.setCoalesceText(true);
+        int coalesced = count(processor.load(), true);
+        assertTrue(coalesced < separate, coalesced + " Text nodes coalesced, " + separate + " without");
+
+        boolean layout = canLayout();
+        measure(processor, false, layout);
+        measure(processor, true, layout);
+    }
+}
@@ -0,0 +1,67 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how many documents the shared {@link XML.Build#BUILD} parses and writes
+ * per second, on one thread and on many threads at once.
+ */
+@Tag("benchmark")
+class XMLBuildBenchmark {
+    private static final int DOCUMENTS = 400;
+
+    @TempDir
+    Path dir;
+
+    private static void parseAndWrite(File file) {
+        try {
+            Document document = XML.Build.BUILD.parse(file);
+            XML.Build.BUILD.transform(new DOMSource(document), new StreamResult(new StringWriter()));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void run(File file, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(DOCUMENTS);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                futures.add(executor.submit(() -> parseAndWrite(file)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parseAndWriteThroughput() throws Exception {
+        File file = Documents.story(dir, "story.xml", 100).toFile();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            double ms = Bench.time("parse and write " + DOCUMENTS + ", " + threads + " threads", 3, 7, () -> run(file, threads));
+            Bench.print("  documents per second", String.format("%.0f", DOCUMENTS / ms * 1000));
+        }
+        Bench.print("available processors", String.valueOf(cores));
+    }
+}
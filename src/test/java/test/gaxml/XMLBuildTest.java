@@ -0,0 +1,142 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parses and saves documents on many threads at once through the shared {@link XML.Build#BUILD}.
+ */
+class XMLBuildTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 25;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Runs a task on every thread at the same time, and waits for all of them.
+     */
+    private static void onAllThreads(Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parsesOneFileOnManyThreads() throws Exception {
+        Path path = Documents.story(dir, "story.xml", 50);
+        onAllThreads(() -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                Document document = XML.Build.BUILD.parse(path.toFile());
+                assertEquals(50, document.getElementsByTagName("p").getLength());
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void savesOnManyThreads() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            paths.add(Documents.story(dir, "story" + t + ".xml", 20));
+        }
+        List<Path> next = new ArrayList<>(paths);
+        onAllThreads(() -> {
+            Path path;
+            synchronized (next) {
+                path = next.removeFirst();
+            }
+            XML xml = new XML(path, false);
+            for (int i = 0; i < ROUNDS; i++) {
+                ((Element) xml.getElementsByTagName("p").item(i % 20)).setAttribute("round", String.valueOf(i));
+                xml.markDirty();
+                xml.update();
+                XML read = new XML(path, false);
+                assertEquals(String.valueOf(i), ((Element) read.getElementsByTagName("p").item(i % 20)).getAttribute("round"));
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void transformsOnManyThreads() throws Exception {
+        Document document = XML.Build.BUILD.parse(Documents.story(dir, "story.xml", 20).toFile());
+        StringWriter expected = new StringWriter();
+        XML.Build.BUILD.transform(new DOMSource(document), new StreamResult(expected));
+        onAllThreads(() -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                StringWriter out = new StringWriter();
+                // documents aren't thread-safe, so every thread writes its own copy
+                Document copy = (Document) document.cloneNode(true);
+                XML.Build.BUILD.transform(new DOMSource(copy), new StreamResult(out));
+                assertEquals(expected.toString(), out.toString());
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void failedParsesDontBreakTheBuild() throws Exception {
+        Path good = Documents.story(dir, "good.xml", 5);
+        Path bad = Documents.write(dir, "bad.xml", "<page><p>never closed</page>");
+        XML.Build build = new XML.Build();
+        build.setErrorHandler(new ErrorHandler() {
+            @Override
+            public void warning(SAXParseException exception) {}
+
+            @Override
+            public void error(SAXParseException exception) {}
+
+            @Override
+            public void fatalError(SAXParseException exception) throws SAXException {
+                throw exception;
+            }
+        });
+        onAllThreads(() -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                assertThrows(SAXException.class, () -> build.parse(bad.toFile()));
+                Document document = build.parse(good.toFile());
+                assertEquals(5, document.getElementsByTagName("p").getLength());
+            }
+            return null;
+        });
+        assertTrue(build.parse(good.toFile()).getDocumentElement() != null);
+    }
+}
@@ -0,0 +1,133 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XMLLiveView;
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import javafx.scene.Node;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Reloads a live view after the file changed, only the top level blocks that changed are loaded again.
+ */
+class XMLLiveViewTest {
+    @TempDir
+    Path dir;
+
+    private static String page(String... paragraphs) {
+        // no text between the paragraphs, so that every block is a paragraph
+        StringBuilder xml = new StringBuilder("<page size=\"13\">");
+        for (String paragraph : paragraphs) {
+            xml.append("<p>").append(paragraph).append("</p>");
+        }
+        return xml.append("</page>\n").toString();
+    }
+
+    private XMLLiveView view(String body) throws Exception {
+        Path path = Documents.write(dir, "live.xml", body);
+        return new XMLProcessor(path.toString()).displayLive(null);
+    }
+
+    private void change(String body) throws Exception {
+        Documents.write(dir, "live.xml", body);
+    }
+
+    @Test
+    void unchangedFileReloadsNothing() throws Exception {
+        XMLLiveView view = view(page("a", "b", "c"));
+        List<Node> before = new ArrayList<>(view.getChildren());
+        assertEquals(0, view.reload());
+        assertEquals(before, view.getChildren());
+    }
+
+    @Test
+    void onlyTheChangedBlockIsLoadedAgain() throws Exception {
+        XMLLiveView view = view(page("a", "b", "c", "d"));
+        List<Node> before = new ArrayList<>(view.getChildren());
+        change(page("a", "b changed", "c", "d"));
+        assertEquals(1, view.reload());
+        List<Node> after = view.getChildren();
+        assertEquals(before.size(), after.size());
+        assertSame(before.get(0), after.get(0));
+        assertSame(before.get(2), after.get(2));
+        assertSame(before.get(3), after.get(3));
+    }
+
+    @Test
+    void insertedAndRemovedBlocksKeepTheirNeighbours() throws Exception {
+        XMLLiveView view = view(page("a", "b", "c"));
+        List<Node> before = new ArrayList<>(view.getChildren());
+        change(page("a", "new", "b", "c"));
+        assertEquals(1, view.reload());
+        assertEquals(before.size() + 1, view.getChildren().size());
+        assertSame(before.get(1), view.getChildren().get(2));
+        change(page("a", "c"));
+        assertEquals(0, view.reload());
+        assertEquals(List.of(before.get(0), before.get(2)), view.getChildren());
+    }
+
+    @Test
+    void movedBlocksAreKept() throws Exception {
+        XMLLiveView view = view(page("a", "b", "c", "d"));
+        List<Node> before = new ArrayList<>(view.getChildren());
+        change(page("a", "c", "b", "d"));
+        assertEquals(0, view.reload());
+        assertEquals(List.of(before.get(0), before.get(2), before.get(1), before.get(3)), view.getChildren());
+    }
+
+    @Test
+    void changedBaseFormatLoadsEverythingAgain() throws Exception {
+        XMLLiveView view = view(page("a", "b"));
+        change(page("a", "b").replace("size=\"13\"", "size=\"20\""));
+        assertEquals(2, view.reload());
+    }
+
+    @Test
+    void blocksThatCallAChangedVariableAreLoadedAgain() throws Exception {
+        String body = page("<var name=\"hero\"/> waves", "<math variables=\"gold:inFile.gold\">$gold*2</math>", "plain")
+                .replaceFirst("<p>", "<variable name=\"hero\">Alice</variable><variable name=\"gold\">5</variable><p>");
+        XMLLiveView view = view(body);
+        List<Node> before = new ArrayList<>(view.getChildren());
+        change(body.replace("Alice", "Bob"));
+        // the variable itself, and the block that calls it
+        assertEquals(2, view.reload());
+        List<Node> after = view.getChildren();
+        assertEquals(before.size(), after.size());
+        assertNotSame(before.get(0), after.get(0));
+        assertSame(before.get(1), after.get(1));
+        assertSame(before.get(2), after.get(2));
+        before = new ArrayList<>(after);
+        change(body.replace("Alice", "Bob").replace(">5<", ">6<"));
+        assertEquals(2, view.reload());
+        after = view.getChildren();
+        assertSame(before.get(0), after.get(0));
+        assertNotSame(before.get(1), after.get(1));
+        assertSame(before.get(2), after.get(2));
+    }
+
+    @Test
+    void blocksThatIncludeAChangedFileAreLoadedAgain() throws Exception {
+        Path included = Documents.write(dir, "included.xml", page("inside"));
+        String body = page("a", "b").replace("</p><p>",
+                "</p><page type=\"inline\" path=\"" + included.toAbsolutePath() + "\"/><p>");
+        XMLLiveView view = view(body);
+        List<Node> before = new ArrayList<>(view.getChildren());
+        assertEquals(0, view.reload());
+        Documents.write(dir, "included.xml", page("inside changed"));
+        FileTime modified = Files.getLastModifiedTime(included);
+        Files.setLastModifiedTime(included, FileTime.fromMillis(modified.toMillis() + 10_000));
+        assertEquals(1, view.reload());
+        List<Node> after = view.getChildren();
+        assertSame(before.getFirst(), after.getFirst());
+        assertSame(before.getLast(), after.getLast());
+    }
+}
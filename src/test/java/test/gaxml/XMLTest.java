@@ -0,0 +1,147 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XML;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Element;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class XMLTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readFileIsNotDirty() throws Exception {
+        XML xml = new XML(Documents.story(dir, "story.xml", 2), false);
+        assertFalse(xml.isDirty());
+    }
+
+    @Test
+    void changesToNodesAreOnlySeenOnceMarked() throws Exception {
+        XML xml = new XML(Documents.story(dir, "story.xml", 2), false);
+        long before = xml.getModificationCount();
+        ((Element) xml.getElementsByTagName("p").item(0)).setAttribute("color", "#000000");
+        // no mutation events are listened to unless the document is watched
+        assertFalse(xml.isDirty());
+        assertEquals(before, xml.getModificationCount());
+        xml.markDirty();
+        assertTrue(xml.isDirty());
+        assertTrue(xml.getModificationCount() > before);
+        xml.update();
+        assertFalse(xml.isDirty());
+    }
+
+    @Test
+    void changesToNodesOfWatchedDocumentsAreSeen() throws Exception {
+        XML xml = new XML(Documents.story(dir, "story.xml", 2), false);
+        xml.watchChanges();
+        assertFalse(xml.isDirty());
+        long before = xml.getModificationCount();
+        ((Element) xml.getElementsByTagName("p").item(0)).setAttribute("color", "#000000");
+        assertTrue(xml.isDirty());
+        assertTrue(xml.getModificationCount() > before);
+        xml.update();
+        assertFalse(xml.isDirty());
+    }
+
+    @Test
+    void wrappersShareTheChangesOfTheirDocument() throws Exception {
+        XML xml = new XML(Documents.story(dir, "story.xml", 2), false);
+        Element paragraph = (Element) xml.getElementsByTagName("p").item(1);
+        XML first = new XML(paragraph);
+        XML second = new XML(paragraph);
+        first.watchChanges();
+        second.watchChanges();
+        long firstCount = first.getModificationCount();
+        long secondCount = second.getModificationCount();
+        paragraph.setAttribute("size", "20");
+        // one listener per document, so every wrapper sees the change once
+        assertEquals(firstCount + 1, first.getModificationCount());
+        assertEquals(secondCount + 1, second.getModificationCount());
+    }
+
+    @Test
+    void wrappersAreNotKeptByTheirDocument() throws Exception {
+        XML xml = new XML(Documents.story(dir, "story.xml", 2), false);
+        WeakReference<XML> wrapper = new WeakReference<>(new XML(xml.getElementsByTagName("p").item(0)));
+        for (int i=0; i < 20 && wrapper.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(wrapper.get());
+        assertFalse(xml.isDirty());
+    }
+
+    @Test
+    void modificationCountKeepsGoingUpOnReload() throws Exception {
+        Path path = Documents.story(dir, "story.xml", 2);
+        XML xml = new XML(path, false);
+        xml.watchChanges();
+        for (int i=0; i < 5; i++) {
+            ((Element) xml.getElementsByTagName("p").item(0)).setAttribute("size", String.valueOf(i));
+        }
+        long before = xml.getModificationCount();
+        xml.reload();
+        assertTrue(xml.getModificationCount() > before);
+        assertFalse(xml.isDirty());
+    }
+
+    @Test
+    void unchangedDocumentIsNotWrittenAgain() throws Exception {
+        Path path = Documents.story(dir, "story.xml", 2);
+        XML xml = new XML(path, false);
+        Files.writeString(path, "changed outside");
+        xml.update();
+        assertEquals("changed outside", Files.readString(path));
+    }
+
+    @Test
+    void savingKeepsThePermissionsOfTheFile() throws Exception {
+        Path path = Documents.story(dir, "story.xml", 2);
+        assumeTrue(Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(path, permissions);
+        XML xml = new XML(path, false);
+        ((Element) xml.getElementsByTagName("p").item(0)).setAttribute("size", "20");
+        xml.markDirty();
+        xml.update();
+        assertEquals(permissions, Files.getPosixFilePermissions(path));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(path), files.toList());
+        }
+    }
+
+    @Test
+    void savingThroughALinkReplacesTheLinkedFile() throws Exception {
+        Path path = Documents.story(dir, "story.xml", 2);
+        Path link;
+        try {
+            link = Files.createSymbolicLink(dir.resolve("link.xml"), path);
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "symbolic links are not supported");
+            return;
+        }
+        XML xml = new XML(link, false);
+        ((Element) xml.getElementsByTagName("p").item(0)).setAttribute("size", "20");
+        xml.markDirty();
+        xml.update();
+        assertTrue(Files.isSymbolicLink(link));
+        assertTrue(Files.readString(path).contains("size=\"20\""));
+    }
+}
@@ -0,0 +1,132 @@
+package test.gaxml;
+
+import com.airent.extendedjavafxnodes.gaxml.XMLProcessor;
+import com.airent.extendedjavafxnodes.gaxml.XMLView;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares a long page shown with {@link XMLProcessor#display()} in a scroll pane
+ * with the same page shown as an {@link XMLView}, by the time to show the page,
+ * the time of a layout pulse while scrolling and the amount of nodes in the scene.
+ * <BR><BR>
+ * It needs a JavaFX toolkit that can start, so it is skipped on machines without a display.
+ */
+@Tag("benchmark")
+class XMLViewBenchmark {
+    private static final int PARAGRAPHS = 5000;
+    private static final int SCROLLS = 50;
+    private static boolean toolkit;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void startToolkit() {
+        try {
+            Platform.startup(() -> {});
+            toolkit = true;
+        } catch (IllegalStateException e) {
+            // already started
+            toolkit = true;
+        } catch (RuntimeException | Error e) {
+            toolkit = false;
+        }
+    }
+
+    @Test
+    void virtualizedAgainstFullDisplay() throws Exception {
+        assumeTrue(toolkit, "The JavaFX toolkit couldn't start.");
+        XMLProcessor processor = new XMLProcessor(Documents.story(dir, "story.xml", PARAGRAPHS).toString());
+        processor.load();
+
+        Bench.time("show display() of " + PARAGRAPHS + " paragraphs", 2, 5, () -> onFx(() -> show(new ScrollPane(processor.display()))));
+        Bench.time("show displayVirtualized()", 2, 5, () -> onFx(() -> show(processor.displayVirtualized())));
+
+        ScrollPane pane = onFx(() -> {
+            ScrollPane scrollPane = new ScrollPane(processor.display());
+            show(scrollPane);
+            return scrollPane;
+        });
+        XMLView view = onFx(() -> {
+            XMLView xmlView = processor.displayVirtualized();
+            show(xmlView);
+            return xmlView;
+        });
+        Bench.time("scroll pulse of display()", 0, SCROLLS, new Runnable() {
+            int step = 0;
+
+            @Override
+            public void run() {
+                onFx(() -> {
+                    pane.setVvalue((double) (++step % SCROLLS) / SCROLLS);
+                    pane.layout();
+                    return null;
+                });
+            }
+        });
+        Bench.time("scroll pulse of displayVirtualized()", 0, SCROLLS, new Runnable() {
+            int step = 0;
+
+            @Override
+            public void run() {
+                onFx(() -> {
+                    view.scrollTo((++step % SCROLLS) * view.getItems().size() / SCROLLS);
+                    view.layout();
+                    return null;
+                });
+            }
+        });
+
+        int full = onFx(() -> count(pane));
+        int virtualized = onFx(() -> count(view));
+        Bench.print("nodes in scene of display()", String.valueOf(full));
+        Bench.print("nodes in scene of displayVirtualized()", String.valueOf(virtualized));
+        assertTrue(virtualized < full);
+    }
+
+    private static Parent show(Parent root) {
+        Scene scene = new Scene(root, 800, 600);
+        scene.getRoot().applyCss();
+        scene.getRoot().layout();
+        return root;
+    }
+
+    private static <T> T onFx(Callable<T> action) {
+        FutureTask<T> task = new FutureTask<>(action);
+        Platform.runLater(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static int count(Node node) {
+        int count = 1;
+        if (node instanceof Parent parent) {
+            for (Node child : parent.getChildrenUnmodifiable()) {
+                count += count(child);
+            }
+        }
+        return count;
+    }
+}